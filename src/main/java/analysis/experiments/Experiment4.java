@@ -0,0 +1,113 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.interfaces.IList;
+import search.index.PostingList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class Experiment4 {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_LIST_SIZE = 1000000;
+    public static final long STEP = 20000;
+
+    // The postings we compress look like those of a fairly common term: the gaps
+    // between doc ids and the counts are both (roughly) geometrically distributed.
+    public static final double AVERAGE_GAP = 8.0;
+    public static final double AVERAGE_COUNT = 2.0;
+    public static final long SEED = 12345;
+
+    public static void main(String[] args) {
+        IList<Long> listSizes = AnalysisUtils.makeList(0L, MAX_LIST_SIZE, STEP);
+
+        System.out.println("Starting test");
+        // The compressed size doesn't depend on timing, so one trial is enough.
+        IList<Long> test1Results = AnalysisUtils.runSingleTrial(listSizes, Experiment4::test1);
+        IList<Long> test2Results = AnalysisUtils.runTrials(listSizes, Experiment4::test2, NUM_TRIALS);
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("ListSize", listSizes);
+        writer.addColumn("Test1Result", test1Results);
+        writer.addColumn("Test2Result", test2Results);
+        writer.writeToFile("experimentdata/experiment4.csv");
+
+        long totalPostings = 0;
+        long totalBytes = 0;
+        long totalMillis = 0;
+        for (long size : listSizes) {
+            totalPostings += size;
+        }
+        for (long bytes : test1Results) {
+            totalBytes += bytes;
+        }
+        for (long millis : test2Results) {
+            totalMillis += millis;
+        }
+        System.out.println(String.format(
+                "%.2f bytes per posting (8 uncompressed), %.1f million postings decoded per second",
+                (double) totalBytes / totalPostings,
+                10.0 * totalPostings / Math.max(totalMillis, 1) / 1000.0));
+
+        System.out.println("All done!");
+    }
+
+    /**
+     * Returns the number of bytes a list of the given size compresses to.
+     */
+    public static long test1(long listSize) {
+        return makePostings((int) listSize).remaining();
+    }
+
+    /**
+     * Returns how long it takes to decode every posting of a list of the given size
+     * ten times.
+     */
+    public static long test2(long listSize) {
+        int size = (int) listSize;
+        ByteBuffer data = makePostings(size);
+
+        long start = System.currentTimeMillis();
+        long checksum = 0;
+        for (int i = 0; i < 10; i++) {
+            PostingList postings = new PostingList(data, 0, size, 0.0, false);
+            for (int j = 0; j < size; j++) {
+                checksum += postings.getDocId(j) + postings.getCount(j);
+            }
+        }
+        long time = System.currentTimeMillis() - start;
+
+        // Make sure the JIT can't skip the decoding because we ignore the result.
+        if (checksum == 42) {
+            System.out.println("Lucky!");
+        }
+        return time;
+    }
+
+    private static ByteBuffer makePostings(int size) {
+        Random rand = new Random(SEED);
+        int[] docIds = new int[size];
+        int[] counts = new int[size];
+        int docId = -1;
+        for (int i = 0; i < size; i++) {
+            docId += 1 + (int) (-Math.log(1.0 - rand.nextDouble()) * (AVERAGE_GAP - 1));
+            docIds[i] = docId;
+            counts[i] = 1 + (int) (-Math.log(1.0 - rand.nextDouble()) * (AVERAGE_COUNT - 1));
+        }
+
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            PostingList.write(out, docIds, counts, size);
+            out.close();
+            return ByteBuffer.wrap(bytes.toByteArray());
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package analysis.experiments;
+
+import analysis.utils.AnalysisUtils;
+import analysis.utils.CsvWriter;
+import datastructures.concrete.ArrayHeap;
+import datastructures.interfaces.IList;
+import datastructures.interfaces.IPriorityQueue;
+
+import java.util.Random;
+
+public class Experiment5 {
+    public static final int NUM_TRIALS = 5;
+    public static final long MAX_LIST_SIZE = 500000;
+    public static final long STEP = 10000;
+    public static final int K = 500;
+    public static final long SEED = 12345;
+
+    public static void main(String[] args) {
+        IList<Long> listSizes = AnalysisUtils.makeList(0L, MAX_LIST_SIZE, STEP);
+
+        System.out.println("Starting test");
+        IList<Long> test1Results = AnalysisUtils.runTrials(listSizes, Experiment5::test1, NUM_TRIALS);
+        IList<Long> test2Results = AnalysisUtils.runTrials(listSizes, Experiment5::test2, NUM_TRIALS);
+        IList<Long> test3Results = AnalysisUtils.runTrials(listSizes, Experiment5::test3, NUM_TRIALS);
+        IList<Long> test4Results = AnalysisUtils.runTrials(listSizes, Experiment5::test4, NUM_TRIALS);
+
+        System.out.println("Saving experiment results to file");
+        CsvWriter writer = new CsvWriter();
+        writer.addColumn("ListSize", listSizes);
+        writer.addColumn("Test1Result", test1Results);
+        writer.addColumn("Test2Result", test2Results);
+        writer.addColumn("Test3Result", test3Results);
+        writer.addColumn("Test4Result", test4Results);
+        writer.writeToFile("experimentdata/experiment5.csv");
+
+        System.out.println("All done!");
+    }
+
+    /**
+     * Returns how long it takes to build a heap of the given size by inserting
+     * the items one at a time, and then empty it, ten times.
+     */
+    public static long test1(long listSize) {
+        Integer[] items = makeItems((int) listSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            IPriorityQueue<Integer> heap = new ArrayHeap<>();
+            for (Integer item : items) {
+                heap.insert(item);
+            }
+            drain(heap);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Like test1, but builds the heap from the whole array at once.
+     */
+    public static long test2(long listSize) {
+        Integer[] items = makeItems((int) listSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            IPriorityQueue<Integer> heap = new ArrayHeap<>(items);
+            drain(heap);
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Returns how long it takes to find the top K items of a list of the given size
+     * ten times, using removeMin and insert whenever a better item comes along.
+     */
+    public static long test3(long listSize) {
+        Integer[] items = makeItems((int) listSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            IPriorityQueue<Integer> heap = new ArrayHeap<>();
+            for (Integer item : items) {
+                if (heap.size() < K) {
+                    heap.insert(item);
+                } else if (item.compareTo(heap.peekMin()) > 0) {
+                    heap.removeMin();
+                    heap.insert(item);
+                }
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    /**
+     * Like test3, but uses replaceMin instead of removeMin and insert.
+     */
+    public static long test4(long listSize) {
+        Integer[] items = makeItems((int) listSize);
+
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            IPriorityQueue<Integer> heap = new ArrayHeap<>();
+            for (Integer item : items) {
+                if (heap.size() < K) {
+                    heap.insert(item);
+                } else if (item.compareTo(heap.peekMin()) > 0) {
+                    heap.replaceMin(item);
+                }
+            }
+        }
+        return System.currentTimeMillis() - start;
+    }
+
+    private static Integer[] makeItems(int size) {
+        Random rand = new Random(SEED);
+        Integer[] items = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            items[i] = rand.nextInt();
+        }
+        return items;
+    }
+
+    private static void drain(IPriorityQueue<Integer> heap) {
+        while (!heap.isEmpty()) {
+            heap.removeMin();
+        }
+    }
+}
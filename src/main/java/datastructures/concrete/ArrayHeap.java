@@ -1,5 +1,6 @@
 package datastructures.concrete;
 
+import datastructures.interfaces.IList;
 import datastructures.interfaces.IPriorityQueue;
 import misc.exceptions.EmptyContainerException;
 
@@ -16,7 +17,7 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
     private T[] heap;
 
     // Feel free to add more fields and constants.
-    
+
     private int heapSize;
     private static final int DEFAULT_CAPACITY = 10;
 
@@ -25,6 +26,38 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         this.heapSize = 0;
     }
 
+    /**
+     * Creates a heap containing every item in the given list.
+     *
+     * This takes O(n) time, rather then the O(n log n) time it takes to insert the
+     * items one at a time (see heapify).
+     *
+     * @throws IllegalArgumentException  if any of the items is null
+     */
+    public ArrayHeap(IList<T> items) {
+        this.heap = makeArrayOfT(Math.max(DEFAULT_CAPACITY, items.size()));
+        this.heapSize = 0;
+        for (T item : items) {
+            this.addUnordered(item);
+        }
+        this.heapify();
+    }
+
+    /**
+     * Creates a heap containing every item in the given array, in O(n) time. The
+     * array itself is not modified.
+     *
+     * @throws IllegalArgumentException  if any of the items is null
+     */
+    public ArrayHeap(T[] items) {
+        this.heap = makeArrayOfT(Math.max(DEFAULT_CAPACITY, items.length));
+        this.heapSize = 0;
+        for (T item : items) {
+            this.addUnordered(item);
+        }
+        this.heapify();
+    }
+
     /**
      * This method will return a new, empty array of the given size
      * that can contain elements of type T.
@@ -40,31 +73,41 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         // works, and should not modify it in any way.
         return (T[]) (new Comparable[size]);
     }
-    
+
     /**
      * This method will resize the array used internally to store the heap
      * to a given newSize
      */
     private T[] resizeHeap(int newSize) {
         T[] newHeap = makeArrayOfT(newSize);
-        
-        // copy elements from old heap to new heap
-        for (int i = 0; i < heapSize; i++) {
-            newHeap[i] = heap[i];
-        }
-        
+        System.arraycopy(heap, 0, newHeap, 0, heapSize);
         return newHeap;
     }
-    
+
     /**
-     * This method will swap the elements in a given array at the two
-     * given integer indices
+     * Appends the given item to the end of the array without restoring the heap
+     * property. Only used while bulk loading, before calling heapify.
      */
-    private void swapElements(T[] arr, int firstIndex, int secondIndex) {
-        T firstElement = arr[firstIndex];
-        
-        arr[firstIndex] = arr[secondIndex];
-        arr[secondIndex] = firstElement;
+    private void addUnordered(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        heap[heapSize] = item;
+        heapSize++;
+    }
+
+    /**
+     * Turns the array into a heap from the bottom up (Floyd's method): every node
+     * without children is already a heap, so we sift down each parent in turn,
+     * starting from the last one.
+     *
+     * Most nodes are near the bottom and only sift down a level or two, so this
+     * takes O(n) time in total.
+     */
+    private void heapify() {
+        for (int i = (heapSize - 2) / NUM_CHILDREN; i >= 0; i--) {
+            siftDown(i, heap[i]);
+        }
     }
 
     @Override
@@ -72,33 +115,35 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         if (this.isEmpty()) {
             throw new EmptyContainerException();
         }
-        
-        // shrink array containing the heap if necessary
-        if (heapSize < heap.length / 4) {
-            heap = resizeHeap(heap.length / 2);
-        }
-        
-        // move last node to root
+
+        // We never shrink the array: a heap that was big once usually gets big
+        // again (think of a crawler's frontier), and shrinking and regrowing it
+        // over and over costs far more then the memory we'd save.
         T removedValue = heap[0];
-        heap[0] = heap[heapSize - 1];
         heapSize--;
-        
-        // percolate root node down
-        int currIndex = 0;
-        int nextIndex = 0;
-        do {
-            swapElements(heap, currIndex, nextIndex);
-            currIndex = nextIndex;
-            
-            nextIndex = (currIndex * NUM_CHILDREN) + 1;
-            for (int i = (currIndex * NUM_CHILDREN) + 1; 
-                    i <= Math.min((currIndex * NUM_CHILDREN) + NUM_CHILDREN, heapSize - 1); i++) {
-                if (heap[i].compareTo(heap[nextIndex]) < 0) {
-                    nextIndex = i;
-                }
-            }
-        } while (currIndex < heapSize && nextIndex < heapSize && heap[nextIndex].compareTo(heap[currIndex]) < 0);
-                       
+        T last = heap[heapSize];
+        heap[heapSize] = null;
+        if (heapSize > 0) {
+            siftDown(0, last);
+        }
+        return removedValue;
+    }
+
+    /**
+     * Removes and returns the smallest element and inserts the given item, using a
+     * single sift down rather then one for removeMin and one for insert.
+     */
+    @Override
+    public T replaceMin(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        if (this.isEmpty()) {
+            throw new EmptyContainerException();
+        }
+
+        T removedValue = heap[0];
+        siftDown(0, item);
         return removedValue;
     }
 
@@ -107,7 +152,7 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         if (this.isEmpty()) {
             throw new EmptyContainerException();
         }
-        
+
         return heap[0];
     }
 
@@ -116,29 +161,61 @@ public class ArrayHeap<T extends Comparable<T>> implements IPriorityQueue<T> {
         if (item == null) {
             throw new IllegalArgumentException();
         }
-        
+
         // resize array containing the heap if necessary
         if (heapSize >= heap.length) {
             heap = resizeHeap(heap.length * 2);
         }
 
-        // add new element to end of heap array
-        heap[heapSize] = item;
         heapSize++;
-        
-        // percolate new node up
-        int currIndex = heapSize-1;
-        int nextIndex = heapSize-1;
-        do {
-            swapElements(heap, currIndex, nextIndex);
-            currIndex = nextIndex;
-            nextIndex = (currIndex - 1) / NUM_CHILDREN;
-        } while (currIndex >= 0 && heap[nextIndex].compareTo(heap[currIndex]) > 0);
-        
+        siftUp(heapSize - 1, item);
     }
 
     @Override
     public int size() {
         return this.heapSize;
     }
+
+    /**
+     * Places the given item at the given index or above it, moving any larger
+     * ancestors down a level. Rather then swapping at every level, we carry the
+     * item along in a local and only write it once, into its final slot.
+     */
+    private void siftUp(int index, T item) {
+        while (index > 0) {
+            int parentIndex = (index - 1) / NUM_CHILDREN;
+            if (heap[parentIndex].compareTo(item) <= 0) {
+                break;
+            }
+            heap[index] = heap[parentIndex];
+            index = parentIndex;
+        }
+        heap[index] = item;
+    }
+
+    /**
+     * Places the given item at the given index or below it, moving the smallest
+     * child up a level for as long as it's smaller then the item.
+     */
+    private void siftDown(int index, T item) {
+        while (true) {
+            int firstChild = (index * NUM_CHILDREN) + 1;
+            if (firstChild >= heapSize) {
+                break;
+            }
+            int lastChild = Math.min(firstChild + NUM_CHILDREN, heapSize);
+            int minIndex = firstChild;
+            for (int i = firstChild + 1; i < lastChild; i++) {
+                if (heap[i].compareTo(heap[minIndex]) < 0) {
+                    minIndex = i;
+                }
+            }
+            if (heap[minIndex].compareTo(item) >= 0) {
+                break;
+            }
+            heap[index] = heap[minIndex];
+            index = minIndex;
+        }
+        heap[index] = item;
+    }
 }
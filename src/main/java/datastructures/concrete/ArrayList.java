@@ -0,0 +1,221 @@
+package datastructures.concrete;
+
+import datastructures.interfaces.IList;
+import misc.exceptions.EmptyContainerException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A list that stores its items in one growable array, rather then in a node per item.
+ *
+ * Compared to DoubleLinkedList, 'get' and 'set' take constant time instead of walking
+ * the list, nothing is allocated per item (except when the array grows), and walking
+ * the list reads memory in order, which is much kinder to the cache.
+ *
+ * The array is used as a ring: the list starts at 'head' and wraps around the end of
+ * the array. That way, adding or removing at either end takes (amortized) constant
+ * time, and inserting or deleting in the middle only shifts the items on whichever
+ * side of the index is shorter.
+ *
+ * Invariants:
+ *
+ * - The capacity (items.length) is always a power of two, so wrapping around is a
+ *   mask rather then a division.
+ * - Item i is stored in items[(head + i) & (items.length - 1)].
+ * - Every slot not holding an item is null, so we don't keep removed items alive.
+ */
+public class ArrayList<T> implements IList<T> {
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private T[] items;
+    private int head;
+    private int size;
+
+    public ArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates an empty list with room for at least the given number of items before
+     * it needs to grow.
+     */
+    public ArrayList(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative: " + capacity);
+        }
+        this.items = this.allocate(Math.max(DEFAULT_CAPACITY, roundUpToPowerOfTwo(capacity)));
+        this.head = 0;
+        this.size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] allocate(int capacity) {
+        return (T[]) new Object[capacity];
+    }
+
+    @Override
+    public void add(T item) {
+        this.ensureRoomForOneMore();
+        this.items[this.slot(this.size)] = item;
+        this.size++;
+    }
+
+    @Override
+    public T remove() {
+        if (this.size == 0) {
+            throw new EmptyContainerException();
+        }
+        this.size--;
+        int slot = this.slot(this.size);
+        T output = this.items[slot];
+        this.items[slot] = null;
+        return output;
+    }
+
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.items[this.slot(index)];
+    }
+
+    @Override
+    public void set(int index, T item) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.items[this.slot(index)] = item;
+    }
+
+    @Override
+    public void insert(int index, T item) {
+        if (index < 0 || index >= this.size + 1) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.ensureRoomForOneMore();
+
+        if (index < this.size / 2) {
+            // Move the items before the index one slot back, into the slot before head
+            this.head = (this.head - 1) & (this.items.length - 1);
+            for (int i = 0; i < index; i++) {
+                this.items[this.slot(i)] = this.items[this.slot(i + 1)];
+            }
+        } else {
+            // Move the items from the index onwards one slot forward
+            for (int i = this.size; i > index; i--) {
+                this.items[this.slot(i)] = this.items[this.slot(i - 1)];
+            }
+        }
+        this.items[this.slot(index)] = item;
+        this.size++;
+    }
+
+    @Override
+    public T delete(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        T output = this.items[this.slot(index)];
+
+        if (index < this.size / 2) {
+            // Move the items before the index one slot forward, and drop the first slot
+            for (int i = index; i > 0; i--) {
+                this.items[this.slot(i)] = this.items[this.slot(i - 1)];
+            }
+            this.items[this.head] = null;
+            this.head = (this.head + 1) & (this.items.length - 1);
+        } else {
+            // Move the items after the index one slot back, and drop the last slot
+            for (int i = index; i < this.size - 1; i++) {
+                this.items[this.slot(i)] = this.items[this.slot(i + 1)];
+            }
+            this.items[this.slot(this.size - 1)] = null;
+        }
+        this.size--;
+        return output;
+    }
+
+    @Override
+    public int indexOf(T item) {
+        for (int i = 0; i < this.size; i++) {
+            if (objsEqual(this.items[this.slot(i)], item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public boolean contains(T other) {
+        return this.indexOf(other) != -1;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new ArrayListIterator<>(this);
+    }
+
+    /**
+     * Returns the slot of the array holding the item at the given index.
+     */
+    private int slot(int index) {
+        return (this.head + index) & (this.items.length - 1);
+    }
+
+    /**
+     * Doubles the capacity if the array is full, moving the items to the start of
+     * the new array.
+     */
+    private void ensureRoomForOneMore() {
+        if (this.size < this.items.length) {
+            return;
+        }
+        T[] newItems = this.allocate(this.items.length * 2);
+        int firstPart = this.items.length - this.head;
+        System.arraycopy(this.items, this.head, newItems, 0, firstPart);
+        System.arraycopy(this.items, 0, newItems, firstPart, this.head);
+        this.items = newItems;
+        this.head = 0;
+    }
+
+    private static boolean objsEqual(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    private static int roundUpToPowerOfTwo(int n) {
+        int output = Integer.highestOneBit(Math.max(1, n));
+        return output == n ? output : output * 2;
+    }
+
+    private static class ArrayListIterator<T> implements Iterator<T> {
+        private final ArrayList<T> list;
+        private int index;
+
+        public ArrayListIterator(ArrayList<T> list) {
+            this.list = list;
+            this.index = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.index < this.list.size;
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T output = this.list.items[this.list.slot(this.index)];
+            this.index++;
+            return output;
+        }
+    }
+}
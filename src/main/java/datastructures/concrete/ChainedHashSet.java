@@ -1,6 +1,6 @@
 package datastructures.concrete;
 
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.OpenAddressingDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
 
@@ -15,8 +15,9 @@ public class ChainedHashSet<T> implements ISet<T> {
     private IDictionary<T, Boolean> map;
 
     public ChainedHashSet() {
-        // No need to change this method
-        this.map = new ChainedHashDictionary<>();
+        // Despite the name, an open-addressing dictionary is faster and much smaller
+        // than a chained one (see OpenAddressingDictionary).
+        this.map = new OpenAddressingDictionary<>();
     }
 
     @Override
@@ -0,0 +1,75 @@
+package datastructures.concrete;
+
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A set that any number of threads can use at once. See ConcurrentHashDictionary
+ * for how it works, and what its iterators see.
+ */
+public class ConcurrentHashSet<T> implements ISet<T> {
+    private final IDictionary<T, Boolean> map;
+
+    public ConcurrentHashSet() {
+        this.map = new ConcurrentHashDictionary<>();
+    }
+
+    @Override
+    public void add(T item) {
+        this.map.put(item, true);
+    }
+
+    @Override
+    public boolean addIfAbsent(T item) {
+        return this.map.putIfAbsent(item, true) == null;
+    }
+
+    @Override
+    public void remove(T item) {
+        // Checking first and then removing could fail if another thread removes
+        // the item in between, so we just try.
+        try {
+            this.map.remove(item);
+        } catch (NoSuchKeyException ex) {
+            throw new NoSuchElementException();
+        }
+    }
+
+    @Override
+    public boolean contains(T item) {
+        return this.map.containsKey(item);
+    }
+
+    @Override
+    public int size() {
+        return this.map.size();
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new SetIterator<>(this.map.iterator());
+    }
+
+    private static class SetIterator<T> implements Iterator<T> {
+        private final Iterator<KVPair<T, Boolean>> iter;
+
+        public SetIterator(Iterator<KVPair<T, Boolean>> iter) {
+            this.iter = iter;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iter.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return this.iter.next().getKey();
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package datastructures.concrete;
+
+import misc.exceptions.NoSuchKeyException;
+
+/**
+ * A hash map from objects to ints that never boxes its values.
+ *
+ * An IDictionary<K, Integer> allocates an Integer for (almost) every value it's
+ * given, and a KVPair for every entry it iterates over. This map stores the keys
+ * and plain int values in parallel arrays, using the same open addressing scheme as
+ * OpenAddressingDictionary, so nothing is allocated except when the table grows.
+ * Counting things ("how often does each word occur?") with 'addTo' creates no
+ * garbage at all.
+ *
+ * To iterate over the entries without allocating anything per entry, use a Cursor:
+ *
+ *   ObjectIntHashMap<String>.Cursor cursor = map.cursor();
+ *   while (cursor.advance()) {
+ *       ... cursor.key() ... cursor.value() ...
+ *   }
+ */
+public class ObjectIntHashMap<K> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    // A slot is empty if its key is null. We keep the entry with the null key (if
+    // any) on the side.
+    private K[] keys;
+    private int[] values;
+    private int[] hashes;
+    private int size;
+
+    private boolean hasNullKey;
+    private int nullValue;
+
+    public ObjectIntHashMap() {
+        this.allocate(DEFAULT_CAPACITY);
+        this.size = 0;
+        this.hasNullKey = false;
+        this.nullValue = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = (K[]) new Object[capacity];
+        this.values = new int[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    /**
+     * Returns the value of the given key.
+     *
+     * @throws NoSuchKeyException  if the map doesn't contain the key
+     */
+    public int get(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            return this.nullValue;
+        }
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        if (this.keys[slot] == null) {
+            throw new NoSuchKeyException();
+        }
+        return this.values[slot];
+    }
+
+    /**
+     * Returns the value of the given key, or the default value if the map doesn't
+     * contain the key.
+     */
+    public int getOrDefault(K key, int defaultValue) {
+        if (key == null) {
+            return this.hasNullKey ? this.nullValue : defaultValue;
+        }
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        return this.keys[slot] == null ? defaultValue : this.values[slot];
+    }
+
+    /**
+     * Sets the value of the given key, replacing its old value if it had one.
+     */
+    public void put(K key, int value) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                this.hasNullKey = true;
+                this.size++;
+            }
+            this.nullValue = value;
+            return;
+        }
+        // This may resize the table, so we can't look up 'values' until it's done.
+        int slot = this.findOrInsertSlot(key);
+        this.values[slot] = value;
+    }
+
+    /**
+     * Adds the given amount to the value of the given key (treating a missing key as
+     * having the value 0), and returns the new value.
+     */
+    public int addTo(K key, int amount) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                this.hasNullKey = true;
+                this.nullValue = 0;
+                this.size++;
+            }
+            this.nullValue += amount;
+            return this.nullValue;
+        }
+        int slot = this.findOrInsertSlot(key);
+        this.values[slot] += amount;
+        return this.values[slot];
+    }
+
+    /**
+     * Removes the given key and returns its value.
+     *
+     * @throws NoSuchKeyException  if the map doesn't contain the key
+     */
+    public int remove(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            this.hasNullKey = false;
+            this.size--;
+            return this.nullValue;
+        }
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        if (this.keys[slot] == null) {
+            throw new NoSuchKeyException();
+        }
+        int output = this.values[slot];
+
+        // Move back any entries that would no longer be found past the hole (see
+        // OpenAddressingDictionary.remove).
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (this.keys[next] != null) {
+            int ideal = this.hashes[next] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                this.hashes[hole] = this.hashes[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.keys[hole] = null;
+        this.size--;
+        return output;
+    }
+
+    public boolean containsKey(K key) {
+        if (key == null) {
+            return this.hasNullKey;
+        }
+        return this.keys[this.findSlot(key, spread(key.hashCode()))] != null;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes every entry, keeping the current capacity.
+     */
+    public void clear() {
+        for (int i = 0; i < this.keys.length; i++) {
+            this.keys[i] = null;
+        }
+        this.hasNullKey = false;
+        this.size = 0;
+    }
+
+    /**
+     * Returns a cursor positioned before the first entry. The map must not be
+     * modified while the cursor is in use.
+     */
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates over the entries of the map, in no particular order.
+     */
+    public class Cursor {
+        // The slot of the current entry, or -1 for the entry with the null key.
+        private int slot;
+
+        private Cursor() {
+            this.slot = ObjectIntHashMap.this.hasNullKey ? -2 : -1;
+        }
+
+        /**
+         * Moves to the next entry, and returns false if there is none.
+         */
+        public boolean advance() {
+            K[] keys = ObjectIntHashMap.this.keys;
+            do {
+                this.slot++;
+            } while (this.slot >= 0 && this.slot < keys.length && keys[this.slot] == null);
+            return this.slot < keys.length;
+        }
+
+        public K key() {
+            return this.slot < 0 ? null : ObjectIntHashMap.this.keys[this.slot];
+        }
+
+        public int value() {
+            return this.slot < 0 ? ObjectIntHashMap.this.nullValue : ObjectIntHashMap.this.values[this.slot];
+        }
+    }
+
+    /**
+     * Returns the slot containing the given (non-null) key, or the empty slot where
+     * it should be inserted if it isn't in the table.
+     */
+    private int findSlot(K key, int hash) {
+        int mask = this.keys.length - 1;
+        int slot = hash & mask;
+        while (this.keys[slot] != null) {
+            if (this.hashes[slot] == hash && this.keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot containing the given (non-null) key, first inserting it with
+     * the value 0 if it isn't in the table.
+     */
+    private int findOrInsertSlot(K key) {
+        int hash = spread(key.hashCode());
+        int slot = this.findSlot(key, hash);
+        if (this.keys[slot] == null) {
+            if (2 * (this.size + 1) > this.keys.length) {
+                this.resize(this.keys.length * 2);
+                slot = this.findSlot(key, hash);
+            }
+            this.keys[slot] = key;
+            this.values[slot] = 0;
+            this.hashes[slot] = hash;
+            this.size++;
+        }
+        return slot;
+    }
+
+    private void resize(int capacity) {
+        K[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        int[] oldHashes = this.hashes;
+        this.allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+                this.hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Mixes the high bits of the hash code into the low bits, since we only use
+     * the low bits to pick a slot.
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
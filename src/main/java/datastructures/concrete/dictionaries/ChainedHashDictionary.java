@@ -46,7 +46,7 @@ public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
     private IDictionary<K, V> getChain(K key) {
         int chainIndex = 0;
         if (key != null) {
-            chainIndex = (Math.abs(key.hashCode()) % chains.length);
+            chainIndex = Math.floorMod(key.hashCode(), chains.length);
         }
         
         // add new chain at the position in the dictionary if one doesn't already exist
@@ -68,7 +68,7 @@ public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
             if (oldChains[i] != null) {
                 for (KVPair<K, V> pair : oldChains[i]) {
                     // determines hash code of key with new length
-                    int newIndex = Math.abs(pair.getKey().hashCode()) % newLength;
+                    int newIndex = Math.floorMod(pair.getKey().hashCode(), newLength);
                     
                     // add new chain at the new position if one doesn't already exist
                     if (newChains[newIndex] == null) {
@@ -108,7 +108,7 @@ public class ChainedHashDictionary<K, V> implements IDictionary<K, V> {
     public V remove(K key) {
         int hashIndex = 0;
         if (key != null) {
-            hashIndex = Math.abs(key.hashCode()) % chains.length;
+            hashIndex = Math.floorMod(key.hashCode(), chains.length);
         }
         IDictionary<K, V> chain = getChain(key);
         V removedValue = chain.remove(key);
@@ -0,0 +1,178 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.concrete.ArrayList;
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.IList;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+/**
+ * A hash dictionary that any number of threads can use at once.
+ *
+ * Guarding a whole dictionary with one lock would make every thread wait for every
+ * other one. Instead, we split the entries into a fixed number of "stripes" by hash
+ * code, each its own OpenAddressingDictionary with its own lock. Two threads only
+ * ever wait for each other if they use keys in the same stripe at the same time.
+ *
+ * putIfAbsent and computeIfAbsent are atomic: the check and the update happen while
+ * holding the stripe's lock. computeIfAbsent calls its function while holding the
+ * lock too, so the function should be quick, and must not use this dictionary.
+ *
+ * Iterators are "weakly consistent": they never throw because of concurrent updates,
+ * and see each stripe as it was when they reached it. So they see every entry that
+ * existed for the whole iteration, and may or may not see entries added or removed
+ * halfway through.
+ */
+public class ConcurrentHashDictionary<K, V> implements IDictionary<K, V> {
+    private static final int STRIPE_BITS = 6;
+    private static final int NUM_STRIPES = 1 << STRIPE_BITS;
+
+    // Each stripe is also the lock guarding it.
+    private final OpenAddressingDictionary<K, V>[] stripes;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public ConcurrentHashDictionary() {
+        this.stripes = (OpenAddressingDictionary<K, V>[]) new OpenAddressingDictionary[NUM_STRIPES];
+        for (int i = 0; i < NUM_STRIPES; i++) {
+            this.stripes[i] = new OpenAddressingDictionary<>();
+        }
+    }
+
+    @Override
+    public V get(K key) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.getOrDefault(key, defaultValue);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            stripe.put(key, value);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.putIfAbsent(key, value);
+        }
+    }
+
+    @Override
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.computeIfAbsent(key, function);
+        }
+    }
+
+    @Override
+    public V remove(K key) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.remove(key);
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        OpenAddressingDictionary<K, V> stripe = this.getStripe(key);
+        synchronized (stripe) {
+            return stripe.containsKey(key);
+        }
+    }
+
+    /**
+     * Returns the number of key-value pairs. If other threads are updating the
+     * dictionary at the same time, this is only an estimate.
+     */
+    @Override
+    public int size() {
+        int output = 0;
+        for (OpenAddressingDictionary<K, V> stripe : this.stripes) {
+            synchronized (stripe) {
+                output += stripe.size();
+            }
+        }
+        return output;
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new ConcurrentIterator<>(this.stripes);
+    }
+
+    /**
+     * Returns the stripe the given key belongs to.
+     *
+     * The stripes pick slots using the low bits of the mixed hash code, so we use
+     * the high bits here: otherwise every key in a stripe would share its low bits,
+     * and pile up in the same few slots.
+     */
+    private OpenAddressingDictionary<K, V> getStripe(K key) {
+        if (key == null) {
+            return this.stripes[0];
+        }
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return this.stripes[h >>> (32 - STRIPE_BITS)];
+    }
+
+    /**
+     * Copies the entries of one stripe at a time (while holding its lock), and
+     * iterates over the copy.
+     */
+    private static class ConcurrentIterator<K, V> implements Iterator<KVPair<K, V>> {
+        private final OpenAddressingDictionary<K, V>[] stripes;
+        private int nextStripe;
+        private Iterator<KVPair<K, V>> current;
+
+        public ConcurrentIterator(OpenAddressingDictionary<K, V>[] stripes) {
+            this.stripes = stripes;
+            this.nextStripe = 0;
+            this.current = null;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.current == null || !this.current.hasNext()) {
+                if (this.nextStripe == this.stripes.length) {
+                    return false;
+                }
+                OpenAddressingDictionary<K, V> stripe = this.stripes[this.nextStripe];
+                IList<KVPair<K, V>> copy = new ArrayList<>(stripe.size());
+                synchronized (stripe) {
+                    for (KVPair<K, V> pair : stripe) {
+                        copy.add(pair);
+                    }
+                }
+                this.current = copy.iterator();
+                this.nextStripe++;
+            }
+            return true;
+        }
+
+        @Override
+        public KVPair<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return this.current.next();
+        }
+    }
+}
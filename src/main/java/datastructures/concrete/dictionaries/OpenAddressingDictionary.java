@@ -0,0 +1,270 @@
+package datastructures.concrete.dictionaries;
+
+import datastructures.concrete.KVPair;
+import datastructures.interfaces.IDictionary;
+import misc.exceptions.NoSuchKeyException;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash dictionary that stores its entries directly in arrays, rather then in a
+ * chain per bucket.
+ *
+ * Keys, values and hash codes are kept in three parallel arrays. An entry whose slot
+ * is taken goes into the next free slot after it ("linear probing"), so a lookup
+ * scans forward from the key's slot until it finds the key or an empty slot. Since
+ * the table is never more than half full, that's only a slot or two on average, and
+ * neighbouring slots are usually in the same cache line. Nothing is allocated per
+ * entry: adding an entry only ever allocates when the table grows.
+ *
+ * The capacity is always a power of two, so we can pick a slot by masking the hash
+ * code rather then dividing. Masking only looks at the low bits though, so we first
+ * mix the high bits into the low ones: otherwise keys whose hash codes only differ
+ * in their high bits (like many small Doubles) would all share a slot.
+ *
+ * Removing an entry shifts the entries after it back into the hole where needed, so
+ * there are no "deleted" markers slowing down later lookups.
+ *
+ * Invariants:
+ *
+ * - keys[i] is null if and only if slot i is empty.
+ * - Every entry is stored in its ideal slot (its mixed hash masked by the capacity)
+ *   or after it, with no empty slots in between.
+ * - The null key (which can't be stored in the arrays) is kept separately.
+ */
+public class OpenAddressingDictionary<K, V> implements IDictionary<K, V> {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private K[] keys;
+    private V[] values;
+    private int[] hashes;
+    private int size;
+
+    private boolean hasNullKey;
+    private V nullValue;
+
+    public OpenAddressingDictionary() {
+        this.allocate(DEFAULT_CAPACITY);
+        this.size = 0;
+        this.hasNullKey = false;
+        this.nullValue = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void allocate(int capacity) {
+        this.keys = (K[]) new Object[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.hashes = new int[capacity];
+    }
+
+    @Override
+    public V get(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            return this.nullValue;
+        }
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        if (this.keys[slot] == null) {
+            throw new NoSuchKeyException();
+        }
+        return this.values[slot];
+    }
+
+    @Override
+    public V getOrDefault(K key, V defaultValue) {
+        if (key == null) {
+            return this.hasNullKey ? this.nullValue : defaultValue;
+        }
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        return this.keys[slot] == null ? defaultValue : this.values[slot];
+    }
+
+    @Override
+    public void put(K key, V value) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                this.hasNullKey = true;
+                this.size++;
+            }
+            this.nullValue = value;
+            return;
+        }
+
+        int hash = spread(key.hashCode());
+        int slot = this.findSlot(key, hash);
+        if (this.keys[slot] != null) {
+            this.values[slot] = value;
+            return;
+        }
+
+        // Keep the table at most half full, so probe sequences stay short.
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.resize(this.keys.length * 2);
+            slot = this.findSlot(key, hash);
+        }
+        this.keys[slot] = key;
+        this.values[slot] = value;
+        this.hashes[slot] = hash;
+        this.size++;
+    }
+
+    @Override
+    public V remove(K key) {
+        if (key == null) {
+            if (!this.hasNullKey) {
+                throw new NoSuchKeyException();
+            }
+            V output = this.nullValue;
+            this.hasNullKey = false;
+            this.nullValue = null;
+            this.size--;
+            return output;
+        }
+
+        int slot = this.findSlot(key, spread(key.hashCode()));
+        if (this.keys[slot] == null) {
+            throw new NoSuchKeyException();
+        }
+        V output = this.values[slot];
+
+        // Step 1: walk the entries after the hole. Any entry whose ideal slot isn't
+        // between the hole and where it is now would no longer be found if we left
+        // the hole empty, so we move it into the hole, which moves the hole forward.
+        int mask = this.keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (this.keys[next] != null) {
+            int ideal = this.hashes[next] & mask;
+            if (((next - ideal) & mask) >= ((next - hole) & mask)) {
+                this.keys[hole] = this.keys[next];
+                this.values[hole] = this.values[next];
+                this.hashes[hole] = this.hashes[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+
+        // Step 2: empty whichever slot we ended up with
+        this.keys[hole] = null;
+        this.values[hole] = null;
+        this.size--;
+        return output;
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        if (key == null) {
+            return this.hasNullKey;
+        }
+        return this.keys[this.findSlot(key, spread(key.hashCode()))] != null;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public Iterator<KVPair<K, V>> iterator() {
+        return new OpenAddressingIterator<>(this);
+    }
+
+    /**
+     * Returns the slot containing the given (non-null) key, or the empty slot where
+     * it should be inserted if it isn't in the table.
+     */
+    private int findSlot(K key, int hash) {
+        int mask = this.keys.length - 1;
+        int slot = hash & mask;
+        while (this.keys[slot] != null) {
+            if (this.hashes[slot] == hash && this.keys[slot].equals(key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Moves every entry into a new table of the given capacity, reusing the cached
+     * hash codes.
+     */
+    private void resize(int capacity) {
+        K[] oldKeys = this.keys;
+        V[] oldValues = this.values;
+        int[] oldHashes = this.hashes;
+        this.allocate(capacity);
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = oldHashes[i] & mask;
+                while (this.keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                this.keys[slot] = oldKeys[i];
+                this.values[slot] = oldValues[i];
+                this.hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Mixes the high bits of the hash code into the low bits, since we only use
+     * the low bits to pick a slot.
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Visits the null key (if there is one), and then every slot in order.
+     */
+    private static class OpenAddressingIterator<K, V> implements Iterator<KVPair<K, V>> {
+        private final OpenAddressingDictionary<K, V> dictionary;
+        private boolean visitedNullKey;
+        private int slot;
+
+        public OpenAddressingIterator(OpenAddressingDictionary<K, V> dictionary) {
+            this.dictionary = dictionary;
+            this.visitedNullKey = !dictionary.hasNullKey;
+            this.slot = this.nextSlot(0);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !this.visitedNullKey || this.slot < this.dictionary.keys.length;
+        }
+
+        @Override
+        public KVPair<K, V> next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (!this.visitedNullKey) {
+                this.visitedNullKey = true;
+                return new KVPair<>(null, this.dictionary.nullValue);
+            }
+            KVPair<K, V> output = new KVPair<>(this.dictionary.keys[this.slot], this.dictionary.values[this.slot]);
+            this.slot = this.nextSlot(this.slot + 1);
+            return output;
+        }
+
+        /**
+         * Returns the first non-empty slot at or after the given one, or the capacity
+         * if there is none.
+         */
+        private int nextSlot(int start) {
+            K[] keys = this.dictionary.keys;
+            int slot = start;
+            while (slot < keys.length && keys[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+    }
+}
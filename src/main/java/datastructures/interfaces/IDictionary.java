@@ -4,6 +4,7 @@ import datastructures.concrete.KVPair;
 import misc.exceptions.NoSuchKeyException;
 
 import java.util.Iterator;
+import java.util.function.Function;
 
 /**
  * Represents a data structure that contains a bunch of key-value mappings. Each key must be unique.
@@ -39,6 +40,38 @@ public interface IDictionary<K, V> extends Iterable<KVPair<K, V>> {
      */
     public void put(K key, V value);
 
+    /**
+     * Adds the key-value pair to the dictionary, unless the key already exists in the
+     * dictionary. Returns the value the key had before, or null if it didn't exist.
+     *
+     * Note: The interface provides a default implementation, but thread-safe
+     *       dictionaries override it so that checking for the key and adding it
+     *       happen as a single step.
+     */
+    public default V putIfAbsent(K key, V value) {
+        if (this.containsKey(key)) {
+            return this.get(key);
+        }
+        this.put(key, value);
+        return null;
+    }
+
+    /**
+     * Returns the value corresponding to the given key. If the dictionary does not
+     * contain the key, first adds it with the value the given function computes
+     * from the key.
+     *
+     * Note: As with putIfAbsent, thread-safe dictionaries override this so the
+     *       function is called at most once per key, even if several threads ask
+     *       for the same key at once.
+     */
+    public default V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        if (!this.containsKey(key)) {
+            this.put(key, function.apply(key));
+        }
+        return this.get(key);
+    }
+
     /**
      * Remove the key-value pair corresponding to the given key from the dictionary.
      *
@@ -36,6 +36,23 @@ public interface IPriorityQueue<T extends Comparable<T>> {
      */
     void insert(T item);
 
+    /**
+     * Removes and returns the smallest element in the queue, and inserts
+     * the given item. This is the same as calling removeMin and then insert,
+     * but implementations can usually do it in one step.
+     *
+     * @throws IllegalArgumentException  if the item is null
+     * @throws EmptyContainerException   if the queue is empty
+     */
+    default T replaceMin(T item) {
+        if (item == null) {
+            throw new IllegalArgumentException();
+        }
+        T output = this.removeMin();
+        this.insert(item);
+        return output;
+    }
+
     /**
      * Returns the number of elements contained within this queue.
      */
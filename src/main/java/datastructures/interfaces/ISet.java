@@ -14,6 +14,23 @@ public interface ISet<T> extends Iterable<T> {
      */
     public void add(T item);
 
+    /**
+     * Adds the given item to the set, unless it already exists in the set. Returns
+     * true if the item was added.
+     *
+     * Note: The interface provides a default implementation, but thread-safe sets
+     *       override it so that checking for the item and adding it happen as a
+     *       single step: if several threads add the same item at once, exactly one
+     *       of them gets 'true'.
+     */
+    public default boolean addIfAbsent(T item) {
+        if (this.contains(item)) {
+            return false;
+        }
+        this.add(item);
+        return true;
+    }
+
     /**
      * Removes the given item from the set.
      *
@@ -0,0 +1,20 @@
+package misc;
+
+/**
+ * Hash functions shared by everything that fingerprints data, so fingerprints
+ * computed in different places are always built from the same pieces.
+ */
+public final class Hashing {
+    private Hashing() {}
+
+    /**
+     * The finalizer from the SplitMix64 generator: scrambles every bit of the input
+     * into every bit of the output.
+     */
+    public static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
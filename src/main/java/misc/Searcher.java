@@ -1,10 +1,12 @@
 package misc;
 
 import datastructures.concrete.ArrayHeap;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.IPriorityQueue;
 
+import java.util.Iterator;
+
 public class Searcher {
     /**
      * This method takes the input list and returns the top k elements
@@ -37,18 +39,24 @@ public class Searcher {
             throw new IllegalArgumentException();
         }
 
-        IPriorityQueue<T> heap = new ArrayHeap<T>();
-                
-        for (T element : input) {
-            if (heap.size() < k) {
-                heap.insert(element);
-            } else if (heap.size() > 0 && element.compareTo(heap.peekMin()) > 0) {
-                heap.removeMin();
-                heap.insert(element);
+        // Step 1: build a heap out of the first k elements in one go
+        Iterator<T> iter = input.iterator();
+        IList<T> firstK = new ArrayList<>(Math.min(k, input.size()));
+        while (firstK.size() < k && iter.hasNext()) {
+            firstK.add(iter.next());
+        }
+        IPriorityQueue<T> heap = new ArrayHeap<>(firstK);
+
+        // Step 2: every later element that beats the smallest one we're keeping
+        // takes its place
+        while (iter.hasNext()) {
+            T element = iter.next();
+            if (heap.size() > 0 && element.compareTo(heap.peekMin()) > 0) {
+                heap.replaceMin(element);
             }
         }
-        
-        IList<T> topKSortedList = new DoubleLinkedList<T>();
+
+        IList<T> topKSortedList = new ArrayList<T>(heap.size());
         
         while (heap.size() > 0) {
             topKSortedList.add(heap.removeMin());
@@ -1,10 +1,27 @@
 package search;
 
+import search.analyzers.JacobiSolver;
+import search.analyzers.PageRankSolver;
+import search.misc.Analyzer;
+
 public class Main {
     // The dataset to index and search.
     // MUST be the name of one of the folders in the 'data' folder.
     public static final String DATA_FOLDER_NAME = "gutenberg";
 
+    // How to compute the page ranks of the dataset. Every solver gives the same
+    // ranks, but which one is fastest depends on the shape of the link graph:
+    // try JacobiSolver, GaussSeidelSolver and ExtrapolationSolver and compare
+    // the times printed while indexing.
+    public static final PageRankSolver PAGE_RANK_SOLVER =
+            new JacobiSolver(SearchEngine.PAGE_RANK_THREADS);
+
+    // How to turn the words of pages and queries into the terms we index and search
+    // for. Pass your own list of filters to 'new Analyzer(...)' (see Analyzer.english)
+    // to change what counts as the same term. Changing this rebuilds the index on
+    // the next run.
+    public static final Analyzer ANALYZER = Analyzer.english();
+
     // The name of your search engine (feel free to change this).
     public static final String SITE_TITLE = "Noodle";
 
@@ -15,7 +32,7 @@ public class Main {
 
     public static void main(String[] args) {
         System.out.println("Indexing web pages...");
-        SearchEngine engine = new SearchEngine(DATA_FOLDER_NAME);
+        SearchEngine engine = new SearchEngine(DATA_FOLDER_NAME, PAGE_RANK_SOLVER, ANALYZER);
 
         System.out.println("Setting up web server...");
         Webapp app = new Webapp(engine, SITE_TITLE, PORT);
@@ -1,63 +1,395 @@
 package search;
 
 import datastructures.concrete.ChainedHashSet;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
-import misc.Searcher;
+import search.analyzers.JacobiSolver;
+import search.analyzers.LinkGraph;
 import search.analyzers.PageRankAnalyzer;
+import search.analyzers.PageRankSolution;
+import search.analyzers.PageRankSolver;
+import search.analyzers.QueryVector;
 import search.analyzers.TfIdfAnalyzer;
+import search.index.DocumentIdRegistry;
+import search.index.IndexDirectory;
+import search.index.IndexSnapshot;
+import search.index.PageCache;
+import search.index.PageCacheWriter;
+import search.index.QueryPlan;
+import search.index.Segment;
+import search.index.SegmentWriter;
+import search.index.TieredMergePolicy;
+import search.index.TopKCollector;
+import search.misc.Analyzer;
 import search.misc.Bridge;
+import search.misc.SegmentedLruCache;
 import search.misc.exceptions.DataExtractionException;
+import search.models.Phrase;
+import search.models.Query;
 import search.models.Result;
 import search.models.Webpage;
-import search.models.WebpageSummary;
 
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class SearchEngine {
     public static final double PAGE_RANK_DECAY = 0.85;
     public static final double PAGE_RANK_EPSILON = 0.0001;
     public static final int PAGE_RANK_ITERATION_LIMIT = 200;
+    public static final int PAGE_RANK_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final String PAGE_RANK_SAVE_FILE = "pagerank.sav";
+    public static final String PAGE_CACHE_FILE = "pagecache.bin";
+    public static final int LOAD_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int LOAD_WINDOW_PER_THREAD = 4;
+    public static final long LOAD_PROGRESS_INTERVAL_MILLIS = 5000;
 
-    private ISet<WebpageSummary> pages;
-    private TfIdfAnalyzer tfIdfAnalyzer;
-    private PageRankAnalyzer pageRankAnalyzer;
+    public static final long REFRESH_INTERVAL_SECONDS = 60;
+    public static final int MERGE_FACTOR = 10;
+    public static final int MIN_SEGMENT_DOCS = 1000;
+    public static final int RESULT_CACHE_SIZE = 1024;
+    public static final double RESULT_CACHE_PROTECTED_FRACTION = 0.8;
+    public static final int SEARCH_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final long MIN_SHARD_COST = 50000;
+    public static final boolean INDEX_POSITIONS = true;
+    public static final double PROXIMITY_WEIGHT = 0.5;
+
+    private final Path root;
+    private final PageRankSolver pageRankSolver;
+    private final Analyzer analyzer;
+    private final IndexDirectory directory;
+    private final TieredMergePolicy mergePolicy;
+
+    // Adds new pages to the index and merges segments in the background. Only
+    // this thread (or the constructor, before it starts) ever writes to the index.
+    private final ScheduledExecutorService maintenance;
+
+    // The current snapshot of the index. Every query reads this exactly once, so it
+    // sees a consistent index even if a new snapshot is committed halfway through.
+    private volatile IndexSnapshot index;
+
+    // The results of recent queries. Entries are only valid for the snapshot they
+    // were computed with, so we empty it whenever we replace the snapshot.
+    private final SegmentedLruCache<CachedQuery, IList<Result>> resultCache;
+
+    // Shared by every query that's expensive enough to split into shards (see
+    // chooseNumShards), or null if there's only one core to run them on.
+    private final ForkJoinPool searchPool;
 
     public SearchEngine(String dataFolderName) {
+        this(dataFolderName, new JacobiSolver(PAGE_RANK_THREADS));
+    }
+
+    public SearchEngine(String dataFolderName, PageRankSolver pageRankSolver) {
+        this(dataFolderName, pageRankSolver, Analyzer.english());
+    }
+
+    /**
+     * Indexes every webpage in the given folder, computing the page ranks using the
+     * given solver, and turning the words of each page into terms using the given
+     * analyzer.
+     *
+     * The index is saved next to the folder, so if none of the webpages changed
+     * since the last run, we open that instead. If pages were only added (by the
+     * scraper, say), we only index the new pages.
+     *
+     * Once the index is ready, we keep checking the folder for new pages in the
+     * background (see refresh).
+     */
+    public SearchEngine(String dataFolderName, PageRankSolver pageRankSolver, Analyzer analyzer) {
+        this(dataFolderName, pageRankSolver, analyzer, INDEX_POSITIONS);
+    }
+
+    /**
+     * Like the constructor above, but also chooses whether the index stores the
+     * position of every word. Without positions, the index is smaller, but phrases
+     * match any page containing all of their words, and nothing gets a proximity
+     * boost (see getTopKResults).
+     */
+    public SearchEngine(String dataFolderName, PageRankSolver pageRankSolver, Analyzer analyzer,
+                        boolean indexPositions) {
         long start = System.currentTimeMillis();
-        ISet<Webpage> webpages = this.collectWebpages(Paths.get("data", dataFolderName));
+        this.root = Paths.get("data", dataFolderName);
+        this.pageRankSolver = pageRankSolver;
+        this.analyzer = analyzer;
+        this.directory = new IndexDirectory(this.root, analyzer, indexPositions);
+        this.mergePolicy = new TieredMergePolicy(MERGE_FACTOR, MIN_SEGMENT_DOCS);
+        this.resultCache = new SegmentedLruCache<>(RESULT_CACHE_SIZE, RESULT_CACHE_PROTECTED_FRACTION);
+        this.searchPool = SEARCH_THREADS > 1 ? new ForkJoinPool(SEARCH_THREADS) : null;
+
+        this.maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.index = this.directory.openLatest();
+        if (this.index != null) {
+            long end = System.currentTimeMillis() - start;
+            System.out.println("Opened index (" + (end / 1000.0) + " sec)");
+        }
+        this.update();
+
+        this.maintenance.scheduleWithFixedDelay(() -> runSafely(this::update),
+                REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Indexes any webpages added to the folder since the index was last updated, and
+     * waits until they're searchable. We also do this periodically in the background,
+     * so there's usually no need to call this.
+     */
+    public void refresh() {
+        try {
+            this.maintenance.submit(this::update).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+    }
+
+    /**
+     * Runs the given task, reporting any exception rather then throwing it. If a
+     * periodic task throws, the executor silently stops running it, so we report the
+     * problem and carry on instead.
+     */
+    private static void runSafely(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException ex) {
+            System.out.println("Could not update index: " + ex);
+        }
+    }
+
+    /**
+     * Brings the index up to date with the files in the folder.
+     *
+     * Segments are never modified, so if every file we indexed before is unchanged,
+     * we index the new files into a new segment. If any file we indexed changed or
+     * disappeared, we rebuild the index from scratch.
+     */
+    private void update() {
+        IList<Path> files = this.findWebpageFiles();
+        long[] hashes = PageCache.hashSourceFiles(this.root, files);
+        IndexSnapshot current = this.index;
+        if (current != null && current.getSourceFingerprint() == PageCache.computeSourceFingerprint(hashes)) {
+            return;
+        }
+
+        IList<Path> newFiles = new ArrayList<>();
+        int numOldFiles = 0;
+        int i = 0;
+        for (Path file : files) {
+            if (current != null && current.containsSource(hashes[i])) {
+                numOldFiles++;
+            } else {
+                newFiles.add(file);
+            }
+            i++;
+        }
+
+        if (current != null && numOldFiles == current.numSources()) {
+            this.publish(this.addPages(current, newFiles, hashes));
+        } else {
+            this.publish(this.buildIndex(files, hashes));
+        }
+
+        // Merging can take a while, so we queue it up rather then making whoever
+        // asked for the update wait for it.
+        this.maintenance.execute(() -> runSafely(this::mergeSegments));
+    }
+
+    /**
+     * Indexes the given webpages as a single segment and commits it, replacing whatever
+     * was in the index before.
+     */
+    private IndexSnapshot buildIndex(IList<Path> files, long[] hashes) {
+        long start = System.currentTimeMillis();
+        PageCache pages = this.openPageCache(files, PageCache.computeSourceFingerprint(hashes));
         long end = System.currentTimeMillis() - start;
         System.out.println("Done loading pages (" + (end / 1000.0) + " sec)");
 
-        this.pages = this.extractWebpageSummaries(webpages);
-        System.out.println("Done extracting");
-
         start = System.currentTimeMillis();
-        this.tfIdfAnalyzer = new TfIdfAnalyzer(webpages);
-        this.pageRankAnalyzer = new PageRankAnalyzer(
-                webpages,
-                PAGE_RANK_DECAY,
-                PAGE_RANK_EPSILON,
-                PAGE_RANK_ITERATION_LIMIT);
+        Path segmentPath = this.directory.newSegmentPath();
+        SegmentWriter writer = new SegmentWriter(segmentPath, this.analyzer, this.directory.storesPositions());
+        writer.addAll(pages);
+        writer.finish();
+
+        IndexSnapshot output = this.commit(new Segment[] {Segment.open(segmentPath)}, hashes);
         end = System.currentTimeMillis() - start;
         System.out.println("Done indexing (" + (end / 1000.0) + " sec)");
+        return output;
     }
 
-    public double computeScore(IList<String> query, URI uri) {
-        double tfIdf = this.tfIdfAnalyzer.computeRelevance(query, uri);
-        double pageRank = this.pageRankAnalyzer.computePageRank(uri);
+    /**
+     * Indexes the webpages in the given files as a new segment, and commits a snapshot
+     * with the segments of the given one plus the new segment.
+     *
+     * Pages with the same URI as a page already in the index are skipped.
+     */
+    private IndexSnapshot addPages(IndexSnapshot current, IList<Path> files, long[] hashes) {
+        long start = System.currentTimeMillis();
+        Path segmentPath = this.directory.newSegmentPath();
+        SegmentWriter writer = new SegmentWriter(segmentPath, this.analyzer, this.directory.storesPositions());
+        ISet<URI> added = new ChainedHashSet<>();
+        Bridge.mapInOrder(files, file -> Webpage.load(file.toUri()), LOAD_THREADS,
+                LOAD_THREADS * LOAD_WINDOW_PER_THREAD, page -> {
+                    if (!current.containsUri(page.getUri()) && !added.contains(page.getUri())) {
+                        added.add(page.getUri());
+                        writer.add(page);
+                    }
+                });
+        writer.finish();
+
+        // If there was nothing new after all, we still commit (so we remember we've
+        // seen the new files), but leave out the empty segment.
+        int numSegments = current.numSegments() + (writer.numDocs() > 0 ? 1 : 0);
+        Segment[] segments = new Segment[numSegments];
+        for (int i = 0; i < current.numSegments(); i++) {
+            segments[i] = current.getSegment(i);
+        }
+        if (writer.numDocs() > 0) {
+            segments[numSegments - 1] = Segment.open(segmentPath);
+        }
+
+        IndexSnapshot output = this.commit(segments, hashes);
+        long end = System.currentTimeMillis() - start;
+        System.out.println(String.format("Done adding %d new pages (%s sec)",
+                writer.numDocs(), end / 1000.0));
+        return output;
+    }
+
+    /**
+     * Makes the given snapshot the one we answer queries with.
+     */
+    private void publish(IndexSnapshot snapshot) {
+        // A query that's still running on the old snapshot must not add its results
+        // after we clear the cache: nobody could ever find them (the key includes the
+        // snapshot), yet they'd keep the old snapshot and its segments (whose files
+        // may already be deleted) open until evicted. So queries only add results
+        // while holding the cache's lock, and only if the snapshot is still current.
+        synchronized (this.resultCache) {
+            this.index = snapshot;
+            this.resultCache.clear();
+        }
+    }
+
+    /**
+     * Merges segments until the merge policy is happy, committing a new snapshot
+     * after each merge.
+     */
+    private void mergeSegments() {
+        int[] range = this.mergePolicy.findMerge(this.index);
+        while (range != null) {
+            long start = System.currentTimeMillis();
+            this.publish(this.directory.merge(this.index, range[0], range[1]));
+            long end = System.currentTimeMillis() - start;
+            System.out.println(String.format("Done merging %d segments (%s sec)",
+                    range[1] - range[0], end / 1000.0));
+            range = this.mergePolicy.findMerge(this.index);
+        }
+    }
+
+    /**
+     * Computes everything that depends on all documents at once (their norms, page
+     * ranks and the max scores of every term) for the given segments, and commits
+     * them as the new snapshot.
+     *
+     * Adding documents changes the IDF of every term, and so the norm of every
+     * document, as well as the link graph, so we redo this for every commit. It only
+     * reads the segments (and the page ranks start from the previous ones), so it's
+     * much cheaper than indexing the pages again.
+     */
+    private IndexSnapshot commit(Segment[] segments, long[] hashes) {
+        DocumentIdRegistry registry = this.registerWebpages(segments);
+        System.out.println("Done extracting");
 
-        if (pageRank <= 0.0) {
-            throw new IllegalStateException(String.format(
-                    "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
-                    uri, pageRank));
+        double[] norms = TfIdfAnalyzer.computeDocumentNorms(segments);
+        PageRankAnalyzer pageRankAnalyzer = new PageRankAnalyzer(
+                new LinkGraph(segments, registry),
+                registry,
+                PAGE_RANK_DECAY,
+                PAGE_RANK_EPSILON,
+                PAGE_RANK_ITERATION_LIMIT,
+                this.pageRankSolver,
+                this.root.resolve(PAGE_RANK_SAVE_FILE));
+        this.reportPageRanks(pageRankAnalyzer);
+
+        double[] pageRanks = new double[registry.size()];
+        for (int i = 0; i < pageRanks.length; i++) {
+            pageRanks[i] = pageRankAnalyzer.computePageRank(i);
+            if (pageRanks[i] <= 0.0) {
+                throw new IllegalStateException(String.format(
+                        "Page '%s' had a page rank of '%f'; all page ranks should be positive and non-zero.",
+                        registry.getSummary(i).getUri(), pageRanks[i]));
+            }
+        }
+
+        double[] documentScales = new double[registry.size()];
+        int docId = 0;
+        for (Segment segment : segments) {
+            for (int localId = 0; localId < segment.numDocs(); localId++) {
+                documentScales[docId] = computeDocumentScale(
+                        pageRanks[docId], norms[docId], segment.getDocLength(localId));
+                docId++;
+            }
         }
+        double[][] maxScores = IndexSnapshot.computeMaxScores(segments, id -> documentScales[id]);
+        return this.directory.commit(hashes, segments, pageRanks, norms, maxScores);
+    }
 
+    private void reportPageRanks(PageRankAnalyzer pageRankAnalyzer) {
+        PageRankSolution solution = pageRankAnalyzer.getSolution();
+        if (solution == null) {
+            System.out.println("Reused saved page ranks");
+        } else {
+            System.out.println(String.format(
+                    "Done computing page ranks (%s: %d iterations%s, %s sec)",
+                    this.pageRankSolver.getName(),
+                    solution.getIterations(),
+                    solution.hasConverged() ? "" : ", did not converge",
+                    solution.getElapsedMillis() / 1000.0));
+        }
+    }
+
+    /**
+     * Returns the analyzer the index was built with. Queries must be turned into
+     * terms using this same analyzer.
+     */
+    public Analyzer getAnalyzer() {
+        return this.analyzer;
+    }
+
+    public double computeScore(IList<String> query, URI uri) {
+        IndexSnapshot index = this.index;
+        int docId = index.getId(uri);
+        double tfIdf = new TfIdfAnalyzer(index).computeRelevance(query, docId);
+        return tfIdf * computePageRankFactor(index.getPageRank(docId));
+    }
+
+    /**
+     * Returns the amount we scale a page's TF-IDF score by to obtain its final score,
+     * given its page rank.
+     *
+     * Note: the search relies on the final score being exactly the TF-IDF score
+     * multiplied by this factor to bound the score of documents it hasn't looked
+     * at yet. If you change how the two scores are combined, keep it in that form.
+     */
+    private static double computePageRankFactor(double pageRank) {
         // We are combining these two scores in a fairly arbitrary way.
         // The correct thing to do is to apply machine learning and develop
         // a classifier that combines these two scores.
@@ -79,44 +411,251 @@ public class SearchEngine {
         // but it's still a pretty ad-hoc approach. Feel free to adjust or
         // change this formula: we will be grading your TfIdfAnalyzer and
         // PageRankAnalyzer classes separately, but not this method.
-        return tfIdf * Math.sqrt(pageRank);
+        return Math.sqrt(pageRank);
     }
 
+    /**
+     * Returns the amount we multiply the sum of (query weight * count) over a
+     * document's terms by to get its final score: the page rank factor divided by
+     * the document's norm and length. Documents with a norm of zero can't match
+     * anything, so we give them a scale of zero.
+     */
+    private static double computeDocumentScale(IndexSnapshot index, int docId) {
+        return computeDocumentScale(index.getPageRank(docId), index.getNorm(docId), index.getDocLength(docId));
+    }
+
+    private static double computeDocumentScale(double pageRank, double norm, int length) {
+        if (norm == 0.0) {
+            return 0.0;
+        }
+        return computePageRankFactor(pageRank) / (norm * length);
+    }
+
+    /**
+     * Returns the cache of recent query results, so its hit, miss and eviction
+     * counts can be inspected.
+     */
+    public SegmentedLruCache<?, ?> getResultCache() {
+        return this.resultCache;
+    }
+
+    /**
+     * Returns the k best results for the given terms, scored by TF-IDF and page rank
+     * alone.
+     */
     public IList<Result> getTopKResults(IList<String> query, int k) {
-        IList<Result> results = new DoubleLinkedList<>();
+        return this.getTopKResults(new Query(query), k, 0.0);
+    }
 
-        for (WebpageSummary summary: this.pages) {
-            double score = this.computeScore(query, summary.getUri());
-            results.add(new Result(summary, score));
+    /**
+     * Returns the k best results for the given query (see QueryParser): only pages
+     * containing every phrase of the query match, and pages where the query's terms
+     * occur close together get their score boosted by up to PROXIMITY_WEIGHT.
+     */
+    public IList<Result> getTopKResults(Query query, int k) {
+        return this.getTopKResults(query, k, PROXIMITY_WEIGHT);
+    }
+
+    private IList<Result> getTopKResults(Query query, int k, double proximityWeight) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        IndexSnapshot index = this.index;
+        CachedQuery key = new CachedQuery(index, query, proximityWeight, k);
+        IList<Result> results = this.resultCache.get(key);
+        if (results == null) {
+            results = this.computeTopKResults(index, query, proximityWeight, k);
+            synchronized (this.resultCache) {
+                if (index == this.index) {
+                    this.resultCache.put(key, results);
+                }
+            }
         }
 
-        IList<Result> topK = Searcher.topKSort(k, results);
+        // The cached list is shared, so every caller gets their own copy.
+        IList<Result> output = new ArrayList<>(results.size());
+        for (Result result : results) {
+            output.add(result);
+        }
+        return output;
+    }
 
-        IList<Result> reversed = new DoubleLinkedList<>();
-        for (Result res : topK) {
-            reversed.insert(0, res);
+    private IList<Result> computeTopKResults(IndexSnapshot index, Query query, double proximityWeight, int k) {
+        // Each term's weight is its weight in the query vector times its IDF, over
+        // the norm of the query vector: combined with the document's scale (which
+        // divides by its length and norm), that's exactly the cosine similarity
+        // computed by TfIdfAnalyzer times the page rank factor.
+        QueryVector queryVector = new TfIdfAnalyzer(index).computeQueryVector(query.getTerms());
+        String[] terms = new String[queryVector.size()];
+        double[] weights = new double[queryVector.size()];
+        for (int i = 0; i < queryVector.size(); i++) {
+            terms[i] = queryVector.getTerm(i);
+            weights[i] = queryVector.getWeight(i) * queryVector.getIdf(i) / queryVector.getNorm();
         }
 
-        return reversed;
+        QueryPlan plan = new QueryPlan(index, terms, weights, query.getPhrases(), proximityWeight,
+                docId -> computeDocumentScale(index, docId));
+        TopKCollector collector = plan.findTopK(k, this.chooseNumShards(plan.getCost()), this.searchPool);
+
+        // Only the winners ever become Result objects.
+        collector.sortDescending();
+        IList<Result> results = new ArrayList<>(collector.size());
+        for (int i = 0; i < collector.size(); i++) {
+            results.add(new Result(index.getSummary(collector.getDocId(i)), collector.getScore(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the number of shards to split a query with the given cost into.
+     *
+     * Each shard has to be worth the overhead of handing it to another thread, so
+     * cheap queries just run on the current thread. And when other queries are
+     * already keeping the pool busy, splitting ours further only makes everyone
+     * wait in line, so we only use the threads that are idle right now.
+     */
+    private int chooseNumShards(long cost) {
+        if (this.searchPool == null) {
+            return 1;
+        }
+        long worthwhile = cost / MIN_SHARD_COST;
+        int idle = SEARCH_THREADS - this.searchPool.getActiveThreadCount();
+        return (int) Math.max(1, Math.min(worthwhile, idle));
+    }
+
+    /**
+     * Returns the cached copy of every webpage in the given folder, first (re)building
+     * the cache if it's missing or any of the pages changed since it was written.
+     */
+    private PageCache openPageCache(IList<Path> files, long fingerprint) {
+        Path cachePath = this.root.resolve(PAGE_CACHE_FILE);
+
+        PageCache cache = PageCache.open(cachePath);
+        if (cache != null && cache.getSourceFingerprint() == fingerprint) {
+            return cache;
+        }
+
+        // Parsing a page is entirely CPU-bound, so we parse several at once. The
+        // writer still gets them in file order, so every page gets the same id no
+        // matter how many threads we use.
+        System.out.println("Building page cache...");
+        PageCacheWriter writer = new PageCacheWriter(cachePath, fingerprint);
+        LoadProgress progress = new LoadProgress(files.size());
+        Bridge.mapInOrder(files, file -> Webpage.load(file.toUri()), LOAD_THREADS,
+                LOAD_THREADS * LOAD_WINDOW_PER_THREAD, page -> {
+                    writer.add(page);
+                    progress.pageLoaded();
+                });
+        writer.finish();
+        progress.done();
+        return PageCache.open(cachePath);
+    }
+
+    /**
+     * Periodically reports how far along loading the pages is.
+     */
+    private static class LoadProgress {
+        private final int total;
+        private final long start;
+        private long lastReport;
+        private int loaded;
+
+        public LoadProgress(int total) {
+            this.total = total;
+            this.start = System.currentTimeMillis();
+            this.lastReport = this.start;
+            this.loaded = 0;
+        }
+
+        public void pageLoaded() {
+            this.loaded++;
+            long now = System.currentTimeMillis();
+            if (now - this.lastReport >= LOAD_PROGRESS_INTERVAL_MILLIS) {
+                this.lastReport = now;
+                this.report(now);
+            }
+        }
+
+        public void done() {
+            this.report(System.currentTimeMillis());
+        }
+
+        private void report(long now) {
+            double seconds = Math.max(now - this.start, 1) / 1000.0;
+            System.out.println(String.format("Loaded %d/%d pages (%.1f pages/sec)",
+                    this.loaded, this.total, this.loaded / seconds));
+        }
+    }
+
+    /**
+     * The key we cache query results under: the snapshot we searched, the query's
+     * words and phrases, the proximity weight and k.
+     *
+     * The order of the words doesn't change the results (the query vector sorts
+     * them anyway), so we sort them to make reordered queries share an entry.
+     */
+    private static class CachedQuery {
+        private final IndexSnapshot index;
+        private final String[] words;
+        private final Phrase[] phrases;
+        private final double proximityWeight;
+        private final int k;
+
+        public CachedQuery(IndexSnapshot index, Query query, double proximityWeight, int k) {
+            this.index = index;
+            this.words = new String[query.getTerms().size()];
+            int i = 0;
+            for (String word : query.getTerms()) {
+                this.words[i] = word;
+                i++;
+            }
+            Arrays.sort(this.words);
+            this.phrases = new Phrase[query.getPhrases().size()];
+            i = 0;
+            for (Phrase phrase : query.getPhrases()) {
+                this.phrases[i] = phrase;
+                i++;
+            }
+            this.proximityWeight = proximityWeight;
+            this.k = k;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof CachedQuery)) {
+                return false;
+            }
+            CachedQuery otherQuery = (CachedQuery) other;
+            return this.index == otherQuery.index && this.k == otherQuery.k
+                    && this.proximityWeight == otherQuery.proximityWeight
+                    && Arrays.equals(this.words, otherQuery.words)
+                    && Arrays.equals(this.phrases, otherQuery.phrases);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * Arrays.hashCode(this.words) + Arrays.hashCode(this.phrases)) + this.k;
+        }
     }
 
-    private ISet<Webpage> collectWebpages(Path root) {
+    private IList<Path> findWebpageFiles() {
         try {
-            return Files.walk(root)
+            return Files.walk(this.root)
                     .filter(Files::isRegularFile)
                     .filter(path -> path.toString().endsWith(".htm") || path.toString().endsWith(".html"))
-                    .map(Path::toUri)
-                    .map(Webpage::load)
-                    .collect(Bridge.toISet());
+                    .collect(Bridge.toIList());
         } catch (IOException ex) {
             throw new DataExtractionException("Could not find given root folder", ex);
         }
     }
 
-    private ISet<WebpageSummary> extractWebpageSummaries(ISet<Webpage> webpages) {
-        ISet<WebpageSummary> output = new ChainedHashSet<>();
-        for (Webpage page : webpages) {
-            output.add(page.getSummary());
+    private DocumentIdRegistry registerWebpages(Segment[] segments) {
+        DocumentIdRegistry output = new DocumentIdRegistry();
+        for (Segment segment : segments) {
+            for (int docId = 0; docId < segment.numDocs(); docId++) {
+                output.register(segment.getSummary(docId));
+            }
         }
         return output;
     }
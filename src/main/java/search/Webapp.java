@@ -1,7 +1,8 @@
 package search;
 
 import datastructures.interfaces.IList;
-import search.misc.WordTokenizer;
+import search.misc.QueryParser;
+import search.models.Query;
 import search.models.Result;
 import spark.ModelAndView;
 import spark.Request;
@@ -80,9 +81,9 @@ public class Webapp {
         String query = req.queryParams("query");
         int numResults = Integer.parseInt(req.queryParamOrDefault("num_results", "20"));
 
-        // Perform core search
-        IList<String> queryTerms = WordTokenizer.extract(query);
-        IList<Result> results = this.engine.getTopKResults(queryTerms, numResults);
+        // Perform core search: quoted phrases must match exactly
+        Query parsedQuery = new QueryParser(this.engine.getAnalyzer()).parse(query);
+        IList<Result> results = this.engine.getTopKResults(parsedQuery, numResults);
 
         // Render results
         Map<String, Object> model = new HashMap<>();
@@ -0,0 +1,137 @@
+package search.analyzers;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Computes page ranks using power iteration (see JacobiSolver), but periodically uses
+ * quadratic extrapolation to jump ahead.
+ *
+ * Power iteration converges slowly when the decay factor is close to 1: every iteration
+ * only removes a constant fraction of the remaining error. Every few iterations we assume
+ * the last four iterates only differ in the directions of the next two eigenvectors of
+ * the link matrix, and use them to estimate (and subtract out) those directions.
+ *
+ * See Kamvar et al, "Extrapolation Methods for Accelerating PageRank Computations".
+ */
+public class ExtrapolationSolver implements PageRankSolver {
+    // An extrapolation step needs four consecutive power iterations to work from.
+    private static final int MIN_PERIOD = 4;
+
+    private final int numThreads;
+    private final int period;
+
+    /**
+     * @param numThreads  The number of threads used to compute each iteration.
+     * @param period      How many iterations to run between extrapolations.
+     */
+    public ExtrapolationSolver(int numThreads, int period) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        if (period < MIN_PERIOD) {
+            throw new IllegalArgumentException("Period must be at least " + MIN_PERIOD);
+        }
+        this.numThreads = numThreads;
+        this.period = period;
+    }
+
+    @Override
+    public String getName() {
+        return "quadratic-extrapolation";
+    }
+
+    @Override
+    public PageRankSolution solve(LinkGraph graph, double[] initialRanks,
+                                  double decay, double epsilon, int limit) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = JacobiSolver.makePool(this.numThreads);
+        try {
+            JacobiSolver.Iteration iteration = new JacobiSolver.Iteration(graph, decay, pool);
+
+            // The four most recent iterates, oldest first. Each iteration overwrites
+            // the oldest one, which we no longer need.
+            double[][] iterates = new double[4][];
+            for (int i = 0; i < 3; i++) {
+                iterates[i] = new double[graph.numPages()];
+            }
+            iterates[3] = initialRanks;
+
+            for (int i = 0; i < limit; i++) {
+                double[] ranks = iterates[0];
+                double maxDelta = iteration.run(iterates[3], ranks);
+                System.arraycopy(iterates, 1, iterates, 0, 3);
+                iterates[3] = ranks;
+
+                if (maxDelta <= epsilon) {
+                    return new PageRankSolution(ranks, i + 1, true, System.currentTimeMillis() - start);
+                }
+                if ((i + 1) % this.period == 0) {
+                    extrapolate(iterates);
+                }
+            }
+            return new PageRankSolution(iterates[3], limit, false, System.currentTimeMillis() - start);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Replaces the newest of the given four iterates with its quadratic extrapolation.
+     *
+     * If the iterates don't give us a usable estimate (for example because they've
+     * already converged), or the estimate would give some page a non-positive rank,
+     * the newest iterate is left alone.
+     */
+    private static void extrapolate(double[][] iterates) {
+        double[] first = iterates[0];
+        double[] x1 = iterates[1];
+        double[] x2 = iterates[2];
+        double[] x3 = iterates[3];
+
+        // Step 1: Find the gammas (with gamma3 = 1) minimizing the length of
+        // gamma1 * y1 + gamma2 * y2 + y3, where yi = xi - first, by solving the
+        // 2x2 normal equations.
+        double a11 = 0.0;
+        double a12 = 0.0;
+        double a22 = 0.0;
+        double b1 = 0.0;
+        double b2 = 0.0;
+        for (int v = 0; v < first.length; v++) {
+            double y1 = x1[v] - first[v];
+            double y2 = x2[v] - first[v];
+            double y3 = x3[v] - first[v];
+            a11 += y1 * y1;
+            a12 += y1 * y2;
+            a22 += y2 * y2;
+            b1 -= y1 * y3;
+            b2 -= y2 * y3;
+        }
+        double determinant = a11 * a22 - a12 * a12;
+        if (!(Math.abs(determinant) > 1e-12 * a11 * a22)) {
+            return;
+        }
+        double gamma1 = (b1 * a22 - b2 * a12) / determinant;
+        double gamma2 = (a11 * b2 - a12 * b1) / determinant;
+        double gamma3 = 1.0;
+
+        // Step 2: Combine the last three iterates using the betas derived from them.
+        double beta0 = gamma1 + gamma2 + gamma3;
+        double beta1 = gamma2 + gamma3;
+        double beta2 = gamma3;
+        double total = 0.0;
+        for (int v = 0; v < first.length; v++) {
+            double estimate = beta0 * x1[v] + beta1 * x2[v] + beta2 * x3[v];
+            if (!(estimate > 0.0)) {
+                return;
+            }
+            total += estimate;
+        }
+
+        // Step 3: The estimate is only right up to scaling, so make it sum to 1.
+        for (int v = 0; v < first.length; v++) {
+            x3[v] = (beta0 * x1[v] + beta1 * x2[v] + beta2 * x3[v]) / total;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package search.analyzers;
+
+/**
+ * Computes page ranks using Gauss-Seidel iteration: we update the ranks in place, so
+ * every page immediately uses the new ranks of the pages we've already visited in
+ * the current sweep rather then their ranks from the previous sweep.
+ *
+ * This usually needs noticeably fewer sweeps then plain power iteration (see
+ * JacobiSolver), and only keeps a single array of ranks around, but every page
+ * depends on the pages before it so we can only use a single thread.
+ */
+public class GaussSeidelSolver implements PageRankSolver {
+    @Override
+    public String getName() {
+        return "gauss-seidel";
+    }
+
+    @Override
+    public PageRankSolution solve(LinkGraph graph, double[] initialRanks,
+                                  double decay, double epsilon, int limit) {
+        long start = System.currentTimeMillis();
+        int numPages = graph.numPages();
+        int[] sources = graph.getSources();
+
+        // Step 1: Precompute how much of its rank each page hands to every page it
+        // links to, so the inner loop doesn't need to divide.
+        double[] shareFactors = new double[numPages];
+        for (int u = 0; u < numPages; u++) {
+            int outDegree = graph.getOutDegree(u);
+            shareFactors[u] = outDegree == 0 ? 0.0 : decay / outDegree;
+        }
+
+        double[] ranks = initialRanks;
+        double base = (1 - decay) / numPages;
+        int iterations = 0;
+        boolean converged = false;
+        while (iterations < limit && !converged) {
+            iterations++;
+
+            // Step 2: Sweep over every page, updating its rank in place. Dangling
+            // pages link to every page, so whenever one of them changes we adjust
+            // the share every following page gets from them.
+            double danglingShare = 0.0;
+            for (int u = 0; u < numPages; u++) {
+                if (graph.getOutDegree(u) == 0) {
+                    danglingShare += decay * ranks[u] / numPages;
+                }
+            }
+
+            double maxDelta = 0.0;
+            for (int v = 0; v < numPages; v++) {
+                double rank = base + danglingShare;
+                for (int e = graph.getInOffset(v); e < graph.getInOffset(v + 1); e++) {
+                    int u = sources[e];
+                    rank += shareFactors[u] * ranks[u];
+                }
+                double delta = rank - ranks[v];
+                ranks[v] = rank;
+                if (graph.getOutDegree(v) == 0) {
+                    danglingShare += decay * delta / numPages;
+                }
+                maxDelta = Math.max(maxDelta, Math.abs(delta));
+            }
+
+            // Step 3: Stop once no rank moved by more then epsilon.
+            converged = maxDelta <= epsilon;
+        }
+
+        // The ranks only sum to 1 once we've fully converged, so fix up the
+        // small error left over from stopping early.
+        normalize(ranks);
+        return new PageRankSolution(ranks, iterations, converged, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Scales the given ranks so they sum to 1.
+     */
+    static void normalize(double[] ranks) {
+        double total = 0.0;
+        for (double rank : ranks) {
+            total += rank;
+        }
+        if (total > 0.0) {
+            for (int v = 0; v < ranks.length; v++) {
+                ranks[v] /= total;
+            }
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package search.analyzers;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Computes page ranks using plain power iteration: every iteration computes the new rank
+ * of every page from the ranks of the previous iteration.
+ *
+ * Every page's new rank only depends on the old ranks, so we can split each iteration
+ * into independent chunks of pages and run them on several threads without any locking.
+ */
+public class JacobiSolver implements PageRankSolver {
+    // Each iteration is split into chunks of this many pages. The chunks are
+    // fixed regardless of how many threads we use, and the partial sums of
+    // each chunk are always combined in the same order, so the final ranks
+    // are identical no matter how many threads computed them.
+    private static final int CHUNK_SIZE = 4096;
+
+    private final int numThreads;
+
+    /**
+     * @param numThreads  The number of threads used to compute each iteration.
+     */
+    public JacobiSolver(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("Need at least one thread");
+        }
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public String getName() {
+        return "jacobi";
+    }
+
+    /**
+     * Each iteration reads the previous ranks from one array and writes the new ones
+     * to another, then swaps the two; nothing is allocated once we've started.
+     */
+    @Override
+    public PageRankSolution solve(LinkGraph graph, double[] initialRanks,
+                                  double decay, double epsilon, int limit) {
+        long start = System.currentTimeMillis();
+        ForkJoinPool pool = makePool(this.numThreads);
+        try {
+            // Step 1: The initialize step should go here
+            Iteration iteration = new Iteration(graph, decay, pool);
+            double[] ranks = initialRanks;
+            double[] newRanks = new double[graph.numPages()];
+
+            for (int i = 0; i < limit; i++) {
+                // Step 2: The update step should go here
+                double maxDelta = iteration.run(ranks, newRanks);
+
+                double[] temp = ranks;
+                ranks = newRanks;
+                newRanks = temp;
+
+                // Step 3: the convergence step should go here.
+                // Return early if we've converged.
+                if (maxDelta <= epsilon) {
+                    return new PageRankSolution(ranks, i + 1, true, System.currentTimeMillis() - start);
+                }
+            }
+            return new PageRankSolution(ranks, limit, false, System.currentTimeMillis() - start);
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Returns a pool with the given number of threads, or null if we should just use
+     * the current thread.
+     */
+    static ForkJoinPool makePool(int numThreads) {
+        return numThreads > 1 ? new ForkJoinPool(numThreads) : null;
+    }
+
+    /**
+     * A single power iteration over some graph. Holds on to its scratch buffers so
+     * running many iterations doesn't allocate anything.
+     */
+    static class Iteration {
+        private final LinkGraph graph;
+        private final double decay;
+        private final ForkJoinPool pool;
+        private final int numChunks;
+
+        // The share of its rank each page hands to every page it links to.
+        private final double[] shares;
+
+        // The per-chunk partial results of each iteration.
+        private final double[] danglingShares;
+        private final double[] maxDeltas;
+
+        /**
+         * @param pool  The pool to run the chunks of each iteration on, or null to run
+         *              them on the current thread.
+         */
+        public Iteration(LinkGraph graph, double decay, ForkJoinPool pool) {
+            this.graph = graph;
+            this.decay = decay;
+            this.pool = pool;
+            this.numChunks = (graph.numPages() + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            this.shares = new double[graph.numPages()];
+            this.danglingShares = new double[this.numChunks];
+            this.maxDeltas = new double[this.numChunks];
+        }
+
+        /**
+         * Computes the ranks following the given old ranks into newRanks, and returns
+         * the largest difference between an old and a new rank.
+         */
+        public double run(double[] oldRanks, double[] newRanks) {
+            LinkGraph graph = this.graph;
+            double decay = this.decay;
+            double[] shares = this.shares;
+            double[] danglingShares = this.danglingShares;
+            double[] maxDeltas = this.maxDeltas;
+            int[] sources = graph.getSources();
+            int numPages = graph.numPages();
+
+            // A page with no outgoing links is treated as linking to every page
+            // (including itself). Rather then handing out their rank one page at
+            // a time, we add up their share and give it to every page at once.
+            forEachChunk(this.pool, this.numChunks, chunk -> {
+                double danglingShare = 0.0;
+                int end = Math.min(numPages, (chunk + 1) * CHUNK_SIZE);
+                for (int u = chunk * CHUNK_SIZE; u < end; u++) {
+                    int outDegree = graph.getOutDegree(u);
+                    if (outDegree == 0) {
+                        danglingShare += decay * oldRanks[u] / numPages;
+                        shares[u] = 0.0;
+                    } else {
+                        shares[u] = decay * oldRanks[u] / outDegree;
+                    }
+                }
+                danglingShares[chunk] = danglingShare;
+            });
+
+            double danglingShare = 0.0;
+            for (int chunk = 0; chunk < this.numChunks; chunk++) {
+                danglingShare += danglingShares[chunk];
+            }
+
+            double base = (1 - decay) / numPages + danglingShare;
+            forEachChunk(this.pool, this.numChunks, chunk -> {
+                double maxDelta = 0.0;
+                int end = Math.min(numPages, (chunk + 1) * CHUNK_SIZE);
+                for (int v = chunk * CHUNK_SIZE; v < end; v++) {
+                    double rank = base;
+                    for (int e = graph.getInOffset(v); e < graph.getInOffset(v + 1); e++) {
+                        rank += shares[sources[e]];
+                    }
+                    newRanks[v] = rank;
+                    maxDelta = Math.max(maxDelta, Math.abs(rank - oldRanks[v]));
+                }
+                maxDeltas[chunk] = maxDelta;
+            });
+
+            double maxDelta = 0.0;
+            for (int chunk = 0; chunk < this.numChunks; chunk++) {
+                maxDelta = Math.max(maxDelta, maxDeltas[chunk]);
+            }
+            return maxDelta;
+        }
+    }
+
+    /**
+     * Runs the given action once for every chunk in [0, numChunks), splitting the
+     * chunks across the pool's threads. Returns once every chunk is done.
+     */
+    private static void forEachChunk(ForkJoinPool pool, int numChunks, IntConsumer action) {
+        if (pool == null || numChunks <= 1) {
+            for (int chunk = 0; chunk < numChunks; chunk++) {
+                action.accept(chunk);
+            }
+        } else {
+            pool.invoke(new ChunkAction(0, numChunks, action));
+        }
+    }
+
+    private static class ChunkAction extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int start;
+        private final int end;
+        private final IntConsumer action;
+
+        public ChunkAction(int start, int end, IntConsumer action) {
+            this.start = start;
+            this.end = end;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.end - this.start == 1) {
+                this.action.accept(this.start);
+            } else {
+                int middle = (this.start + this.end) >>> 1;
+                invokeAll(new ChunkAction(this.start, middle, this.action),
+                          new ChunkAction(middle, this.end, this.action));
+            }
+        }
+    }
+}
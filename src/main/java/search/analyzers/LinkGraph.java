@@ -0,0 +1,168 @@
+package search.analyzers;
+
+import misc.Hashing;
+import search.index.DocumentIdRegistry;
+import search.index.Segment;
+
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * An unweighted, directed graph of the links between webpages, stored in
+ * compressed sparse row (CSR) form over doc ids.
+ *
+ * Since page rank "pulls" rank into each page from the pages linking to it, we
+ * store the incoming edges: the pages linking to page 'v' are
+ * sources[offsets[v]] through sources[offsets[v + 1] - 1]. We also store how many
+ * outgoing edges each page has, which is all we need to know about them.
+ *
+ * The graph only contains links between the given webpages: links to pages we
+ * don't have, links from a page to itself and duplicate links are all dropped.
+ */
+public class LinkGraph {
+    private static final int NOT_A_PAGE = -1;
+
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] outDegrees;
+
+    /**
+     * Precondition: every document in the given segments must have been registered
+     * with the registry, in order, so the documents of segments[i] have the doc ids
+     * following those of segments[i - 1].
+     */
+    public LinkGraph(Segment[] segments, DocumentIdRegistry registry) {
+        int numPages = registry.size();
+
+        // Step 1: find out which page (if any) each URI of each segment refers to.
+        // Most URIs are linked to many times, so we only look each one up once.
+        int[][] uriDocIds = new int[segments.length][];
+        for (int i = 0; i < segments.length; i++) {
+            uriDocIds[i] = new int[segments[i].numUris()];
+            for (int uriId = 0; uriId < uriDocIds[i].length; uriId++) {
+                URI uri = URI.create(segments[i].getUriString(uriId));
+                uriDocIds[i][uriId] = registry.contains(uri) ? registry.getId(uri) : NOT_A_PAGE;
+            }
+        }
+
+        // Step 2: count the outgoing and incoming edges of each page, then turn
+        // the incoming counts into offsets (so page v's edges start where page
+        // v - 1's end)
+        this.outDegrees = new int[numPages];
+        this.offsets = new int[numPages + 1];
+        int source = 0;
+        for (int i = 0; i < segments.length; i++) {
+            for (int docId = 0; docId < segments[i].numDocs(); docId++) {
+                int[] targets = findTargets(segments[i].getLinkUriIds(docId), uriDocIds[i], source);
+                this.outDegrees[source] = targets.length;
+                for (int target : targets) {
+                    this.offsets[target + 1]++;
+                }
+                source++;
+            }
+        }
+        for (int v = 0; v < numPages; v++) {
+            this.offsets[v + 1] += this.offsets[v];
+        }
+
+        // Step 3: fill in the sources. Rather then holding on to every page's
+        // links since step 2, we decode them from the segments again. Since we
+        // visit sources in increasing order, each page's incoming edges end up sorted.
+        this.sources = new int[this.offsets[numPages]];
+        int[] next = Arrays.copyOf(this.offsets, numPages);
+        source = 0;
+        for (int i = 0; i < segments.length; i++) {
+            for (int docId = 0; docId < segments[i].numDocs(); docId++) {
+                for (int target : findTargets(segments[i].getLinkUriIds(docId), uriDocIds[i], source)) {
+                    this.sources[next[target]] = source;
+                    next[target]++;
+                }
+                source++;
+            }
+        }
+    }
+
+    /**
+     * Returns the pages the given links point to, without duplicates or links back
+     * to the source, sorted. The given array is overwritten.
+     */
+    private static int[] findTargets(int[] linkUriIds, int[] uriDocIds, int source) {
+        int[] output = linkUriIds;
+        int size = 0;
+        for (int uriId : linkUriIds) {
+            int target = uriDocIds[uriId];
+            if (target != NOT_A_PAGE && target != source) {
+                output[size] = target;
+                size++;
+            }
+        }
+
+        Arrays.sort(output, 0, size);
+        int unique = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || output[i] != output[i - 1]) {
+                output[unique] = output[i];
+                unique++;
+            }
+        }
+        return Arrays.copyOf(output, unique);
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of this graph that does not depend on how doc ids
+     * were assigned: two graphs with the same pages and links (by URI) have the same
+     * fingerprint, and changing any page or link almost certainly changes it.
+     *
+     * @param pageHashes  a hash of each page's URI, indexed by doc id
+     */
+    public long computeFingerprint(long[] pageHashes) {
+        // Adding up a strong hash of each page and each edge makes the result
+        // independent of the order we visit them in.
+        long output = Hashing.mix(this.numPages());
+        for (int target = 0; target < this.numPages(); target++) {
+            output += Hashing.mix(pageHashes[target]);
+            for (int e = this.offsets[target]; e < this.offsets[target + 1]; e++) {
+                output += Hashing.mix(pageHashes[this.sources[e]] * 31 + Hashing.mix(pageHashes[target]));
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the number of pages (vertices) in this graph.
+     */
+    public int numPages() {
+        return this.outDegrees.length;
+    }
+
+    /**
+     * Returns the number of links (edges) in this graph.
+     */
+    public int numLinks() {
+        return this.sources.length;
+    }
+
+    /**
+     * Returns the number of distinct pages the given page links to.
+     */
+    public int getOutDegree(int page) {
+        return this.outDegrees[page];
+    }
+
+    /**
+     * Returns the index into getSources() of the first page linking to the given
+     * page. The last one is at getInOffset(page + 1) - 1.
+     */
+    public int getInOffset(int page) {
+        return this.offsets[page];
+    }
+
+    /**
+     * Returns the concatenated lists of pages linking to each page; see getInOffset.
+     *
+     * The returned array must not be modified.
+     */
+    public int[] getSources() {
+        return this.sources;
+    }
+}
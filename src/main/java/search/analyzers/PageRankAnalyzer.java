@@ -1,11 +1,8 @@
 package search.analyzers;
 
-import datastructures.interfaces.IDictionary;
-import datastructures.interfaces.ISet;
-import misc.exceptions.NotYetImplementedException;
-import search.models.Webpage;
+import search.index.DocumentIdRegistry;
 
-import java.net.URI;
+import java.nio.file.Path;
 
 /**
  * This class is responsible for computing the 'page rank' of all available webpages.
@@ -13,90 +10,93 @@ import java.net.URI;
  * See the spec for more details.
  */
 public class PageRankAnalyzer {
-    private IDictionary<URI, Double> pageRanks;
+    // The page rank of every webpage, indexed by doc id (see DocumentIdRegistry).
+    private double[] pageRanks;
+
+    // How the solver did, or null if we reused the ranks of a previous run.
+    private PageRankSolution solution;
 
     /**
-     * Computes a graph representing the internet and computes the page rank of all
-     * available webpages.
+     * Computes the page rank of all available webpages, given the graph representing
+     * the internet.
      *
-     * @param webpages  A set of all webpages we have parsed.
+     * @param graph     The links between all webpages we have parsed.
+     * @param registry  The doc ids of all webpages we have parsed.
      * @param decay     Represents the "decay" factor when computing page rank (see spec).
      * @param epsilon   When the difference in page ranks is less then or equal to this number,
      *                  stop iterating.
      * @param limit     The maximum number of iterations we spend computing page rank. This value
      *                  is meant as a safety valve to prevent us from infinite looping in case our
      *                  page rank never converges.
+     * @param solver    The algorithm used to compute the page ranks.
+     * @param savePath  Where to save the final ranks, so the next run can start from them
+     *                  rather then from scratch. May be null, in which case nothing is saved.
+     *
+     * Precondition: the graph's pages must be numbered by doc id.
      */
-    public PageRankAnalyzer(ISet<Webpage> webpages, double decay, double epsilon, int limit) {
-        // Implementation note: We have commented these method calls out so your
-        // search engine doesn't immediately crash when you try running it for the
-        // first time.
-        //
-        // You should uncomment these lines when you're ready to begin working
-        // on this class.
+    public PageRankAnalyzer(LinkGraph graph, DocumentIdRegistry registry,
+                            double decay, double epsilon, int limit, PageRankSolver solver, Path savePath) {
+        // Step 1: Fingerprint the graph representing the 'internet'
+        long fingerprint = graph.computeFingerprint(hashPages(registry));
+
+        // Step 2: Use this graph to compute the page rank for each webpage. If we
+        // saved the ranks of a previous crawl, start from those: if the graph is
+        // unchanged (and the previous solve converged) we're already done, and if
+        // it changed only a little we only need a few iterations to converge again.
+        SavedPageRanks saved = savePath == null ? null : SavedPageRanks.load(savePath);
+        if (saved != null && saved.matches(fingerprint, decay, epsilon)) {
+            this.pageRanks = saved.makeInitialRanks(registry);
+            return;
+        }
+
+        double[] initialRanks;
+        if (saved != null) {
+            initialRanks = saved.makeInitialRanks(registry);
+        } else {
+            initialRanks = new double[graph.numPages()];
+            for (int v = 0; v < initialRanks.length; v++) {
+                initialRanks[v] = 1.0 / initialRanks.length;
+            }
+        }
 
-        // Step 1: Make a graph representing the 'internet'
-        //IDictionary<URI, ISet<URI>> graph = this.makeGraph(webpages);
+        this.solution = solver.solve(graph, initialRanks, decay, epsilon, limit);
+        this.pageRanks = this.solution.getRanks();
 
-        // Step 2: Use this graph to compute the page rank for each webpage
-        //this.pageRanks = this.makePageRanks(graph, decay, limit, epsilon);
+        if (savePath != null) {
+            SavedPageRanks.save(savePath, fingerprint, decay, epsilon, this.solution, registry);
+        }
 
         // Note: we don't store the graph as a field: once we've computed the
         // page ranks, we no longer need it!
     }
 
-    /**
-     * This method converts a set of webpages into an unweighted, directed graph,
-     * in adjacency list form.
-     *
-     * You may assume that each webpage can be uniquely identified by its URI.
-     *
-     * Note that a webpage may contain links to other webpages that are *not*
-     * included within set of webpages you were given. You should omit these
-     * links from your graph: we want the final graph we build to be
-     * entirely "self-contained".
-     */
-    private IDictionary<URI, ISet<URI>> makeGraph(ISet<Webpage> webpages) {
-        throw new NotYetImplementedException();
+    private static long[] hashPages(DocumentIdRegistry registry) {
+        long[] output = new long[registry.size()];
+        for (int docId = 0; docId < output.length; docId++) {
+            String uri = registry.getSummary(docId).getUri().toString();
+            long hash = 1125899906842597L;
+            for (int i = 0; i < uri.length(); i++) {
+                hash = 31 * hash + uri.charAt(i);
+            }
+            output[docId] = hash;
+        }
+        return output;
     }
 
     /**
-     * Computes the page ranks for all webpages in the graph.
+     * Returns the page rank of the document with the given id.
      *
-     * Precondition: assumes 'this.graphs' has previously been initialized.
-     *
-     * @param decay     Represents the "decay" factor when computing page rank (see spec).
-     * @param epsilon   When the difference in page ranks is less then or equal to this number,
-     *                  stop iterating.
-     * @param limit     The maximum number of iterations we spend computing page rank. This value
-     *                  is meant as a safety valve to prevent us from infinite looping in case our
-     *                  page rank never converges.
+     * Precondition: the given id must belong to one of the webpages given to the constructor.
      */
-    private IDictionary<URI, Double> makePageRanks(IDictionary<URI, ISet<URI>> graph,
-                                                   double decay,
-                                                   int limit,
-                                                   double epsilon) {
-        // Step 1: The initialize step should go here
-
-        for (int i = 0; i < limit; i++) {
-            // Step 2: The update step should go here
-
-            // Step 3: the convergence step should go here.
-            // Return early if we've converged.
-            
-            throw new NotYetImplementedException();
-        }
-        throw new NotYetImplementedException();
+    public double computePageRank(int docId) {
+        return this.pageRanks[docId];
     }
 
     /**
-     * Returns the page rank of the given URI.
-     *
-     * Precondition: the given uri must have been one of the uris within the list of
-     *               webpages given to the constructor.
+     * Returns how long the solver took to compute the page ranks, or null if we didn't
+     * need to run it because the ranks saved by the previous run were still up to date.
      */
-    public double computePageRank(URI pageUri) {
-        // Implementation note: this method should be very simple: just one line!
-        return 1.0;
+    public PageRankSolution getSolution() {
+        return this.solution;
     }
 }
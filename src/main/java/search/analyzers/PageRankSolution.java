@@ -0,0 +1,43 @@
+package search.analyzers;
+
+/**
+ * The page ranks computed by a PageRankSolver, along with how long it took to compute them.
+ */
+public class PageRankSolution {
+    private final double[] ranks;
+    private final int iterations;
+    private final boolean converged;
+    private final long elapsedMillis;
+
+    public PageRankSolution(double[] ranks, int iterations, boolean converged, long elapsedMillis) {
+        this.ranks = ranks;
+        this.iterations = iterations;
+        this.converged = converged;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Returns the page ranks, indexed by doc id.
+     */
+    public double[] getRanks() {
+        return this.ranks;
+    }
+
+    /**
+     * Returns how many iterations the solver ran.
+     */
+    public int getIterations() {
+        return this.iterations;
+    }
+
+    /**
+     * Returns false if the solver gave up after hitting the iteration limit.
+     */
+    public boolean hasConverged() {
+        return this.converged;
+    }
+
+    public long getElapsedMillis() {
+        return this.elapsedMillis;
+    }
+}
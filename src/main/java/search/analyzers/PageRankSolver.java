@@ -0,0 +1,27 @@
+package search.analyzers;
+
+/**
+ * Computes the page ranks of every page in a link graph.
+ *
+ * Every solver converges to the same ranks (see the spec); they only differ in
+ * how many iterations and how much time they need to get there, which depends
+ * on the shape of the graph. Pick whichever one works best for your dataset.
+ */
+public interface PageRankSolver {
+    /**
+     * Returns the page ranks of every page in the graph, indexed by doc id.
+     *
+     * @param initialRanks  The ranks to start iterating from. Must sum to 1. The solver
+     *                      may overwrite this array.
+     * @param decay         Represents the "decay" factor when computing page rank (see spec).
+     * @param epsilon       When the difference in page ranks is less then or equal to this
+     *                      number, stop iterating.
+     * @param limit         The maximum number of iterations we spend computing page rank.
+     */
+    PageRankSolution solve(LinkGraph graph, double[] initialRanks, double decay, double epsilon, int limit);
+
+    /**
+     * Returns a short name for this solver, used when reporting how it did.
+     */
+    String getName();
+}
@@ -0,0 +1,59 @@
+package search.analyzers;
+
+/**
+ * The TF-IDF vector of a search query: each unique query word that appears in at
+ * least one document (and not in every document), with its TF-IDF weight.
+ */
+public class QueryVector {
+    private final String[] terms;
+    private final double[] weights;
+    private final double[] idfScores;
+    private final double norm;
+
+    /**
+     * The three arrays must be the same length, and the terms must be unique.
+     */
+    public QueryVector(String[] terms, double[] weights, double[] idfScores) {
+        this.terms = terms;
+        this.weights = weights;
+        this.idfScores = idfScores;
+
+        double sum = 0.0;
+        for (double weight : weights) {
+            sum += weight * weight;
+        }
+        this.norm = Math.sqrt(sum);
+    }
+
+    /**
+     * Returns the number of terms in this vector.
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    public String getTerm(int index) {
+        return this.terms[index];
+    }
+
+    /**
+     * Returns the TF-IDF weight of the term at the given index.
+     */
+    public double getWeight(int index) {
+        return this.weights[index];
+    }
+
+    /**
+     * Returns the IDF score of the term at the given index.
+     */
+    public double getIdf(int index) {
+        return this.idfScores[index];
+    }
+
+    /**
+     * Returns the Euclidean norm of this vector.
+     */
+    public double getNorm() {
+        return this.norm;
+    }
+}
@@ -0,0 +1,175 @@
+package search.analyzers;
+
+import search.index.DocumentIdRegistry;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The page ranks computed by a previous run, saved next to the crawl they were
+ * computed from.
+ *
+ * We save the rank of each page by URI (doc ids aren't stable between runs), along
+ * with a fingerprint of the link graph and whether the solver converged. If the
+ * fingerprint still matches and the solver converged, the graph hasn't changed and
+ * we can reuse the ranks as-is; otherwise they still make a far better starting
+ * point than the uniform vector (say, when only part of the crawl changed, or the
+ * previous run gave up at its iteration limit).
+ *
+ * File format (all values written by DataOutputStream):
+ *
+ *   int    FORMAT_VERSION
+ *   long   graph fingerprint
+ *   double decay
+ *   double epsilon
+ *   bool   whether the solver converged within its iteration limit
+ *   int    number of pages
+ *   then, for each page: UTF uri, double rank
+ */
+public class SavedPageRanks {
+    private static final int FORMAT_VERSION = 3;
+
+    private final long fingerprint;
+    private final double decay;
+    private final double epsilon;
+    private final boolean converged;
+    private final String[] uris;
+    private final double[] ranks;
+
+    private SavedPageRanks(long fingerprint, double decay, double epsilon, boolean converged,
+                           String[] uris, double[] ranks) {
+        this.fingerprint = fingerprint;
+        this.decay = decay;
+        this.epsilon = epsilon;
+        this.converged = converged;
+        this.uris = uris;
+        this.ranks = ranks;
+    }
+
+    /**
+     * Loads the ranks saved at the given path, or returns null if nothing (or a file
+     * written by an incompatible version) was saved there.
+     *
+     * The saved ranks are only ever a starting point, so a file we can't read (say,
+     * one cut short by a crash) is treated as if nothing was saved.
+     */
+    public static SavedPageRanks load(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long fingerprint = in.readLong();
+            double decay = in.readDouble();
+            double epsilon = in.readDouble();
+            boolean converged = in.readBoolean();
+            int numPages = in.readInt();
+            // Every page takes at least 10 bytes (an empty uri and its rank), so a
+            // larger count means the file is corrupt.
+            if (numPages < 0 || numPages > Files.size(path) / 10) {
+                return null;
+            }
+
+            String[] uris = new String[numPages];
+            double[] ranks = new double[numPages];
+            for (int i = 0; i < numPages; i++) {
+                uris[i] = in.readUTF();
+                ranks[i] = in.readDouble();
+            }
+            return new SavedPageRanks(fingerprint, decay, epsilon, converged, uris, ranks);
+        } catch (IOException ex) {
+            System.out.println("Could not load saved page ranks: " + ex);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the ranks of the given solution (indexed by doc id) to the given path,
+     * replacing whatever was saved there before.
+     *
+     * If we can't save them, we report the problem and carry on: the next run just
+     * has to start from the uniform vector.
+     */
+    public static void save(Path path, long fingerprint, double decay, double epsilon,
+                            PageRankSolution solution, DocumentIdRegistry registry) {
+        double[] ranks = solution.getRanks();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(fingerprint);
+                out.writeDouble(decay);
+                out.writeDouble(epsilon);
+                out.writeBoolean(solution.hasConverged());
+                out.writeInt(ranks.length);
+                for (int docId = 0; docId < ranks.length; docId++) {
+                    out.writeUTF(registry.getSummary(docId).getUri().toString());
+                    out.writeDouble(ranks[docId]);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            System.out.println("Could not save page ranks: " + ex);
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Not the end of the world: the next save overwrites it.
+            }
+        }
+    }
+
+    /**
+     * Returns 'true' if these ranks were computed from exactly the given graph using
+     * the same parameters and the solver converged, in which case they can be reused
+     * without iterating.
+     *
+     * Ranks the solver gave up on are never final, no matter the limit: iterating
+     * from them (with this run's limit) picks up where the last run left off.
+     */
+    public boolean matches(long fingerprint, double decay, double epsilon) {
+        return this.converged && this.fingerprint == fingerprint && this.decay == decay && this.epsilon == epsilon;
+    }
+
+    /**
+     * Returns a starting vector (indexed by doc id) for the pages in the given registry.
+     *
+     * Pages we have a saved rank for start with it; new pages start with the
+     * uniform rank 1 / n. The vector is then rescaled so it sums to 1 again.
+     */
+    public double[] makeInitialRanks(DocumentIdRegistry registry) {
+        int numPages = registry.size();
+        double[] output = new double[numPages];
+        boolean[] found = new boolean[numPages];
+        for (int i = 0; i < this.uris.length; i++) {
+            URI uri = URI.create(this.uris[i]);
+            if (registry.contains(uri)) {
+                int docId = registry.getId(uri);
+                output[docId] = this.ranks[i];
+                found[docId] = true;
+            }
+        }
+
+        double sum = 0.0;
+        for (int docId = 0; docId < numPages; docId++) {
+            if (!found[docId]) {
+                output[docId] = 1.0 / numPages;
+            }
+            sum += output[docId];
+        }
+        if (sum > 0.0) {
+            for (int docId = 0; docId < numPages; docId++) {
+                output[docId] /= sum;
+            }
+        }
+        return output;
+    }
+}
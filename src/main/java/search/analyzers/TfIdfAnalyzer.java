@@ -1,99 +1,240 @@
 package search.analyzers;
 
-import datastructures.interfaces.IDictionary;
+import datastructures.concrete.ArrayHeap;
 import datastructures.interfaces.IList;
-import datastructures.interfaces.ISet;
-import misc.exceptions.NotYetImplementedException;
-import search.models.Webpage;
+import datastructures.interfaces.IPriorityQueue;
+import search.index.IndexSnapshot;
+import search.index.PostingList;
+import search.index.Segment;
 
-import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 
 /**
  * This class is responsible for computing how "relevant" any given document is
  * to a given search query.
  *
  * See the spec for more details.
+ *
+ * We don't store any TF-IDF vectors: the index stores how many times each term
+ * occurs in each document, and we apply the IDF scores (which change whenever
+ * documents are added) on the fly. The only thing that's too expensive to compute
+ * on the fly is the norm of each document's vector, which depends on every term in
+ * the document, so we compute those once per snapshot (see computeDocumentNorms).
  */
 public class TfIdfAnalyzer {
-    // This field must contain the IDF score for every single word in all
-    // the documents.
-    private IDictionary<String, Double> idfScores;
-
-    // This field must contain the TF-IDF vector for each webpage you were given
-    // in the constructor.
-    //
-    // We will use each webpage's page URI as a unique key.
-    private IDictionary<URI, IDictionary<String, Double>> documentTfIdfVectors;
-
-    // Feel free to add extra fields and helper methods.
-
-    public TfIdfAnalyzer(ISet<Webpage> webpages) {
-        // Implementation note: We have commented these method calls out so your
-        // search engine doesn't immediately crash when you try running it for the
-        // first time.
-        //
-        // You should uncomment these lines when you're ready to begin working
-        // on this class.
-
-        //this.idfScores = this.computeIdfScores(webpages);
-        //this.documentTfIdfVectors = this.computeAllDocumentTfIdfVectors(webpages);
+    private final IndexSnapshot index;
+
+    public TfIdfAnalyzer(IndexSnapshot index) {
+        this.index = index;
     }
 
-    // Note: this method, strictly speaking, doesn't need to exist. However,
-    // we've included it so we can add some unit tests to help verify that your
-    // constructor correctly initializes your fields.
-    public IDictionary<URI, IDictionary<String, Double>> getDocumentTfIdfVectors() {
-        return this.documentTfIdfVectors;
+    /**
+     * Returns the IDF score of a term contained in the given number of documents.
+     */
+    public static double computeIdf(int numDocs, int docFrequency) {
+        return Math.log((double) numDocs / docFrequency);
     }
 
-    // Note: these private methods are suggestions or hints on how to structure your
-    // code. However, since they're private, you're not obligated to implement exactly
-    // these methods: feel free to change or modify these methods however you want. The
-    // important thing is that your 'computeRelevance' method ultimately returns the
-    // correct answer in an efficient manner.
+    /**
+     * Returns the norm of the TF-IDF vector of every document in the given segments,
+     * indexed by global doc id (see IndexSnapshot).
+     *
+     * We visit one term at a time, adding the square of its weight in every document
+     * containing it to that document's sum, so we never need any document's vector.
+     */
+    public static double[] computeDocumentNorms(Segment[] segments) {
+        int numDocs = 0;
+        for (Segment segment : segments) {
+            numDocs += segment.numDocs();
+        }
+
+        double[] output = new double[numDocs];
+        int[][] docFrequencies = computeDocFrequencies(segments);
+        int docBase = 0;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            for (int ordinal = 0; ordinal < segment.numTerms(); ordinal++) {
+                double idf = computeIdf(numDocs, docFrequencies[i][ordinal]);
+                PostingList postings = segment.getPostings(ordinal, 0.0);
+                for (int j = 0; j < postings.size(); j++) {
+                    int docId = postings.getDocId(j);
+                    double weight = (double) postings.getCount(j) / segment.getDocLength(docId) * idf;
+                    output[docBase + docId] += weight * weight;
+                }
+            }
+            docBase += segment.numDocs();
+        }
+
+        for (int docId = 0; docId < numDocs; docId++) {
+            output[docId] = Math.sqrt(output[docId]);
+        }
+        return output;
+    }
 
     /**
-     * Return a dictionary mapping every single unique word found
-     * in every single document to their IDF score.
+     * Returns the number of documents (in every segment) containing each term of each
+     * segment: output[i][ordinal] is the doc frequency of the term with the given
+     * ordinal in the i-th segment.
+     *
+     * Every segment's terms are already sorted, so rather then looking up each term in
+     * every other segment, we merge the term lists of all the segments in a single
+     * pass, the same way we'd merge sorted runs.
      */
-    private IDictionary<String, Double> computeIdfScores(ISet<Webpage> pages) {
-        throw new NotYetImplementedException();
+    private static int[][] computeDocFrequencies(Segment[] segments) {
+        int[][] output = new int[segments.length][];
+        IPriorityQueue<TermCursor> heap = new ArrayHeap<>();
+        for (int i = 0; i < segments.length; i++) {
+            output[i] = new int[segments[i].numTerms()];
+            if (segments[i].numTerms() > 0) {
+                heap.insert(new TermCursor(segments[i], i));
+            }
+        }
+
+        TermCursor[] group = new TermCursor[segments.length];
+        while (!heap.isEmpty()) {
+            // Step 1: take every segment whose next term is the smallest one left
+            // (a segment contains each term at most once)
+            int size = 0;
+            int docFrequency = 0;
+            do {
+                TermCursor cursor = heap.removeMin();
+                group[size] = cursor;
+                size++;
+                docFrequency += cursor.getDocFrequency();
+            } while (!heap.isEmpty() && heap.peekMin().compareTo(group[0]) == 0);
+
+            // Step 2: record the total for each of them, and move them on to their
+            // next term
+            for (int i = 0; i < size; i++) {
+                TermCursor cursor = group[i];
+                output[cursor.index][cursor.ordinal] = docFrequency;
+                if (cursor.advance()) {
+                    heap.insert(cursor);
+                }
+            }
+        }
+        return output;
     }
 
     /**
-     * Returns a dictionary mapping every unique word found in the given list
-     * to their term frequency (TF) score.
+     * Walks through the terms of one segment in sorted order.
      *
-     * The input list represents the words contained within a single document.
+     * Cursors compare by their current term, in the same order the segment sorts its
+     * terms in (their UTF-8 bytes, treated as unsigned).
      */
-    private IDictionary<String, Double> computeTfScores(IList<String> words) {
-        throw new NotYetImplementedException();
+    private static class TermCursor implements Comparable<TermCursor> {
+        private final Segment segment;
+        private final int index;
+        private int ordinal;
+        private byte[] term;
+
+        public TermCursor(Segment segment, int index) {
+            this.segment = segment;
+            this.index = index;
+            this.ordinal = 0;
+            this.term = segment.getTerm(0).getBytes(StandardCharsets.UTF_8);
+        }
+
+        public int getDocFrequency() {
+            return this.segment.getDocFrequency(this.ordinal);
+        }
+
+        /**
+         * Moves on to the next term, returning 'false' if there isn't one.
+         */
+        public boolean advance() {
+            this.ordinal++;
+            if (this.ordinal == this.segment.numTerms()) {
+                return false;
+            }
+            this.term = this.segment.getTerm(this.ordinal).getBytes(StandardCharsets.UTF_8);
+            return true;
+        }
+
+        @Override
+        public int compareTo(TermCursor other) {
+            for (int i = 0; i < Math.min(this.term.length, other.term.length); i++) {
+                int cmp = Integer.compare(this.term[i] & 0xFF, other.term[i] & 0xFF);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return Integer.compare(this.term.length, other.term.length);
+        }
     }
 
     /**
-     * See spec for more details on what this method should do.
+     * Returns the TF-IDF vector for the given search query.
+     *
+     * Words that don't appear in any document are left out of the vector (but still
+     * count towards the total number of words), as are words with an IDF of zero.
      */
-    private IDictionary<URI, IDictionary<String, Double>> computeAllDocumentTfIdfVectors(ISet<Webpage> pages) {
-        // Hint: this method should use the idfScores field and
-        // call the computeTfScores(...) method.
-        throw new NotYetImplementedException();
+    public QueryVector computeQueryVector(IList<String> query) {
+        // Sorting the words groups together repeated words, so we can count them
+        // in a single pass.
+        String[] words = new String[query.size()];
+        int size = 0;
+        for (String word : query) {
+            words[size] = word;
+            size++;
+        }
+        Arrays.sort(words);
+
+        String[] terms = new String[size];
+        double[] weights = new double[size];
+        double[] idfScores = new double[size];
+        int numTerms = 0;
+        for (int i = 0; i < size; i++) {
+            int count = 1;
+            while (i + 1 < size && words[i + 1].equals(words[i])) {
+                count++;
+                i++;
+            }
+
+            int docFrequency = this.index.getDocFrequency(words[i]);
+            if (docFrequency > 0) {
+                double idf = computeIdf(this.index.numDocs(), docFrequency);
+                if (idf != 0.0) {
+                    terms[numTerms] = words[i];
+                    weights[numTerms] = (double) count / size * idf;
+                    idfScores[numTerms] = idf;
+                    numTerms++;
+                }
+            }
+        }
+        return new QueryVector(Arrays.copyOf(terms, numTerms), Arrays.copyOf(weights, numTerms),
+                Arrays.copyOf(idfScores, numTerms));
     }
 
     /**
      * Returns the cosine similarity between the TF-IDF vector for the given query and the
-     * URI's document.
+     * document with the given id.
      *
-     * Precondition: the given uri must have been one of the uris within the list of
-     *               webpages given to the constructor.
+     * Precondition: the given id must belong to one of the documents in the index.
      */
-    public Double computeRelevance(IList<String> query, URI pageUri) {
-        // Note: The pseudocode we gave you is not very efficient. When implementing,
-        // this method, you should:
-        //
-        // 1. Figure out what information can be precomputed in your constructor.
-        //    Add a third field containing that information.
-        //
-        // 2. See if you can combine or merge one or more loops.
-        return 0.0;
+    public double computeRelevance(IList<String> query, int docId) {
+        QueryVector queryVector = this.computeQueryVector(query);
+        double denominator = this.index.getNorm(docId) * queryVector.getNorm();
+        if (denominator == 0.0) {
+            return 0.0;
+        }
+
+        int index = this.index.findSegment(docId);
+        Segment segment = this.index.getSegment(index);
+        int localId = docId - this.index.getDocBase(index);
+        double numerator = 0.0;
+        for (int i = 0; i < queryVector.size(); i++) {
+            int ordinal = segment.findTerm(queryVector.getTerm(i));
+            if (ordinal != Segment.NOT_FOUND) {
+                PostingList postings = segment.getPostings(ordinal, 0.0);
+                int j = postings.findNext(0, localId);
+                if (j < postings.size() && postings.getDocId(j) == localId) {
+                    double tf = (double) postings.getCount(j) / segment.getDocLength(localId);
+                    numerator += queryVector.getWeight(i) * tf * queryVector.getIdf(i);
+                }
+            }
+        }
+        return numerator / denominator;
     }
 }
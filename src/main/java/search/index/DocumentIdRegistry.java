@@ -0,0 +1,87 @@
+package search.index;
+
+import datastructures.concrete.ObjectIntHashMap;
+import misc.exceptions.NoSuchKeyException;
+import search.models.WebpageSummary;
+
+import java.net.URI;
+
+/**
+ * Assigns each webpage a dense integer id (0, 1, 2, ...) as it is loaded.
+ *
+ * Everything downstream of loading refers to documents by these ids and stores
+ * per-document data in plain arrays indexed by them. URIs are only needed when
+ * translating from or to the outside world: resolving links while building the
+ * index, and rendering results.
+ */
+public class DocumentIdRegistry {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private ObjectIntHashMap<URI> ids;
+    private WebpageSummary[] summaries;
+    private int size;
+
+    public DocumentIdRegistry() {
+        this.ids = new ObjectIntHashMap<>();
+        this.summaries = new WebpageSummary[DEFAULT_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Assigns the next available id to the given page and returns it.
+     *
+     * @throws IllegalArgumentException  if a page with the same URI was already registered
+     */
+    public int register(WebpageSummary summary) {
+        URI uri = summary.getUri();
+        if (this.ids.containsKey(uri)) {
+            throw new IllegalArgumentException("Page was already registered: " + uri);
+        }
+        if (this.size == this.summaries.length) {
+            WebpageSummary[] newSummaries = new WebpageSummary[this.size * 2];
+            System.arraycopy(this.summaries, 0, newSummaries, 0, this.size);
+            this.summaries = newSummaries;
+        }
+
+        int docId = this.size;
+        this.ids.put(uri, docId);
+        this.summaries[docId] = summary;
+        this.size++;
+        return docId;
+    }
+
+    /**
+     * Returns the id of the page with the given URI.
+     *
+     * @throws NoSuchKeyException  if no such page was registered
+     */
+    public int getId(URI uri) {
+        return this.ids.get(uri);
+    }
+
+    /**
+     * Returns 'true' if a page with the given URI was registered and 'false' otherwise.
+     */
+    public boolean contains(URI uri) {
+        return this.ids.containsKey(uri);
+    }
+
+    /**
+     * Returns the summary of the page with the given id.
+     *
+     * @throws IndexOutOfBoundsException  if the id was never assigned
+     */
+    public WebpageSummary getSummary(int docId) {
+        if (docId < 0 || docId >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.summaries[docId];
+    }
+
+    /**
+     * Returns the number of registered pages. Every id is in the range [0, size()).
+     */
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,214 @@
+package search.index;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import search.misc.Analyzer;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The directory holding the on-disk index of a dataset: its segments and snapshots.
+ *
+ * The index of 'data/<folder>' lives in 'data/<folder>.index/v<FORMAT_VERSION>-<analyzer>',
+ * followed by '-positions' if its segments store positions (see PostingList), so an
+ * index written in an older format, made of terms produced by a different analyzer
+ * (see Analyzer.getName) or with or without the positions we want, is simply ignored
+ * (and rebuilt) rather then misread.
+ *
+ * Every file we write is numbered with a new generation: segments are called
+ * 'segment-<generation>.seg' and snapshots 'snapshot-<generation>'. The snapshot with
+ * the highest generation is the current one. A snapshot only becomes visible once it
+ * (and every segment it refers to) has been completely written, so a crash at any
+ * point leaves the previous snapshot intact.
+ *
+ * Only one thread at a time may write to a directory. Snapshots that are still being
+ * searched by other threads stay valid even after their files are deleted, since
+ * they're mapped into memory.
+ */
+public class IndexDirectory {
+    /**
+     * Bump this whenever the format of any file in the index changes.
+     */
+    public static final int FORMAT_VERSION = 4;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final long NO_GENERATION = -1;
+
+    private static final String POSITIONS_SUFFIX = "-positions";
+
+    private final Path path;
+    private final boolean storePositions;
+    private long lastGeneration;
+
+    /**
+     * @param storePositions  whether the segments in this directory store the position
+     *                        of every occurrence of each term
+     */
+    public IndexDirectory(Path dataFolder, Analyzer analyzer, boolean storePositions) {
+        this.path = dataFolder.resolveSibling(dataFolder.getFileName() + ".index")
+                .resolve("v" + FORMAT_VERSION + "-" + analyzer.getName() + (storePositions ? POSITIONS_SUFFIX : ""));
+        this.storePositions = storePositions;
+        try {
+            Files.createDirectories(this.path);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create index directory", ex);
+        }
+        this.lastGeneration = NO_GENERATION;
+        for (Path file : this.listFiles()) {
+            this.lastGeneration = Math.max(this.lastGeneration, getGeneration(file));
+        }
+    }
+
+    /**
+     * Returns whether the segments in this directory store positions. Every segment
+     * written to it must match.
+     */
+    public boolean storesPositions() {
+        return this.storePositions;
+    }
+
+    /**
+     * Opens the current snapshot, or returns null if there is none.
+     */
+    public IndexSnapshot openLatest() {
+        Path latest = null;
+        long latestGeneration = NO_GENERATION;
+        for (Path file : this.listFiles()) {
+            String name = file.getFileName().toString();
+            if (name.startsWith(SNAPSHOT_PREFIX) && getGeneration(file) > latestGeneration) {
+                latest = file;
+                latestGeneration = getGeneration(file);
+            }
+        }
+        return latest == null ? null : IndexSnapshot.open(latest);
+    }
+
+    /**
+     * Returns a path nobody has written a segment to yet.
+     */
+    public Path newSegmentPath() {
+        this.lastGeneration++;
+        return this.path.resolve(SEGMENT_PREFIX + this.lastGeneration + SEGMENT_SUFFIX);
+    }
+
+    /**
+     * Saves a snapshot of the given segments (see IndexSnapshot.save) as the current
+     * one and returns it.
+     *
+     * Older snapshots, and segments the new snapshot doesn't use, are deleted.
+     */
+    public IndexSnapshot commit(long[] sourceHashes, Segment[] segments,
+                                double[] pageRanks, double[] norms, double[][] maxScores) {
+        this.lastGeneration++;
+        Path snapshotPath = this.path.resolve(SNAPSHOT_PREFIX + this.lastGeneration);
+        IndexSnapshot.save(snapshotPath, sourceHashes, segments, pageRanks, norms, maxScores);
+        this.deleteUnusedFiles(snapshotPath, segments);
+        return IndexSnapshot.open(snapshotPath);
+    }
+
+    /**
+     * Merges segments 'start' through 'end - 1' of the given snapshot into a single
+     * segment, and commits (and returns) a snapshot using it in their place.
+     *
+     * Since the documents stay in the same order, their global doc ids don't change,
+     * so neither does anything else in the snapshot: the max score of a term in the
+     * merged segment is simply the largest of its max scores in the old segments.
+     */
+    public IndexSnapshot merge(IndexSnapshot snapshot, int start, int end) {
+        Path segmentPath = this.newSegmentPath();
+        SegmentWriter writer = new SegmentWriter(segmentPath, this.storePositions);
+        for (int i = start; i < end; i++) {
+            writer.addAll(snapshot.getSegment(i));
+        }
+        writer.finish();
+        Segment merged = Segment.open(segmentPath);
+
+        double[] mergedScores = new double[merged.numTerms()];
+        for (int i = start; i < end; i++) {
+            Segment segment = snapshot.getSegment(i);
+            double[] scores = snapshot.copyMaxScores(i);
+            for (int ordinal = 0; ordinal < segment.numTerms(); ordinal++) {
+                int mergedOrdinal = merged.findTerm(segment.getTerm(ordinal));
+                mergedScores[mergedOrdinal] = Math.max(mergedScores[mergedOrdinal], scores[ordinal]);
+            }
+        }
+
+        int numSegments = snapshot.numSegments() - (end - start) + 1;
+        Segment[] segments = new Segment[numSegments];
+        double[][] maxScores = new double[numSegments][];
+        for (int i = 0; i < numSegments; i++) {
+            if (i < start) {
+                segments[i] = snapshot.getSegment(i);
+                maxScores[i] = snapshot.copyMaxScores(i);
+            } else if (i == start) {
+                segments[i] = merged;
+                maxScores[i] = mergedScores;
+            } else {
+                segments[i] = snapshot.getSegment(i + end - start - 1);
+                maxScores[i] = snapshot.copyMaxScores(i + end - start - 1);
+            }
+        }
+        return this.commit(snapshot.copySourceHashes(), segments,
+                snapshot.copyPageRanks(), snapshot.copyNorms(), maxScores);
+    }
+
+    private void deleteUnusedFiles(Path snapshotPath, Segment[] segments) {
+        for (Path file : this.listFiles()) {
+            String name = file.getFileName().toString();
+            boolean used = file.equals(snapshotPath);
+            for (Segment segment : segments) {
+                used |= name.equals(segment.getName());
+            }
+            if (!used) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ex) {
+                    // Not the end of the world: we'll try again after the next commit.
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns every (finished) segment and snapshot in this directory.
+     */
+    private IList<Path> listFiles() {
+        IList<Path> output = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.path)) {
+            for (Path file : files) {
+                if (getGeneration(file) != NO_GENERATION) {
+                    output.add(file);
+                }
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not list index directory", ex);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the generation in the name of the given segment or snapshot, or
+     * NO_GENERATION if it's some other file.
+     */
+    private static long getGeneration(Path file) {
+        String name = file.getFileName().toString();
+        String number;
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+            number = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        } else if (name.startsWith(SNAPSHOT_PREFIX)) {
+            number = name.substring(SNAPSHOT_PREFIX.length());
+        } else {
+            return NO_GENERATION;
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException ex) {
+            return NO_GENERATION;
+        }
+    }
+}
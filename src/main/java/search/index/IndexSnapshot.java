@@ -0,0 +1,398 @@
+package search.index;
+
+import datastructures.concrete.ObjectIntHashMap;
+import misc.exceptions.NoSuchKeyException;
+import search.models.WebpageSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * A consistent view of the whole index: a list of segments, plus everything that
+ * depends on all of their documents at once.
+ *
+ * Segments are immutable and say nothing about each other. Once a set of segments
+ * is fixed, we compute the norm of every document (which depends on the IDF of every
+ * term, and so on every other document), the page rank of every document and an
+ * upper bound on the score of each term's postings, and save them alongside the list
+ * of segments. Opening a snapshot maps those arrays into memory rather then reading
+ * them in, so it takes next to no time no matter how large the index is.
+ *
+ * Documents are numbered globally by concatenating the segments in order: the
+ * documents of segment 'i' start at getDocBase(i).
+ *
+ * We also keep a hash of every file the documents were loaded from (see
+ * PageCache.hashSourceFiles), so we can tell which files are new since the
+ * snapshot was taken.
+ *
+ * File format (written by DataOutputStream):
+ *
+ *   int     FORMAT_VERSION
+ *   long    fingerprint of the files the documents were loaded from
+ *   int     number of those files
+ *   int     number of segments, then the UTF name of each segment
+ *   padding up to a multiple of 8 bytes
+ *   long    the hash of every file the documents were loaded from, sorted
+ *   double  the page rank of every document, by global doc id
+ *   double  the norm of every document, by global doc id
+ *   double  for each segment, the max score of every term, by term ordinal
+ */
+public class IndexSnapshot {
+    static final int FORMAT_VERSION = 2;
+
+    private final long sourceFingerprint;
+    private final LongBuffer sourceHashes;
+    private final Segment[] segments;
+
+    // The global doc id of the first document of each segment, followed by the
+    // total number of documents.
+    private final int[] docBases;
+
+    private final DoubleBuffer pageRanks;
+    private final DoubleBuffer norms;
+    private final DoubleBuffer[] maxScores;
+
+    // See getIds.
+    private ObjectIntHashMap<URI> ids;
+
+    private IndexSnapshot(long sourceFingerprint, int numSources, Segment[] segments,
+                          ByteBuffer data, int offset) {
+        this.sourceFingerprint = sourceFingerprint;
+        this.segments = segments;
+        this.docBases = new int[segments.length + 1];
+        for (int i = 0; i < segments.length; i++) {
+            this.docBases[i + 1] = this.docBases[i] + segments[i].numDocs();
+        }
+
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + 8 * numSources);
+        this.sourceHashes = buffer.slice().asLongBuffer();
+        offset += 8 * numSources;
+
+        int numDocs = this.numDocs();
+        this.pageRanks = slice(data, offset, numDocs);
+        offset += 8 * numDocs;
+        this.norms = slice(data, offset, numDocs);
+        offset += 8 * numDocs;
+        this.maxScores = new DoubleBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            this.maxScores[i] = slice(data, offset, segments[i].numTerms());
+            offset += 8 * segments[i].numTerms();
+        }
+    }
+
+    /**
+     * Opens the snapshot saved at the given path. Its segments must be in the same
+     * directory.
+     */
+    public static IndexSnapshot open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Not a valid snapshot: " + path);
+            }
+            // The mapping stays valid after we close the channel.
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != FORMAT_VERSION) {
+                throw new RuntimeException("Unsupported snapshot format: " + path);
+            }
+            long sourceFingerprint = data.getLong();
+            int numSources = data.getInt();
+            Segment[] segments = new Segment[data.getInt()];
+            for (int i = 0; i < segments.length; i++) {
+                byte[] name = new byte[data.getShort() & 0xFFFF];
+                data.get(name);
+                segments[i] = Segment.open(path.resolveSibling(new String(name, StandardCharsets.UTF_8)));
+            }
+            return new IndexSnapshot(sourceFingerprint, numSources, segments, data, align(data.position()));
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open snapshot", ex);
+        }
+    }
+
+    /**
+     * Saves a snapshot of the given segments to the given path, replacing whatever
+     * was saved there before.
+     *
+     * @param sourceHashes  the hash of every file the documents were loaded from
+     * @param pageRanks  the page rank of every document, by global doc id
+     * @param norms      the norm of every document's TF-IDF vector, by global doc id
+     * @param maxScores  for each segment, the max score of every term (see PostingList)
+     */
+    public static void save(Path path, long[] sourceHashes, Segment[] segments,
+                            double[] pageRanks, double[] norms, double[][] maxScores) {
+        long[] sortedHashes = Arrays.copyOf(sourceHashes, sourceHashes.length);
+        Arrays.sort(sortedHashes);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(PageCache.computeSourceFingerprint(sourceHashes));
+                out.writeInt(sortedHashes.length);
+                out.writeInt(segments.length);
+                for (Segment segment : segments) {
+                    out.writeUTF(segment.getName());
+                }
+                while (out.size() != align(out.size())) {
+                    out.writeByte(0);
+                }
+                for (long hash : sortedHashes) {
+                    out.writeLong(hash);
+                }
+                for (double rank : pageRanks) {
+                    out.writeDouble(rank);
+                }
+                for (double norm : norms) {
+                    out.writeDouble(norm);
+                }
+                for (double[] scores : maxScores) {
+                    for (double score : scores) {
+                        out.writeDouble(score);
+                    }
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not save snapshot", ex);
+        }
+    }
+
+    /**
+     * Returns the max score (see PostingList) of every term in each of the given
+     * segments, given the scale of each document.
+     *
+     * @param documentScale  returns the amount a document's score is scaled by, given
+     *                       its global doc id
+     */
+    public static double[][] computeMaxScores(Segment[] segments, IntToDoubleFunction documentScale) {
+        double[][] output = new double[segments.length][];
+        int docBase = 0;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            output[i] = new double[segment.numTerms()];
+            for (int ordinal = 0; ordinal < segment.numTerms(); ordinal++) {
+                PostingList postings = segment.getPostings(ordinal, 0.0);
+                double max = 0.0;
+                for (int j = 0; j < postings.size(); j++) {
+                    double score = postings.getCount(j) * documentScale.applyAsDouble(docBase + postings.getDocId(j));
+                    max = Math.max(max, score);
+                }
+                output[i][ordinal] = max;
+            }
+            docBase += segment.numDocs();
+        }
+        return output;
+    }
+
+    /**
+     * Returns the fingerprint of the files the documents were loaded from.
+     */
+    public long getSourceFingerprint() {
+        return this.sourceFingerprint;
+    }
+
+    /**
+     * Returns the number of files the documents were loaded from.
+     */
+    public int numSources() {
+        return this.sourceHashes.limit();
+    }
+
+    /**
+     * Returns 'true' if the documents were loaded from a file with the given hash
+     * (see PageCache.hashSourceFiles).
+     */
+    public boolean containsSource(long fileHash) {
+        int low = 0;
+        int high = this.sourceHashes.limit() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long hash = this.sourceHashes.get(mid);
+            if (hash < fileHash) {
+                low = mid + 1;
+            } else if (hash > fileHash) {
+                high = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the total number of documents. Every global doc id is in the range
+     * [0, numDocs()).
+     */
+    public int numDocs() {
+        return this.docBases[this.segments.length];
+    }
+
+    public int numSegments() {
+        return this.segments.length;
+    }
+
+    public Segment getSegment(int index) {
+        return this.segments[index];
+    }
+
+    /**
+     * Returns the global doc id of the first document in the given segment.
+     */
+    public int getDocBase(int index) {
+        return this.docBases[index];
+    }
+
+    /**
+     * Returns the index of the segment containing the document with the given global id.
+     */
+    public int findSegment(int docId) {
+        if (docId < 0 || docId >= this.numDocs()) {
+            throw new IndexOutOfBoundsException();
+        }
+        int low = 0;
+        int high = this.segments.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (this.docBases[mid] <= docId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the number of documents (across every segment) containing the given term.
+     */
+    public int getDocFrequency(String term) {
+        int output = 0;
+        for (Segment segment : this.segments) {
+            int ordinal = segment.findTerm(term);
+            if (ordinal != Segment.NOT_FOUND) {
+                output += segment.getDocFrequency(ordinal);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the postings of the term with the given ordinal in the given segment.
+     */
+    public PostingList getPostings(int index, int ordinal) {
+        return this.segments[index].getPostings(ordinal, this.maxScores[index].get(ordinal));
+    }
+
+    public int getDocLength(int docId) {
+        int index = this.findSegment(docId);
+        return this.segments[index].getDocLength(docId - this.docBases[index]);
+    }
+
+    public WebpageSummary getSummary(int docId) {
+        int index = this.findSegment(docId);
+        return this.segments[index].getSummary(docId - this.docBases[index]);
+    }
+
+    public double getPageRank(int docId) {
+        return this.pageRanks.get(docId);
+    }
+
+    /**
+     * Returns the norm of the document's TF-IDF vector.
+     */
+    public double getNorm(int docId) {
+        return this.norms.get(docId);
+    }
+
+    /**
+     * Returns the global doc id of the document with the given URI.
+     *
+     * @throws NoSuchKeyException  if no document has that URI
+     */
+    public int getId(URI uri) {
+        return this.getIds().get(uri);
+    }
+
+    /**
+     * Returns 'true' if some document has the given URI and 'false' otherwise.
+     */
+    public boolean containsUri(URI uri) {
+        return this.getIds().containsKey(uri);
+    }
+
+    /**
+     * Returns the global doc id of each document's URI. We only build this the first
+     * time someone asks for a doc id by URI.
+     */
+    private synchronized ObjectIntHashMap<URI> getIds() {
+        if (this.ids == null) {
+            this.ids = new ObjectIntHashMap<>();
+            for (int i = 0; i < this.segments.length; i++) {
+                for (int docId = 0; docId < this.segments[i].numDocs(); docId++) {
+                    this.ids.put(this.segments[i].getUri(docId), this.docBases[i] + docId);
+                }
+            }
+        }
+        return this.ids;
+    }
+
+    /**
+     * Returns a copy of the max score of every term in the given segment, by ordinal.
+     */
+    double[] copyMaxScores(int index) {
+        return copy(this.maxScores[index]);
+    }
+
+    /**
+     * Returns a copy of the page rank of every document, by global doc id.
+     */
+    double[] copyPageRanks() {
+        return copy(this.pageRanks);
+    }
+
+    /**
+     * Returns a copy of the norm of every document, by global doc id.
+     */
+    double[] copyNorms() {
+        return copy(this.norms);
+    }
+
+    /**
+     * Returns a copy of the hash of every file the documents were loaded from.
+     */
+    long[] copySourceHashes() {
+        long[] output = new long[this.sourceHashes.limit()];
+        this.sourceHashes.duplicate().get(output);
+        return output;
+    }
+
+    private static double[] copy(DoubleBuffer buffer) {
+        double[] output = new double[buffer.limit()];
+        buffer.duplicate().get(output);
+        return output;
+    }
+
+    private static int align(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static DoubleBuffer slice(ByteBuffer data, int offset, int size) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        buffer.limit(offset + 8 * size);
+        return buffer.slice().asDoubleBuffer();
+    }
+}
@@ -0,0 +1,140 @@
+package search.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes small groups of non-negative ints using "patched frame of
+ * reference" (PForDelta) coding.
+ *
+ * Every value of a group is stored using the same number of bits 'b', packed
+ * together with no gaps. If a handful of values are too large to fit, we don't
+ * want them to force a larger 'b' on everything else, so we store just their low
+ * 'b' bits in place and patch in the rest of their bits afterwards ("exceptions").
+ * We pick whichever 'b' makes the whole group smallest.
+ *
+ * Format (up to 255 values):
+ *
+ *   byte    b
+ *   byte    number of exceptions
+ *   bytes   the low b bits of each value, lowest bits first, padded to a whole byte
+ *   for each exception:
+ *     byte    its index in the group
+ *     varint  the rest of its bits (value >>> b)
+ *
+ * Decoding is a tight loop with no branches per value (besides refilling the bit
+ * buffer), which is what makes it fast.
+ */
+final class PForDelta {
+    /**
+     * The most values we can store in one group.
+     */
+    public static final int MAX_GROUP_SIZE = 255;
+
+    private static final int MAX_BITS = 32;
+
+    private PForDelta() {}
+
+    /**
+     * Writes the first 'count' values of the given array as a single group.
+     */
+    public static void write(DataOutputStream out, int[] values, int count) throws IOException {
+        if (count > MAX_GROUP_SIZE) {
+            throw new IllegalArgumentException("Too many values for one group: " + count);
+        }
+        int bits = chooseBits(values, count);
+        long limit = 1L << bits;
+        int numExceptions = 0;
+        for (int i = 0; i < count; i++) {
+            if (values[i] < 0) {
+                throw new IllegalArgumentException("Can't encode a negative number: " + values[i]);
+            }
+            if (values[i] >= limit) {
+                numExceptions++;
+            }
+        }
+        out.writeByte(bits);
+        out.writeByte(numExceptions);
+
+        long mask = limit - 1;
+        long buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < count; i++) {
+            buffer |= (values[i] & mask) << buffered;
+            buffered += bits;
+            while (buffered >= 8) {
+                out.writeByte((int) buffer);
+                buffer >>>= 8;
+                buffered -= 8;
+            }
+        }
+        if (buffered > 0) {
+            out.writeByte((int) buffer);
+        }
+
+        for (int i = 0; i < count; i++) {
+            if (values[i] >= limit) {
+                out.writeByte(i);
+                VarInts.write(out, values[i] >>> bits);
+            }
+        }
+    }
+
+    /**
+     * Reads a group of 'count' values (which must be how many were written) into the
+     * start of the given array, starting at the buffer's position, and moves the
+     * position past it.
+     */
+    public static void read(ByteBuffer in, int[] values, int count) {
+        int bits = in.get() & 0xFF;
+        int numExceptions = in.get() & 0xFF;
+
+        long mask = (1L << bits) - 1;
+        long buffer = 0;
+        int buffered = 0;
+        for (int i = 0; i < count; i++) {
+            while (buffered < bits) {
+                buffer |= (in.get() & 0xFFL) << buffered;
+                buffered += 8;
+            }
+            values[i] = (int) (buffer & mask);
+            buffer >>>= bits;
+            buffered -= bits;
+        }
+
+        for (int i = 0; i < numExceptions; i++) {
+            int index = in.get() & 0xFF;
+            values[index] |= VarInts.read(in) << bits;
+        }
+    }
+
+    /**
+     * Returns the number of bits per value that makes the group smallest.
+     */
+    private static int chooseBits(int[] values, int count) {
+        // Step 1: count how many values need each number of bits
+        int[] counts = new int[MAX_BITS + 1];
+        for (int i = 0; i < count; i++) {
+            counts[MAX_BITS - Integer.numberOfLeadingZeros(values[i])]++;
+        }
+
+        // Step 2: try every width, using the counts to find out how many values
+        // would become exceptions, and how large their leftover bits would be
+        int best = MAX_BITS;
+        long bestSize = Long.MAX_VALUE;
+        for (int bits = 0; bits <= MAX_BITS; bits++) {
+            long size = ((long) count * bits + 7) / 8;
+            for (int needed = bits + 1; needed <= MAX_BITS; needed++) {
+                // An exception needs a byte for its index, plus a varint of 7 bits
+                // per byte for its remaining (needed - bits) bits.
+                size += counts[needed] * (1 + (needed - bits + 6) / 7);
+            }
+            if (size < bestSize) {
+                best = bits;
+                bestSize = size;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,269 @@
+package search.index;
+
+import datastructures.interfaces.IList;
+import misc.Hashing;
+import search.models.WebpageSummary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A compact, binary copy of every webpage in a dataset, so we don't need to parse
+ * the original HTML (or any text) again on every startup.
+ *
+ * The file is memory-mapped rather then read in: opening the cache only scans its
+ * tables, and each page's words and links are decoded when someone asks for them.
+ * Nothing ever holds the words of every page at once.
+ *
+ * Words and URIs are each stored once, in a table, and pages refer to them by id.
+ * File format (ints and longs are big-endian, 'varint' is described in VarInts and
+ * 'string' is a varint byte count followed by that many bytes of UTF-8):
+ *
+ *   header:
+ *     int     FORMAT_VERSION
+ *     long    fingerprint of the files the pages were loaded from
+ *     int     number of pages, terms and URIs
+ *     int     offset of the term table, the URI table and the page directory
+ *   one record per page:
+ *     varint  URI id
+ *     string  title
+ *     string  blurb
+ *     varint  number of words, then the term id of each word (in order)
+ *     varint  number of links, then the URI id of each link (in order)
+ *   term table: a string per term id
+ *   URI table: a string per URI id
+ *   page directory: an int per page id, where its record starts
+ */
+public class PageCache {
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 36;
+
+    private final ByteBuffer data;
+    private final long sourceFingerprint;
+    private final int numPages;
+    private final int directoryOffset;
+
+    // Where each term and URI starts in the tables.
+    private final int[] termOffsets;
+    private final int[] uriOffsets;
+
+    private PageCache(ByteBuffer data) {
+        this.data = data;
+        this.sourceFingerprint = data.getLong(4);
+        this.numPages = data.getInt(12);
+        int numTerms = data.getInt(16);
+        int numUris = data.getInt(20);
+        this.termOffsets = findStrings(data, data.getInt(24), numTerms);
+        this.uriOffsets = findStrings(data, data.getInt(28), numUris);
+        this.directoryOffset = data.getInt(32);
+    }
+
+    /**
+     * Maps the cache at the given path into memory, or returns null if there's no
+     * cache there (or it was written by an incompatible version).
+     */
+    public static PageCache open(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            // The mapping stays valid after we close the channel.
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt(0) != FORMAT_VERSION) {
+                return null;
+            }
+            return new PageCache(data);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open page cache", ex);
+        }
+    }
+
+    /**
+     * Returns a hash of each of the given files: of its path (relative to the root),
+     * size and modification time. If a file's hash changes, so did the file.
+     */
+    public static long[] hashSourceFiles(Path root, IList<Path> files) {
+        try {
+            long[] output = new long[files.size()];
+            int i = 0;
+            for (Path file : files) {
+                long hash = 1125899906842597L;
+                String name = root.relativize(file).toString();
+                for (int j = 0; j < name.length(); j++) {
+                    hash = 31 * hash + name.charAt(j);
+                }
+                hash = 31 * Hashing.mix(hash) + Files.size(file);
+                hash = 31 * Hashing.mix(hash) + Files.getLastModifiedTime(file).toMillis();
+                output[i] = hash;
+                i++;
+            }
+            return output;
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not read page files", ex);
+        }
+    }
+
+    /**
+     * Returns a fingerprint of a set of files, given the hash of each of them (see
+     * hashSourceFiles). If the fingerprint a cache was written with no longer matches,
+     * some page was added, removed or changed since.
+     *
+     * The fingerprint doesn't depend on the order of the files.
+     */
+    public static long computeSourceFingerprint(long[] fileHashes) {
+        long output = Hashing.mix(fileHashes.length);
+        for (long hash : fileHashes) {
+            output += Hashing.mix(hash);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the fingerprint of the files this cache was written from.
+     */
+    public long getSourceFingerprint() {
+        return this.sourceFingerprint;
+    }
+
+    /**
+     * Returns the number of pages. Every page id is in the range [0, numPages()).
+     */
+    public int numPages() {
+        return this.numPages;
+    }
+
+    /**
+     * Returns the number of unique words. Every term id is in the range [0, numTerms()).
+     */
+    public int numTerms() {
+        return this.termOffsets.length;
+    }
+
+    /**
+     * Returns the word with the given term id.
+     */
+    public String getTerm(int termId) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.termOffsets[termId]);
+        return VarInts.readString(buffer);
+    }
+
+    /**
+     * Returns the URI of the given page.
+     */
+    public URI getUri(int pageId) {
+        return URI.create(this.readUri(VarInts.read(this.seek(pageId))));
+    }
+
+    /**
+     * Returns the summary of the given page.
+     */
+    public WebpageSummary getSummary(int pageId) {
+        ByteBuffer buffer = this.seek(pageId);
+        URI uri = URI.create(this.readUri(VarInts.read(buffer)));
+        String title = VarInts.readString(buffer);
+        String blurb = VarInts.readString(buffer);
+        return new WebpageSummary(uri, title, blurb);
+    }
+
+    /**
+     * Returns the term id of every word in the given page, in order.
+     */
+    public int[] getTermIds(int pageId) {
+        ByteBuffer buffer = this.seekWords(pageId);
+        int[] output = new int[VarInts.read(buffer)];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = VarInts.read(buffer);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the number of unique URIs (of pages and links). Every URI id is in the
+     * range [0, numUris()).
+     */
+    int numUris() {
+        return this.uriOffsets.length;
+    }
+
+    /**
+     * Returns the URI with the given URI id, as a string.
+     */
+    String getUriString(int uriId) {
+        return this.readUri(uriId);
+    }
+
+    /**
+     * Returns the URI id of the given page's own URI.
+     */
+    int getUriId(int pageId) {
+        return VarInts.read(this.seek(pageId));
+    }
+
+    /**
+     * Returns the URI id of every link in the given page, in order.
+     */
+    int[] getLinkUriIds(int pageId) {
+        ByteBuffer buffer = this.seekWords(pageId);
+        VarInts.skip(buffer, VarInts.read(buffer));
+
+        int[] output = new int[VarInts.read(buffer)];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = VarInts.read(buffer);
+        }
+        return output;
+    }
+
+    /**
+     * Returns a buffer positioned at the start of the given page's record. Every
+     * caller gets its own buffer, so several threads can read the cache at once.
+     */
+    private ByteBuffer seek(int pageId) {
+        if (pageId < 0 || pageId >= this.numPages) {
+            throw new IndexOutOfBoundsException();
+        }
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.data.getInt(this.directoryOffset + 4 * pageId));
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer positioned at the word count of the given page's record.
+     */
+    private ByteBuffer seekWords(int pageId) {
+        ByteBuffer buffer = this.seek(pageId);
+        VarInts.read(buffer);
+        VarInts.skipString(buffer);
+        VarInts.skipString(buffer);
+        return buffer;
+    }
+
+    private String readUri(int uriId) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.uriOffsets[uriId]);
+        return VarInts.readString(buffer);
+    }
+
+    /**
+     * Returns where each of the 'count' strings in the table starting at the given
+     * offset starts.
+     */
+    private static int[] findStrings(ByteBuffer data, int offset, int count) {
+        ByteBuffer buffer = data.duplicate();
+        buffer.position(offset);
+        int[] output = new int[count];
+        for (int i = 0; i < count; i++) {
+            output[i] = buffer.position();
+            VarInts.skipString(buffer);
+        }
+        return output;
+    }
+}
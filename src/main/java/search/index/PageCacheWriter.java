@@ -0,0 +1,178 @@
+package search.index;
+
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a page cache (see PageCache) one webpage at a time, so we never need to
+ * hold more than a single page in memory while building it.
+ *
+ * The cache is written to a temporary file and only moved into place by 'finish',
+ * so a crash halfway through never leaves a broken cache behind.
+ */
+public class PageCacheWriter {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int NOT_A_PAGE = -1;
+
+    private final Path path;
+    private final Path temp;
+    private final long sourceFingerprint;
+    private final DataOutputStream out;
+
+    // Assigns ids to every word, and to every URI (of a page or of a link).
+    // These are plain string interners: we reuse TermDictionary for both.
+    private final TermDictionary terms;
+    private final TermDictionary uris;
+
+    // The page id of the page with each URI id, or NOT_A_PAGE if we haven't
+    // written a page with that URI (yet).
+    private int[] pageIds;
+
+    // Where the record of each page starts.
+    private int[] pageOffsets;
+    private int numPages;
+
+    /**
+     * Starts writing a cache that will end up at the given path.
+     *
+     * @param sourceFingerprint  the fingerprint of the files the pages were loaded
+     *                           from (see PageCache.computeSourceFingerprint)
+     */
+    public PageCacheWriter(Path path, long sourceFingerprint) {
+        this.path = path;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.sourceFingerprint = sourceFingerprint;
+        this.terms = new TermDictionary();
+        this.uris = new TermDictionary();
+        this.pageIds = new int[DEFAULT_CAPACITY];
+        Arrays.fill(this.pageIds, NOT_A_PAGE);
+        this.pageOffsets = new int[DEFAULT_CAPACITY];
+        this.numPages = 0;
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.temp)));
+
+            // We don't know where the tables start until we're done, so leave room
+            // for the header and fill it in at the end.
+            this.out.write(new byte[PageCache.HEADER_SIZE]);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create page cache", ex);
+        }
+    }
+
+    /**
+     * Adds the given page to the cache and returns its page id. Pages are numbered in
+     * the order they're added: 0, 1, 2, ...
+     *
+     * If we've already added a page with the same URI, the page is skipped and the
+     * id of the earlier page is returned instead.
+     */
+    public int add(Webpage page) {
+        int uriId = this.getUriId(page.getUri());
+        if (this.pageIds[uriId] != NOT_A_PAGE) {
+            return this.pageIds[uriId];
+        }
+        this.pageIds[uriId] = this.numPages;
+
+        if (this.numPages == this.pageOffsets.length) {
+            this.pageOffsets = Arrays.copyOf(this.pageOffsets, this.numPages * 2);
+        }
+        this.pageOffsets[this.numPages] = this.out.size();
+
+        try {
+            WebpageSummary summary = page.getSummary();
+            VarInts.write(this.out, uriId);
+            VarInts.writeString(this.out, summary.getTitle());
+            VarInts.writeString(this.out, summary.getBlurb());
+
+            VarInts.write(this.out, page.getWords().size());
+            for (String word : page.getWords()) {
+                VarInts.write(this.out, this.terms.getOrAdd(word));
+            }
+
+            VarInts.write(this.out, page.getLinks().size());
+            for (URI link : page.getLinks()) {
+                VarInts.write(this.out, this.getUriId(link));
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write page cache", ex);
+        }
+        this.checkSize();
+
+        this.numPages++;
+        return this.numPages - 1;
+    }
+
+    /**
+     * Writes out the term and URI tables and moves the finished cache into place,
+     * replacing any cache that was there before.
+     */
+    public void finish() {
+        try {
+            // Step 1: write the tables
+            int termTableOffset = this.out.size();
+            for (int termId = 0; termId < this.terms.size(); termId++) {
+                VarInts.writeString(this.out, this.terms.getTerm(termId));
+            }
+            int uriTableOffset = this.out.size();
+            for (int uriId = 0; uriId < this.uris.size(); uriId++) {
+                VarInts.writeString(this.out, this.uris.getTerm(uriId));
+            }
+            int directoryOffset = this.out.size();
+            for (int pageId = 0; pageId < this.numPages; pageId++) {
+                this.out.writeInt(this.pageOffsets[pageId]);
+            }
+            this.checkSize();
+            this.out.close();
+
+            // Step 2: now that we know where everything is, fill in the header
+            ByteBuffer header = ByteBuffer.allocate(PageCache.HEADER_SIZE);
+            header.putInt(PageCache.FORMAT_VERSION);
+            header.putLong(this.sourceFingerprint);
+            header.putInt(this.numPages);
+            header.putInt(this.terms.size());
+            header.putInt(this.uris.size());
+            header.putInt(termTableOffset);
+            header.putInt(uriTableOffset);
+            header.putInt(directoryOffset);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(this.temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+
+            Files.move(this.temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write page cache", ex);
+        }
+    }
+
+    private int getUriId(URI uri) {
+        int uriId = this.uris.getOrAdd(uri.toString());
+        if (uriId == this.pageIds.length) {
+            this.pageIds = Arrays.copyOf(this.pageIds, uriId * 2);
+            Arrays.fill(this.pageIds, uriId, this.pageIds.length, NOT_A_PAGE);
+        }
+        return uriId;
+    }
+
+    private void checkSize() {
+        // DataOutputStream stops counting once it reaches Integer.MAX_VALUE, and we
+        // store offsets as ints (which is also as much as we can map at once).
+        if (this.out.size() == Integer.MAX_VALUE) {
+            throw new RuntimeException("Page cache is too large: must be less than 2 GB");
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package search.index;
+
+/**
+ * Checks whether the document a group of cursors is positioned on contains a phrase:
+ * whether there's some position 'start' such that the i-th term of the phrase occurs
+ * at 'start' plus the i-th term's offset.
+ *
+ * The positions of every term are sorted, and the candidate 'start' only increases,
+ * so we keep a pointer into each term's positions and only ever move it forward: a
+ * check takes time linear in the number of occurrences of the phrase's terms.
+ */
+public class PhraseMatcher {
+    private final PostingCursor[] cursors;
+    private final int[] offsets;
+
+    // For each term of the phrase, the index of the first of its positions we
+    // haven't ruled out yet.
+    private final int[] next;
+
+    /**
+     * @param cursors  a cursor for each term of the phrase, in order (the same cursor
+     *                 may appear more then once, if the phrase repeats a term)
+     * @param offsets  the position of each term relative to the first one
+     */
+    public PhraseMatcher(PostingCursor[] cursors, int[] offsets) {
+        if (cursors.length == 0 || cursors.length != offsets.length) {
+            throw new IllegalArgumentException();
+        }
+        this.cursors = cursors.clone();
+        this.offsets = offsets.clone();
+        this.next = new int[cursors.length];
+    }
+
+    /**
+     * Returns the cursors of the phrase's terms.
+     */
+    public PostingCursor[] getCursors() {
+        return this.cursors.clone();
+    }
+
+    /**
+     * Returns whether the current document contains the phrase.
+     *
+     * Precondition: every cursor must be positioned on the same document.
+     *
+     * If the postings don't store positions, we can't tell where the terms are, so we
+     * accept every document containing all of them.
+     */
+    public boolean matches() {
+        for (PostingCursor cursor : this.cursors) {
+            if (!cursor.hasPositions()) {
+                return true;
+            }
+        }
+
+        for (int i = 0; i < this.next.length; i++) {
+            this.next[i] = 0;
+        }
+        PostingCursor first = this.cursors[0];
+        int count = first.getCount();
+        for (int i = 0; i < count; i++) {
+            int start = first.getPosition(i) - this.offsets[0];
+            boolean matched = true;
+            for (int j = 1; j < this.cursors.length && matched; j++) {
+                int position = this.advance(j, start + this.offsets[j]);
+                if (position == -1) {
+                    // The term doesn't occur anywhere after this, so no later start
+                    // can match either.
+                    return false;
+                }
+                matched = position == start + this.offsets[j];
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the pointer of the given term to its first position that's at least the
+     * target, and returns that position, or -1 if there is none.
+     */
+    private int advance(int term, int target) {
+        PostingCursor cursor = this.cursors[term];
+        int count = cursor.getCount();
+        while (this.next[term] < count) {
+            int position = cursor.getPosition(this.next[term]);
+            if (position >= target) {
+                return position;
+            }
+            this.next[term]++;
+        }
+        return -1;
+    }
+}
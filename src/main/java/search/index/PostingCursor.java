@@ -0,0 +1,89 @@
+package search.index;
+
+/**
+ * Walks over a single posting list in increasing doc id order on behalf of one
+ * query term.
+ */
+public class PostingCursor {
+    /**
+     * The doc id reported once a cursor has moved past its last posting.
+     */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    private final PostingList postings;
+    private final double queryWeight;
+    private int index;
+
+    /**
+     * Creates a cursor positioned at the first posting of the given list.
+     *
+     * @param queryWeight  the amount each occurrence of this cursor's term in a document
+     *                     adds to its score (see IndexSnapshot)
+     */
+    public PostingCursor(PostingList postings, double queryWeight) {
+        this.postings = postings;
+        this.queryWeight = queryWeight;
+        this.index = 0;
+    }
+
+    /**
+     * Returns the doc id the cursor is currently positioned on, or NO_MORE_DOCS if
+     * the cursor is exhausted.
+     */
+    public int docId() {
+        return this.index < this.postings.size() ? this.postings.getDocId(this.index) : NO_MORE_DOCS;
+    }
+
+    /**
+     * Returns this term's contribution to the score of the current document, before
+     * the document's scale is applied.
+     */
+    public double score() {
+        return this.queryWeight * this.postings.getCount(this.index);
+    }
+
+    /**
+     * Returns the number of times this cursor's term occurs in the current document.
+     */
+    public int getCount() {
+        return this.postings.getCount(this.index);
+    }
+
+    /**
+     * Returns whether getPosition can be used (see PostingList.hasPositions).
+     */
+    public boolean hasPositions() {
+        return this.postings.hasPositions();
+    }
+
+    /**
+     * Returns the i-th position (in increasing order) at which this cursor's term
+     * occurs in the current document, where i is less than getCount().
+     */
+    public int getPosition(int i) {
+        return this.postings.getPosition(this.index, i);
+    }
+
+    /**
+     * Returns an upper bound on score() times the document's scale, across every
+     * posting in this cursor's list.
+     */
+    public double upperBound() {
+        return this.queryWeight * this.postings.getMaxScore();
+    }
+
+    /**
+     * Moves the cursor to the next posting.
+     */
+    public void next() {
+        this.index++;
+    }
+
+    /**
+     * Moves the cursor forward to the first posting whose doc id is at least the
+     * given target. Does nothing if the cursor is already there.
+     */
+    public void advance(int target) {
+        this.index = this.postings.findNext(this.index, target);
+    }
+}
@@ -0,0 +1,385 @@
+package search.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Represents every occurrence of a single term within a segment: a list of
+ * document ids, sorted in increasing order, paired with the number of times the
+ * term occurs in each of those documents.
+ *
+ * The counts are all we store: a document's TF-IDF weight for the term depends on
+ * the IDF score (which changes whenever documents are added) and the document's
+ * norm, so both are applied at query time instead (see IndexSnapshot).
+ *
+ * A segment may also store the positions of each posting: the word offsets (within
+ * the document, counting the words the analyzer dropped) at which the term occurs,
+ * in increasing order. Phrase queries and the proximity boost need them (see
+ * WandEvaluator), but nothing else does, so they sit after the rest of the block
+ * and only get decoded once someone asks for one.
+ *
+ * Each list also remembers the largest score any single posting can contribute
+ * once the document's scale is applied, which lets query evaluation skip over
+ * documents that cannot possibly make it into the top results.
+ *
+ * The postings are compressed in blocks of BLOCK_SIZE. Within a block, we store the
+ * gaps between consecutive doc ids (which are small for common terms) and the
+ * counts (which are almost always small), each packed using PForDelta. In front of
+ * the blocks we store the last doc id of each block and where the block starts, so
+ * findNext can jump straight to the one block that could contain its target rather
+ * then decoding everything in between.
+ *
+ * Format:
+ *
+ *   skip table: for each block, int last doc id, int offset of the block (from the
+ *     start of the skip table). Lists with a single block (most of them) have no
+ *     skip table, since there's nothing to skip.
+ *   for each block:
+ *     PForDelta  for each posting, its doc id minus the previous doc id minus one
+ *                (the previous doc id of the first posting is the last doc id of
+ *                the previous block, or -1)
+ *     PForDelta  for each posting, its count minus one
+ *     only if the list has positions, in groups of up to BLOCK_SIZE values:
+ *       PForDelta  for each posting, for each position, the position minus the
+ *                  previous position of the same posting minus one (the previous
+ *                  position of the first one is -1)
+ *
+ * A list decodes one block at a time, and keeps the last one it decoded: reading
+ * the postings in order only decodes each block once. This means a list must only
+ * be used by one thread, but lists are cheap to create (see Segment.getPostings).
+ */
+public class PostingList {
+    /**
+     * The number of postings in every block but the last.
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    private static final int BLOCK_SHIFT = 7;
+    private static final int SKIP_ENTRY_SIZE = 8;
+    private static final int NO_BLOCK = -1;
+
+    private final ByteBuffer data;
+    private final int offset;
+    private final int size;
+    private final int numBlocks;
+    private final int skipTableSize;
+    private final double maxScore;
+    private final boolean hasPositions;
+
+    // The doc ids and counts of the block we decoded last, and where its positions
+    // start.
+    private final int[] docIds;
+    private final int[] counts;
+    private int block;
+    private int positionsOffset;
+
+    // The positions of the block we decoded positions for last: those of posting 'i'
+    // of the block are positions[positionStarts[i]] up to positions[positionStarts[i + 1]].
+    // Most lists never need them, so these are only allocated on first use.
+    private int[] positions;
+    private int[] positionStarts;
+    private int[] group;
+    private int positionsBlock;
+
+    /**
+     * Creates a list over the postings written (by 'write') at the given offset.
+     *
+     * @param size          the number of postings
+     * @param maxScore      an upper bound on getCount(i) times the scale of document
+     *                      getDocId(i), over every posting
+     * @param hasPositions  whether the postings were written with their positions
+     */
+    public PostingList(ByteBuffer data, int offset, int size, double maxScore, boolean hasPositions) {
+        this.data = data.duplicate();
+        this.offset = offset;
+        this.size = size;
+        this.numBlocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        this.skipTableSize = getSkipTableSize(this.numBlocks);
+        this.maxScore = maxScore;
+        this.hasPositions = hasPositions;
+        this.docIds = new int[BLOCK_SIZE];
+        this.counts = new int[BLOCK_SIZE];
+        this.block = NO_BLOCK;
+        this.positionsBlock = NO_BLOCK;
+    }
+
+    /**
+     * Writes the first 'size' postings in the given arrays in the format described
+     * above.
+     *
+     * Precondition: the doc ids must be increasing and the counts positive.
+     */
+    public static void write(DataOutputStream out, int[] docIds, int[] counts, int size) throws IOException {
+        write(out, docIds, counts, null, size);
+    }
+
+    /**
+     * Writes the first 'size' postings in the given arrays, along with their
+     * positions, in the format described above.
+     *
+     * Precondition: the doc ids must be increasing and the counts positive. The
+     * positions array holds the positions of every posting one after the other, each
+     * posting's in increasing order, or is null to write the postings without them.
+     */
+    public static void write(DataOutputStream out, int[] docIds, int[] counts, int[] positions, int size)
+            throws IOException {
+        // We don't know where each block starts until we've compressed the ones
+        // before it, so we compress them all before writing the skip table.
+        int numBlocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream blocks = new DataOutputStream(bytes);
+        int[] lastDocIds = new int[numBlocks];
+        int[] blockOffsets = new int[numBlocks];
+        int[] values = new int[BLOCK_SIZE];
+        int previous = -1;
+        int position = 0;
+        for (int block = 0; block < numBlocks; block++) {
+            int start = block << BLOCK_SHIFT;
+            int length = Math.min(BLOCK_SIZE, size - start);
+            blockOffsets[block] = getSkipTableSize(numBlocks) + blocks.size();
+
+            for (int i = 0; i < length; i++) {
+                values[i] = docIds[start + i] - previous - 1;
+                previous = docIds[start + i];
+            }
+            PForDelta.write(blocks, values, length);
+            for (int i = 0; i < length; i++) {
+                values[i] = counts[start + i] - 1;
+            }
+            PForDelta.write(blocks, values, length);
+            lastDocIds[block] = previous;
+
+            if (positions != null) {
+                position = writePositions(blocks, counts, positions, start, length, position, values);
+            }
+        }
+
+        if (getSkipTableSize(numBlocks) > 0) {
+            for (int block = 0; block < numBlocks; block++) {
+                out.writeInt(lastDocIds[block]);
+                out.writeInt(blockOffsets[block]);
+            }
+        }
+        bytes.writeTo(out);
+    }
+
+    /**
+     * Writes the positions of the 'length' postings starting at 'start', whose first
+     * position is at the given index of 'positions', and returns the index after
+     * their last one.
+     */
+    private static int writePositions(DataOutputStream out, int[] counts, int[] positions, int start,
+                                      int length, int position, int[] values) throws IOException {
+        int numValues = 0;
+        for (int i = start; i < start + length; i++) {
+            int previous = -1;
+            for (int j = 0; j < counts[i]; j++) {
+                values[numValues] = positions[position] - previous - 1;
+                previous = positions[position];
+                position++;
+                numValues++;
+                if (numValues == BLOCK_SIZE) {
+                    PForDelta.write(out, values, numValues);
+                    numValues = 0;
+                }
+            }
+        }
+        if (numValues > 0) {
+            PForDelta.write(out, values, numValues);
+        }
+        return position;
+    }
+
+    private static int getSkipTableSize(int numBlocks) {
+        return numBlocks > 1 ? SKIP_ENTRY_SIZE * numBlocks : 0;
+    }
+
+    /**
+     * Returns the index of the first posting at or after 'from' whose doc id is at
+     * least 'target', or size() if there is no such posting.
+     *
+     * Since cursors usually only skip ahead a little, this gallops forward through
+     * the skip table from the block containing 'from' before binary searching,
+     * rather then searching the whole table. Only the block we end up in is decoded.
+     */
+    public int findNext(int from, int target) {
+        if (from >= this.size) {
+            return this.size;
+        }
+
+        // Step 1: find the first block whose last doc id is at least the target
+        int start = from >>> BLOCK_SHIFT;
+        int low = start;
+        int step = 1;
+        int high = start;
+        while (this.skipTableSize > 0 && high < this.numBlocks && this.getLastDocId(high) < target) {
+            low = high + 1;
+            high = start + step;
+            step *= 2;
+        }
+        high = Math.min(high, this.numBlocks);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.getLastDocId(mid) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low == this.numBlocks) {
+            return this.size;
+        }
+
+        // Step 2: binary search within that block
+        this.decode(low);
+        int blockStart = low << BLOCK_SHIFT;
+        int first = Math.max(from, blockStart) - blockStart;
+        int last = Math.min(BLOCK_SIZE, this.size - blockStart);
+        while (first < last) {
+            int mid = (first + last) >>> 1;
+            if (this.docIds[mid] < target) {
+                first = mid + 1;
+            } else {
+                last = mid;
+            }
+        }
+        return blockStart + first;
+    }
+
+    /**
+     * Returns the doc id of the posting at the given index.
+     */
+    public int getDocId(int index) {
+        this.decode(this.checkIndex(index) >>> BLOCK_SHIFT);
+        return this.docIds[index & (BLOCK_SIZE - 1)];
+    }
+
+    /**
+     * Returns the number of times the term occurs in the document at the given index.
+     */
+    public int getCount(int index) {
+        this.decode(this.checkIndex(index) >>> BLOCK_SHIFT);
+        return this.counts[index & (BLOCK_SIZE - 1)];
+    }
+
+    /**
+     * Returns whether this list stores the position of every occurrence.
+     */
+    public boolean hasPositions() {
+        return this.hasPositions;
+    }
+
+    /**
+     * Returns the i-th position (in increasing order) at which the term occurs in the
+     * document at the given index, where i is less than getCount(index).
+     *
+     * @throws IllegalStateException  if this list doesn't store positions
+     */
+    public int getPosition(int index, int i) {
+        if (!this.hasPositions) {
+            throw new IllegalStateException("These postings were written without positions");
+        }
+        this.decodePositions(this.checkIndex(index) >>> BLOCK_SHIFT);
+        int start = this.positionStarts[index & (BLOCK_SIZE - 1)];
+        if (i < 0 || start + i >= this.positionStarts[(index & (BLOCK_SIZE - 1)) + 1]) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.positions[start + i];
+    }
+
+    /**
+     * Returns an upper bound on the count of any posting in this list times its
+     * document's scale.
+     */
+    public double getMaxScore() {
+        return this.maxScore;
+    }
+
+    /**
+     * Returns the number of documents containing this term.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return index;
+    }
+
+    private int getLastDocId(int block) {
+        return this.data.getInt(this.offset + SKIP_ENTRY_SIZE * block);
+    }
+
+    /**
+     * Decodes the given block into 'docIds' and 'counts', unless we already did.
+     */
+    private void decode(int block) {
+        if (block == this.block) {
+            return;
+        }
+        int length = Math.min(BLOCK_SIZE, this.size - (block << BLOCK_SHIFT));
+        if (this.skipTableSize > 0) {
+            this.data.position(this.offset + this.data.getInt(this.offset + SKIP_ENTRY_SIZE * block + 4));
+        } else {
+            this.data.position(this.offset);
+        }
+        PForDelta.read(this.data, this.docIds, length);
+        PForDelta.read(this.data, this.counts, length);
+        this.positionsOffset = this.data.position();
+
+        int previous = block == 0 ? -1 : this.getLastDocId(block - 1);
+        for (int i = 0; i < length; i++) {
+            previous += this.docIds[i] + 1;
+            this.docIds[i] = previous;
+            this.counts[i]++;
+        }
+        this.block = block;
+    }
+
+    /**
+     * Decodes the positions of the given block into 'positions', unless we already did.
+     */
+    private void decodePositions(int block) {
+        if (block == this.positionsBlock) {
+            return;
+        }
+        if (this.positions == null) {
+            this.positions = new int[BLOCK_SIZE];
+            this.positionStarts = new int[BLOCK_SIZE + 1];
+            this.group = new int[BLOCK_SIZE];
+        }
+        this.decode(block);
+        int length = Math.min(BLOCK_SIZE, this.size - (block << BLOCK_SHIFT));
+        int numValues = 0;
+        for (int i = 0; i < length; i++) {
+            this.positionStarts[i] = numValues;
+            numValues += this.counts[i];
+        }
+        this.positionStarts[length] = numValues;
+        if (numValues > this.positions.length) {
+            this.positions = new int[Math.max(numValues, this.positions.length * 2)];
+        }
+
+        // PForDelta can only decode into the start of an array, so each group goes
+        // through 'group' first.
+        this.data.position(this.positionsOffset);
+        for (int start = 0; start < numValues; start += BLOCK_SIZE) {
+            int groupSize = Math.min(BLOCK_SIZE, numValues - start);
+            PForDelta.read(this.data, this.group, groupSize);
+            System.arraycopy(this.group, 0, this.positions, start, groupSize);
+        }
+        for (int i = 0; i < length; i++) {
+            int previous = -1;
+            for (int j = this.positionStarts[i]; j < this.positionStarts[i + 1]; j++) {
+                previous += this.positions[j] + 1;
+                this.positions[j] = previous;
+            }
+        }
+        this.positionsBlock = block;
+    }
+}
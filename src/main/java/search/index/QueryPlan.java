@@ -0,0 +1,235 @@
+package search.index;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import search.models.Phrase;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Everything needed to find the top k documents for one query in one snapshot: where
+ * each query term's postings are in every segment, and how much work scoring them
+ * all is going to be.
+ *
+ * The plan can score any range of (global) doc ids on its own, which lets us split
+ * an expensive query into shards of the doc id space, find each shard's top k on a
+ * different thread, and merge them. Since TopKCollector breaks ties by doc id, the
+ * merged results are exactly the ones a single pass over every document would find.
+ *
+ * Documents must contain every phrase of the query to match (see WandEvaluator).
+ * A phrase's terms usually have weights of their own, but if not (say, the term
+ * occurs in every document, so its IDF is zero) we still need their postings to
+ * find the phrase, so we add them as extra terms with a weight of zero.
+ *
+ * A plan is immutable once created, so any number of threads can use it at once:
+ * each shard creates its own posting lists and cursors.
+ */
+public class QueryPlan {
+    private final IndexSnapshot index;
+    private final double[] weights;
+    private final double proximityWeight;
+    private final IntToDoubleFunction documentScale;
+
+    // ordinals[i][j] is the ordinal of the j-th query term in the i-th segment, or
+    // Segment.NOT_FOUND.
+    private final int[][] ordinals;
+
+    // For each phrase, the index of each of its terms (into 'weights'), and their
+    // positions relative to the first one.
+    private final int[][] phraseTerms;
+    private final int[][] phraseOffsets;
+
+    // The total number of postings across every query term and segment.
+    private final long cost;
+
+    /**
+     * Creates a plan for a query without phrases, scoring documents without any
+     * proximity boost.
+     */
+    public QueryPlan(IndexSnapshot index, String[] terms, double[] weights, IntToDoubleFunction documentScale) {
+        this(index, terms, weights, new ArrayList<>(), 0.0, documentScale);
+    }
+
+    /**
+     * @param terms            the query's terms
+     * @param weights          the amount each occurrence of the corresponding term adds
+     *                         to a document's score, before the document's scale
+     * @param phrases          the phrases every matching document must contain
+     * @param proximityWeight  the most a document's score is boosted by for containing
+     *                         the query terms close together (see WandEvaluator)
+     * @param documentScale    returns the amount a document's score is scaled by, given
+     *                         its global doc id
+     */
+    public QueryPlan(IndexSnapshot index, String[] terms, double[] weights, IList<Phrase> phrases,
+                     double proximityWeight, IntToDoubleFunction documentScale) {
+        if (terms.length != weights.length) {
+            throw new IllegalArgumentException("Need exactly one weight per term");
+        }
+
+        // Step 1: find the terms of every phrase, adding the ones that are missing
+        IList<String> allTerms = new ArrayList<>(terms.length);
+        for (String term : terms) {
+            allTerms.add(term);
+        }
+        this.phraseTerms = new int[phrases.size()][];
+        this.phraseOffsets = new int[phrases.size()][];
+        int p = 0;
+        for (Phrase phrase : phrases) {
+            this.phraseTerms[p] = new int[phrase.size()];
+            this.phraseOffsets[p] = new int[phrase.size()];
+            for (int i = 0; i < phrase.size(); i++) {
+                int term = allTerms.indexOf(phrase.getTerm(i));
+                if (term == -1) {
+                    term = allTerms.size();
+                    allTerms.add(phrase.getTerm(i));
+                }
+                this.phraseTerms[p][i] = term;
+                this.phraseOffsets[p][i] = phrase.getPosition(i);
+            }
+            p++;
+        }
+        this.weights = Arrays.copyOf(weights, allTerms.size());
+
+        // Step 2: look up every term in every segment
+        this.index = index;
+        this.proximityWeight = proximityWeight;
+        this.documentScale = documentScale;
+        this.ordinals = new int[index.numSegments()][allTerms.size()];
+
+        long cost = 0;
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            for (int j = 0; j < allTerms.size(); j++) {
+                int ordinal = segment.findTerm(allTerms.get(j));
+                this.ordinals[i][j] = ordinal;
+                if (ordinal != Segment.NOT_FOUND) {
+                    cost += segment.getDocFrequency(ordinal);
+                }
+            }
+        }
+        this.cost = cost;
+    }
+
+    /**
+     * Returns a rough estimate of how long the query takes to run: the number of
+     * postings we might have to look at.
+     */
+    public long getCost() {
+        return this.cost;
+    }
+
+    /**
+     * Returns the top k documents, splitting the doc id space into the given number
+     * of equally sized shards and searching them on the given pool. If there's only
+     * one shard (or no pool), we search on the current thread instead.
+     *
+     * @throws IllegalArgumentException  if k < 0 or numShards < 1
+     */
+    public TopKCollector findTopK(int k, int numShards, ForkJoinPool pool) {
+        if (numShards < 1) {
+            throw new IllegalArgumentException();
+        }
+        if (numShards == 1 || pool == null) {
+            TopKCollector collector = new TopKCollector(k);
+            this.collectTopK(collector, 0, this.index.numDocs());
+            return collector;
+        }
+        return pool.invoke(new ShardTask(this, k, numShards, 0, numShards));
+    }
+
+    /**
+     * Adds the documents with global doc ids in [from, to) to the given collector.
+     */
+    public void collectTopK(TopKCollector collector, int from, int to) {
+        for (int i = 0; i < this.index.numSegments(); i++) {
+            int docBase = this.index.getDocBase(i);
+            int segmentEnd = docBase + this.index.getSegment(i).numDocs();
+            if (segmentEnd <= from || docBase >= to || !this.hasPhraseTerms(i)) {
+                continue;
+            }
+
+            IList<PostingCursor> cursors = new ArrayList<>(this.weights.length);
+            PostingCursor[] termCursors = new PostingCursor[this.weights.length];
+            for (int j = 0; j < this.weights.length; j++) {
+                if (this.ordinals[i][j] != Segment.NOT_FOUND) {
+                    termCursors[j] = new PostingCursor(this.index.getPostings(i, this.ordinals[i][j]), this.weights[j]);
+                    cursors.add(termCursors[j]);
+                }
+            }
+            IList<PhraseMatcher> phrases = new ArrayList<>(this.phraseTerms.length);
+            for (int p = 0; p < this.phraseTerms.length; p++) {
+                PostingCursor[] phraseCursors = new PostingCursor[this.phraseTerms[p].length];
+                for (int j = 0; j < phraseCursors.length; j++) {
+                    phraseCursors[j] = termCursors[this.phraseTerms[p][j]];
+                }
+                phrases.add(new PhraseMatcher(phraseCursors, this.phraseOffsets[p]));
+            }
+            new WandEvaluator(cursors, phrases, this.proximityWeight, docBase, this.documentScale)
+                    .collectTopK(collector, Math.max(from, docBase) - docBase, Math.min(to, segmentEnd) - docBase);
+        }
+    }
+
+    /**
+     * Returns whether the given segment contains every term of every phrase: if not,
+     * none of its documents can match.
+     */
+    private boolean hasPhraseTerms(int segment) {
+        for (int[] terms : this.phraseTerms) {
+            for (int term : terms) {
+                if (this.ordinals[segment][term] == Segment.NOT_FOUND) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches the shards in [startShard, endShard) by splitting them in half until
+     * there's only one, and merges the results on the way back up.
+     */
+    private static class ShardTask extends RecursiveTask<TopKCollector> {
+        private static final long serialVersionUID = 1L;
+
+        private final QueryPlan plan;
+        private final int k;
+        private final int numShards;
+        private final int startShard;
+        private final int endShard;
+
+        public ShardTask(QueryPlan plan, int k, int numShards, int startShard, int endShard) {
+            this.plan = plan;
+            this.k = k;
+            this.numShards = numShards;
+            this.startShard = startShard;
+            this.endShard = endShard;
+        }
+
+        @Override
+        protected TopKCollector compute() {
+            if (this.endShard - this.startShard == 1) {
+                TopKCollector collector = new TopKCollector(this.k);
+                this.plan.collectTopK(collector, this.shardStart(this.startShard), this.shardStart(this.endShard));
+                return collector;
+            }
+
+            int middle = (this.startShard + this.endShard) >>> 1;
+            ShardTask left = new ShardTask(this.plan, this.k, this.numShards, this.startShard, middle);
+            ShardTask right = new ShardTask(this.plan, this.k, this.numShards, middle, this.endShard);
+            right.fork();
+            TopKCollector output = left.compute();
+            output.collectAll(right.join());
+            return output;
+        }
+
+        /**
+         * Returns the first global doc id of the given shard.
+         */
+        private int shardStart(int shard) {
+            return (int) ((long) this.plan.index.numDocs() * shard / this.numShards);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package search.index;
+
+import search.models.WebpageSummary;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An immutable, memory-mapped piece of the index covering some of the documents.
+ *
+ * A segment stores everything about its documents that doesn't depend on any other
+ * document: each document's summary, length and links, and for each term the
+ * documents containing it and how many times they contain it. Anything depending on
+ * the whole collection (IDF scores, document norms, page ranks) lives in the
+ * IndexSnapshot instead, so adding documents never requires rewriting a segment.
+ *
+ * Documents are numbered from 0 within each segment; the snapshot gives every
+ * segment a base to add to get the global doc id. Terms are numbered in sorted
+ * order (by their UTF-8 bytes), so we can find a term by binary search without
+ * loading the dictionary into memory. Opening a segment reads nothing but its header.
+ *
+ * File format (ints are big-endian, varints and strings are described in VarInts):
+ *
+ *   header:
+ *     int     FORMAT_VERSION
+ *     int     number of documents, terms and URIs
+ *     int     offset of the document, URI and term directories
+ *     int     flags: FLAG_POSITIONS if the postings include positions
+ *   one record per document:
+ *     varint  URI id
+ *     string  title
+ *     string  blurb
+ *     varint  number of links, then the URI id of each link
+ *   a string per URI id (of a document or a link)
+ *   a string per term, in sorted order
+ *   postings: for each term, the doc id of every document containing it and the
+ *     number of times each contains it (and optionally where), compressed (see
+ *     PostingList)
+ *   document directory: for each document, int length (in words), int record offset
+ *   URI directory: for each URI, int string offset
+ *   term directory: for each term, int string offset, int document frequency,
+ *     int postings offset
+ */
+public class Segment {
+    /**
+     * The term ordinal returned when looking up a term that isn't in a segment.
+     */
+    public static final int NOT_FOUND = -1;
+
+    static final int FORMAT_VERSION = 3;
+    static final int HEADER_SIZE = 32;
+    static final int FLAG_POSITIONS = 1;
+
+    private static final int DOC_ENTRY_SIZE = 8;
+    private static final int URI_ENTRY_SIZE = 4;
+    private static final int TERM_ENTRY_SIZE = 12;
+
+    private final String name;
+    private final ByteBuffer data;
+    private final int numDocs;
+    private final int numTerms;
+    private final int numUris;
+    private final int docDirectoryOffset;
+    private final int uriDirectoryOffset;
+    private final int termDirectoryOffset;
+    private final boolean hasPositions;
+
+    private Segment(String name, ByteBuffer data) {
+        this.name = name;
+        this.data = data;
+        this.numDocs = data.getInt(4);
+        this.numTerms = data.getInt(8);
+        this.numUris = data.getInt(12);
+        this.docDirectoryOffset = data.getInt(16);
+        this.uriDirectoryOffset = data.getInt(20);
+        this.termDirectoryOffset = data.getInt(24);
+        this.hasPositions = (data.getInt(28) & FLAG_POSITIONS) != 0;
+    }
+
+    /**
+     * Maps the segment at the given path into memory.
+     */
+    public static Segment open(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new RuntimeException("Not a valid segment: " + path);
+            }
+            // The mapping stays valid after we close the channel.
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt(0) != FORMAT_VERSION) {
+                throw new RuntimeException("Unsupported segment format: " + path);
+            }
+            return new Segment(path.getFileName().toString(), data);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not open segment", ex);
+        }
+    }
+
+    /**
+     * Returns the name of this segment's file.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the number of documents. Every doc id is in the range [0, numDocs()).
+     */
+    public int numDocs() {
+        return this.numDocs;
+    }
+
+    /**
+     * Returns the number of unique terms. Every term ordinal is in the range [0, numTerms()).
+     */
+    public int numTerms() {
+        return this.numTerms;
+    }
+
+    /**
+     * Returns the number of unique URIs. Every URI id is in the range [0, numUris()).
+     */
+    public int numUris() {
+        return this.numUris;
+    }
+
+    /**
+     * Returns whether the postings of this segment include the position of every
+     * occurrence (see PostingList.getPosition).
+     */
+    public boolean hasPositions() {
+        return this.hasPositions;
+    }
+
+    /**
+     * Returns the ordinal of the given term, or NOT_FOUND if no document in this
+     * segment contains it.
+     */
+    public int findTerm(String term) {
+        byte[] bytes = term.getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = this.numTerms - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = this.compareTerm(mid, bytes);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the term with the given ordinal.
+     */
+    public String getTerm(int ordinal) {
+        return this.readString(this.data.getInt(this.termEntry(ordinal)));
+    }
+
+    /**
+     * Returns the number of documents in this segment containing the term with the
+     * given ordinal.
+     */
+    public int getDocFrequency(int ordinal) {
+        return this.data.getInt(this.termEntry(ordinal) + 4);
+    }
+
+    /**
+     * Returns the postings of the term with the given ordinal.
+     *
+     * @param maxScore  an upper bound on the score of any of these postings (see
+     *                  PostingList.getMaxScore)
+     */
+    public PostingList getPostings(int ordinal, double maxScore) {
+        int size = this.getDocFrequency(ordinal);
+        int offset = this.data.getInt(this.termEntry(ordinal) + 8);
+        return new PostingList(this.data, offset, size, maxScore, this.hasPositions);
+    }
+
+    /**
+     * Returns the number of words in the given document.
+     */
+    public int getDocLength(int docId) {
+        return this.data.getInt(this.docEntry(docId));
+    }
+
+    /**
+     * Returns the URI of the given document.
+     */
+    public URI getUri(int docId) {
+        return URI.create(this.getUriString(VarInts.read(this.seekDoc(docId))));
+    }
+
+    /**
+     * Returns the summary of the given document.
+     */
+    public WebpageSummary getSummary(int docId) {
+        ByteBuffer buffer = this.seekDoc(docId);
+        URI uri = URI.create(this.getUriString(VarInts.read(buffer)));
+        String title = VarInts.readString(buffer);
+        String blurb = VarInts.readString(buffer);
+        return new WebpageSummary(uri, title, blurb);
+    }
+
+    /**
+     * Returns the URI id of the given document's own URI.
+     */
+    int getUriId(int docId) {
+        return VarInts.read(this.seekDoc(docId));
+    }
+
+    /**
+     * Returns the URI id of every link in the given document, in order.
+     */
+    public int[] getLinkUriIds(int docId) {
+        ByteBuffer buffer = this.seekDoc(docId);
+        VarInts.read(buffer);
+        VarInts.skipString(buffer);
+        VarInts.skipString(buffer);
+
+        int[] output = new int[VarInts.read(buffer)];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = VarInts.read(buffer);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the URI with the given URI id, as a string.
+     */
+    public String getUriString(int uriId) {
+        if (uriId < 0 || uriId >= this.numUris) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.readString(this.data.getInt(this.uriDirectoryOffset + URI_ENTRY_SIZE * uriId));
+    }
+
+    private int docEntry(int docId) {
+        if (docId < 0 || docId >= this.numDocs) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.docDirectoryOffset + DOC_ENTRY_SIZE * docId;
+    }
+
+    private int termEntry(int ordinal) {
+        if (ordinal < 0 || ordinal >= this.numTerms) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.termDirectoryOffset + TERM_ENTRY_SIZE * ordinal;
+    }
+
+    /**
+     * Returns a buffer positioned at the start of the given document's record. Every
+     * caller gets its own buffer, so several threads can read the segment at once.
+     */
+    private ByteBuffer seekDoc(int docId) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.data.getInt(this.docEntry(docId) + 4));
+        return buffer;
+    }
+
+    private String readString(int offset) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(offset);
+        return VarInts.readString(buffer);
+    }
+
+    /**
+     * Compares the term with the given ordinal to the given UTF-8 bytes, byte by
+     * byte (treating bytes as unsigned), without decoding the term.
+     */
+    private int compareTerm(int ordinal, byte[] bytes) {
+        ByteBuffer buffer = this.data.duplicate();
+        buffer.position(this.data.getInt(this.termEntry(ordinal)));
+        int length = VarInts.read(buffer);
+        int start = buffer.position();
+        for (int i = 0; i < Math.min(length, bytes.length); i++) {
+            int cmp = Integer.compare(buffer.get(start + i) & 0xFF, bytes[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(length, bytes.length);
+    }
+}
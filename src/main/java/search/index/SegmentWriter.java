@@ -0,0 +1,498 @@
+package search.index;
+
+import search.misc.Analyzer;
+import search.models.Webpage;
+import search.models.WebpageSummary;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a segment (see Segment) one document at a time, from parsed webpages, a
+ * page cache or other segments.
+ *
+ * The words of pages are analyzed (see Analyzer) as they're added, so the segment
+ * holds the resulting terms. Documents copied from other segments were analyzed
+ * when they were first added, so they're copied as they are.
+ *
+ * Each document's summary and links are written out as soon as it's added; only
+ * the postings are kept in memory until 'finish', since we can't write any term's
+ * postings until we've seen every document. Until then, we keep each term's postings
+ * as varints: the gap since the previous doc id and the count, usually a byte each,
+ * followed (if we're storing positions) by the gap since the previous position of
+ * each occurrence.
+ *
+ * A word's position is its offset among all the words of the page, including the
+ * ones the analyzer dropped. That way "bank of america" still only matches a page
+ * where exactly one word sits between "bank" and "america", even though "of" is a
+ * stop word.
+ *
+ * The segment is written to a temporary file and only moved into place by 'finish',
+ * so a crash halfway through never leaves a broken segment behind.
+ */
+public class SegmentWriter {
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int DEFAULT_POSTINGS_CAPACITY = 8;
+
+    // The most bytes a single posting can take (two varints of up to 5 bytes), and
+    // the most each of its positions can add.
+    private static final int MAX_POSTING_BYTES = 10;
+    private static final int MAX_POSITION_BYTES = 5;
+    private static final int UNMAPPED = -1;
+
+    private final Path path;
+    private final Path temp;
+    private final DataOutputStream out;
+    private final Analyzer analyzer;
+    private final boolean storePositions;
+
+    // Assigns ids to every word, and to every URI (of a document or of a link).
+    private final TermDictionary terms;
+    private final TermDictionary uris;
+
+    // The postings of each term so far, indexed by the term's id in 'terms': the
+    // encoded postings, how many bytes of them are used, how many postings there
+    // are and the doc id of the last one.
+    private byte[][] postingBytes;
+    private int[] postingLengths;
+    private int[] postingSizes;
+    private int[] lastDocIds;
+
+    // The length of each document and where its record starts.
+    private int[] docLengths;
+    private int[] docOffsets;
+    private int numDocs;
+
+    /**
+     * Creates a writer that indexes the words of pages exactly as they are. Use this
+     * when only merging segments.
+     *
+     * @param storePositions  whether to store the position of every occurrence of each
+     *                        term; segments copied into this one must have them too
+     */
+    public SegmentWriter(Path path, boolean storePositions) {
+        this(path, new Analyzer(), storePositions);
+    }
+
+    /**
+     * Creates a writer that indexes the terms the given analyzer turns the words of
+     * each page into.
+     *
+     * @param storePositions  whether to store the position of every occurrence of each
+     *                        term (see PostingList)
+     */
+    public SegmentWriter(Path path, Analyzer analyzer, boolean storePositions) {
+        this.path = path;
+        this.analyzer = analyzer;
+        this.storePositions = storePositions;
+        this.temp = path.resolveSibling(path.getFileName() + ".tmp");
+        this.terms = new TermDictionary();
+        this.uris = new TermDictionary();
+        this.postingBytes = new byte[DEFAULT_CAPACITY][];
+        this.postingLengths = new int[DEFAULT_CAPACITY];
+        this.postingSizes = new int[DEFAULT_CAPACITY];
+        this.lastDocIds = new int[DEFAULT_CAPACITY];
+        this.docLengths = new int[DEFAULT_CAPACITY];
+        this.docOffsets = new int[DEFAULT_CAPACITY];
+        this.numDocs = 0;
+        try {
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.temp)));
+
+            // We don't know where the directories start until we're done, so leave
+            // room for the header and fill it in at the end.
+            this.out.write(new byte[Segment.HEADER_SIZE]);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not create segment", ex);
+        }
+    }
+
+    /**
+     * Adds every page in the given cache, in order: page 'i' of the cache becomes
+     * document 'numDocs() + i' of this segment.
+     */
+    public void addAll(PageCache pages) {
+        // The cache numbers its words and URIs too, so we only need to analyze and
+        // look up each unique one once rather then every time it appears.
+        int[] termIds = new int[pages.numTerms()];
+        for (int i = 0; i < termIds.length; i++) {
+            String term = this.analyzer.analyzeWord(pages.getTerm(i));
+            termIds[i] = term == null ? UNMAPPED : this.terms.getOrAdd(term);
+        }
+        int[] uriIds = new int[pages.numUris()];
+        Arrays.fill(uriIds, UNMAPPED);
+
+        for (int pageId = 0; pageId < pages.numPages(); pageId++) {
+            int[] words = pages.getTermIds(pageId);
+            int[] positions = new int[words.length];
+            int numWords = 0;
+            for (int i = 0; i < words.length; i++) {
+                if (termIds[words[i]] != UNMAPPED) {
+                    words[numWords] = termIds[words[i]];
+                    positions[numWords] = i;
+                    numWords++;
+                }
+            }
+            int[] links = pages.getLinkUriIds(pageId);
+            for (int i = 0; i < links.length; i++) {
+                links[i] = this.mapUri(pages, uriIds, links[i]);
+            }
+            int uriId = this.mapUri(pages, uriIds, pages.getUriId(pageId));
+            WebpageSummary summary = pages.getSummary(pageId);
+            this.addDocument(uriId, summary.getTitle(), summary.getBlurb(), words, positions, numWords, links);
+        }
+    }
+
+    /**
+     * Adds the given page as document 'numDocs()' of this segment.
+     *
+     * Unlike a page cache, a segment doesn't check for pages with the same URI: the
+     * caller must make sure every page it adds (to any segment) has a unique URI.
+     */
+    public void add(Webpage page) {
+        int[] words = new int[page.getWords().size()];
+        int[] positions = new int[words.length];
+        int numWords = 0;
+        int position = 0;
+        for (String word : page.getWords()) {
+            String term = this.analyzer.analyzeWord(word);
+            if (term != null) {
+                words[numWords] = this.terms.getOrAdd(term);
+                positions[numWords] = position;
+                numWords++;
+            }
+            position++;
+        }
+        int[] links = new int[page.getLinks().size()];
+        int i = 0;
+        for (URI link : page.getLinks()) {
+            links[i] = this.uris.getOrAdd(link.toString());
+            i++;
+        }
+        int uriId = this.uris.getOrAdd(page.getUri().toString());
+        WebpageSummary summary = page.getSummary();
+        this.addDocument(uriId, summary.getTitle(), summary.getBlurb(), words, positions, numWords, links);
+    }
+
+    /**
+     * Adds every document in the given segment, in order: document 'i' of the segment
+     * becomes document 'numDocs() + i' of this one.
+     *
+     * This is how we merge segments: the documents' records are copied over one at a
+     * time, and each term's postings are appended to the postings of the same term
+     * in this segment, so we never need to know which words each document contains.
+     *
+     * @throws IllegalArgumentException  if this writer stores positions but the
+     *                                   segment doesn't have them
+     */
+    public void addAll(Segment segment) {
+        if (this.storePositions && !segment.hasPositions()) {
+            throw new IllegalArgumentException("Segment has no positions to copy: " + segment.getName());
+        }
+        int docBase = this.numDocs;
+        int[] uriIds = new int[segment.numUris()];
+        Arrays.fill(uriIds, UNMAPPED);
+        for (int docId = 0; docId < segment.numDocs(); docId++) {
+            int[] links = segment.getLinkUriIds(docId);
+            for (int i = 0; i < links.length; i++) {
+                links[i] = this.mapUri(segment, uriIds, links[i]);
+            }
+            int uriId = this.mapUri(segment, uriIds, segment.getUriId(docId));
+            WebpageSummary summary = segment.getSummary(docId);
+            this.writeDocument(uriId, summary.getTitle(), summary.getBlurb(), links,
+                    segment.getDocLength(docId));
+        }
+
+        int[] positions = new int[DEFAULT_POSTINGS_CAPACITY];
+        for (int ordinal = 0; ordinal < segment.numTerms(); ordinal++) {
+            int termId = this.terms.getOrAdd(segment.getTerm(ordinal));
+            PostingList postings = segment.getPostings(ordinal, 0.0);
+            for (int i = 0; i < postings.size(); i++) {
+                int count = postings.getCount(i);
+                if (this.storePositions) {
+                    if (count > positions.length) {
+                        positions = new int[Math.max(count, positions.length * 2)];
+                    }
+                    for (int j = 0; j < count; j++) {
+                        positions[j] = postings.getPosition(i, j);
+                    }
+                }
+                this.addPosting(termId, docBase + postings.getDocId(i), count, positions);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of documents added so far.
+     */
+    public int numDocs() {
+        return this.numDocs;
+    }
+
+    /**
+     * Writes out the tables, postings and directories, and moves the finished segment
+     * into place.
+     */
+    public void finish() {
+        try {
+            // Step 1: write the URIs and the terms (in sorted order)
+            int[] uriOffsets = new int[this.uris.size()];
+            for (int uriId = 0; uriId < uriOffsets.length; uriId++) {
+                uriOffsets[uriId] = this.out.size();
+                VarInts.writeString(this.out, this.uris.getTerm(uriId));
+            }
+
+            int[] order = this.sortTerms();
+            int[] termOffsets = new int[order.length];
+            for (int ordinal = 0; ordinal < order.length; ordinal++) {
+                termOffsets[ordinal] = this.out.size();
+                VarInts.writeString(this.out, this.terms.getTerm(order[ordinal]));
+            }
+
+            // Step 2: decode each term's postings and write them out compressed
+            int[] postingOffsets = new int[order.length];
+            int[] docIds = new int[DEFAULT_POSTINGS_CAPACITY];
+            int[] counts = new int[DEFAULT_POSTINGS_CAPACITY];
+            int[] positions = this.storePositions ? new int[DEFAULT_POSTINGS_CAPACITY] : null;
+            for (int ordinal = 0; ordinal < order.length; ordinal++) {
+                int termId = order[ordinal];
+                int size = this.postingSizes[termId];
+                if (size > docIds.length) {
+                    docIds = new int[Math.max(size, docIds.length * 2)];
+                    counts = new int[docIds.length];
+                }
+                ByteBuffer postings = ByteBuffer.wrap(this.postingBytes[termId], 0, this.postingLengths[termId]);
+                int docId = -1;
+                int numPositions = 0;
+                for (int i = 0; i < size; i++) {
+                    docId += VarInts.read(postings) + 1;
+                    docIds[i] = docId;
+                    counts[i] = VarInts.read(postings) + 1;
+                    if (this.storePositions) {
+                        if (numPositions + counts[i] > positions.length) {
+                            positions = Arrays.copyOf(positions,
+                                    Math.max(numPositions + counts[i], positions.length * 2));
+                        }
+                        int position = -1;
+                        for (int j = 0; j < counts[i]; j++) {
+                            position += VarInts.read(postings) + 1;
+                            positions[numPositions] = position;
+                            numPositions++;
+                        }
+                    }
+                }
+
+                postingOffsets[ordinal] = this.out.size();
+                PostingList.write(this.out, docIds, counts, positions, size);
+                this.checkSize();
+            }
+
+            // Step 3: write the directories
+            int docDirectoryOffset = this.out.size();
+            for (int docId = 0; docId < this.numDocs; docId++) {
+                this.out.writeInt(this.docLengths[docId]);
+                this.out.writeInt(this.docOffsets[docId]);
+            }
+            int uriDirectoryOffset = this.out.size();
+            for (int offset : uriOffsets) {
+                this.out.writeInt(offset);
+            }
+            int termDirectoryOffset = this.out.size();
+            for (int ordinal = 0; ordinal < order.length; ordinal++) {
+                this.out.writeInt(termOffsets[ordinal]);
+                this.out.writeInt(this.postingSizes[order[ordinal]]);
+                this.out.writeInt(postingOffsets[ordinal]);
+            }
+            this.checkSize();
+            this.out.close();
+
+            // Step 4: now that we know where everything is, fill in the header
+            ByteBuffer header = ByteBuffer.allocate(Segment.HEADER_SIZE);
+            header.putInt(Segment.FORMAT_VERSION);
+            header.putInt(this.numDocs);
+            header.putInt(order.length);
+            header.putInt(uriOffsets.length);
+            header.putInt(docDirectoryOffset);
+            header.putInt(uriDirectoryOffset);
+            header.putInt(termDirectoryOffset);
+            header.putInt(this.storePositions ? Segment.FLAG_POSITIONS : 0);
+            header.flip();
+            try (FileChannel channel = FileChannel.open(this.temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+
+            Files.move(this.temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write segment", ex);
+        }
+    }
+
+    /**
+     * Writes out the given document's record and adds it to the postings of every
+     * term it contains.
+     *
+     * @param termIds    the id (in 'terms') of each of the document's first 'numWords'
+     *                   words that the analyzer kept
+     * @param positions  the position of each of those words; overwritten
+     */
+    private void addDocument(int uriId, String title, String blurb, int[] termIds, int[] positions,
+                             int numWords, int[] linkUriIds) {
+        int docId = this.writeDocument(uriId, title, blurb, linkUriIds, numWords);
+
+        // Sorting each word's term id and position packed into a long groups together
+        // repeated words, with their positions in order, so we can count them (and
+        // collect their positions) in one pass.
+        long[] occurrences = new long[numWords];
+        for (int i = 0; i < numWords; i++) {
+            occurrences[i] = ((long) termIds[i] << 32) | positions[i];
+        }
+        Arrays.sort(occurrences);
+        for (int i = 0; i < numWords; i++) {
+            int termId = (int) (occurrences[i] >>> 32);
+            int count = 0;
+            while (i + count < numWords && (int) (occurrences[i + count] >>> 32) == termId) {
+                positions[count] = (int) occurrences[i + count];
+                count++;
+            }
+            this.addPosting(termId, docId, count, positions);
+            i += count - 1;
+        }
+    }
+
+    /**
+     * Writes out the given document's record (but not its postings) and returns its
+     * doc id.
+     */
+    private int writeDocument(int uriId, String title, String blurb, int[] linkUriIds, int length) {
+        if (this.numDocs == this.docOffsets.length) {
+            this.docOffsets = Arrays.copyOf(this.docOffsets, this.numDocs * 2);
+            this.docLengths = Arrays.copyOf(this.docLengths, this.numDocs * 2);
+        }
+        int docId = this.numDocs;
+        this.docOffsets[docId] = this.out.size();
+        this.docLengths[docId] = length;
+
+        try {
+            VarInts.write(this.out, uriId);
+            VarInts.writeString(this.out, title);
+            VarInts.writeString(this.out, blurb);
+            VarInts.write(this.out, linkUriIds.length);
+            for (int link : linkUriIds) {
+                VarInts.write(this.out, link);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException("Could not write segment", ex);
+        }
+        this.checkSize();
+
+        this.numDocs++;
+        return docId;
+    }
+
+    /**
+     * Adds a posting to the given term's postings. If we're storing positions, the
+     * first 'count' entries of the given array are its positions, in increasing order.
+     *
+     * Precondition: the doc id must be larger than that of any of its postings so far.
+     */
+    private void addPosting(int termId, int docId, int count, int[] positions) {
+        if (termId >= this.postingSizes.length) {
+            int capacity = Math.max(termId + 1, this.postingSizes.length * 2);
+            this.postingBytes = Arrays.copyOf(this.postingBytes, capacity);
+            this.postingLengths = Arrays.copyOf(this.postingLengths, capacity);
+            this.postingSizes = Arrays.copyOf(this.postingSizes, capacity);
+            this.lastDocIds = Arrays.copyOf(this.lastDocIds, capacity);
+        }
+        int length = this.postingLengths[termId];
+        if (this.postingSizes[termId] == 0) {
+            this.postingBytes[termId] = new byte[DEFAULT_POSTINGS_CAPACITY];
+            this.lastDocIds[termId] = -1;
+        }
+        int maxBytes = MAX_POSTING_BYTES + (this.storePositions ? MAX_POSITION_BYTES * count : 0);
+        if (length + maxBytes > this.postingBytes[termId].length) {
+            this.postingBytes[termId] = Arrays.copyOf(this.postingBytes[termId],
+                    Math.max(length + maxBytes, this.postingBytes[termId].length * 2));
+        }
+        length = VarInts.write(this.postingBytes[termId], length, docId - this.lastDocIds[termId] - 1);
+        length = VarInts.write(this.postingBytes[termId], length, count - 1);
+        if (this.storePositions) {
+            int previous = -1;
+            for (int i = 0; i < count; i++) {
+                length = VarInts.write(this.postingBytes[termId], length, positions[i] - previous - 1);
+                previous = positions[i];
+            }
+        }
+        this.postingLengths[termId] = length;
+        this.postingSizes[termId]++;
+        this.lastDocIds[termId] = docId;
+    }
+
+    private int mapUri(PageCache pages, int[] uriIds, int cacheUriId) {
+        if (uriIds[cacheUriId] == UNMAPPED) {
+            uriIds[cacheUriId] = this.uris.getOrAdd(pages.getUriString(cacheUriId));
+        }
+        return uriIds[cacheUriId];
+    }
+
+    private int mapUri(Segment segment, int[] uriIds, int segmentUriId) {
+        if (uriIds[segmentUriId] == UNMAPPED) {
+            uriIds[segmentUriId] = this.uris.getOrAdd(segment.getUriString(segmentUriId));
+        }
+        return uriIds[segmentUriId];
+    }
+
+    /**
+     * Returns the ids of every term that occurs in some document, sorted by their
+     * UTF-8 bytes (the order Segment.findTerm expects).
+     */
+    private int[] sortTerms() {
+        byte[][] bytes = new byte[this.terms.size()][];
+        Integer[] order = new Integer[this.terms.size()];
+        for (int termId = 0; termId < order.length; termId++) {
+            bytes[termId] = this.terms.getTerm(termId).getBytes(StandardCharsets.UTF_8);
+            order[termId] = termId;
+        }
+        Arrays.sort(order, (a, b) -> compareBytes(bytes[a], bytes[b]));
+
+        // Terms we only saw in the cache's dictionary but not in any document we
+        // added don't get an ordinal.
+        int[] output = new int[order.length];
+        int size = 0;
+        for (int termId : order) {
+            if (termId < this.postingSizes.length && this.postingSizes[termId] > 0) {
+                output[size] = termId;
+                size++;
+            }
+        }
+        return Arrays.copyOf(output, size);
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int cmp = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    private void checkSize() {
+        // DataOutputStream stops counting once it reaches Integer.MAX_VALUE, and we
+        // store offsets as ints (which is also as much as we can map at once).
+        if (this.out.size() == Integer.MAX_VALUE) {
+            throw new RuntimeException("Segment is too large: must be less than 2 GB");
+        }
+    }
+}
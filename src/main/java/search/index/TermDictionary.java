@@ -0,0 +1,164 @@
+package search.index;
+
+import datastructures.interfaces.IList;
+
+/**
+ * Assigns each unique word in the corpus a dense integer term id (0, 1, 2, ...).
+ *
+ * Once a document or query has been converted to term ids, nothing downstream
+ * needs the words themselves: the index and the analyzers are keyed entirely by
+ * term id. This class is the only place that holds on to each word, and it holds
+ * exactly one copy of it.
+ *
+ * Internally, this is an open-addressing hash table with linear probing. The
+ * table stores term ids, and we cache each term's hash code so that lookups only
+ * call 'equals' on a genuine match and resizing never rehashes a string.
+ */
+public class TermDictionary {
+    /**
+     * The id returned when looking up a word that has no term id.
+     */
+    public static final int NOT_FOUND = -1;
+
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int EMPTY = -1;
+
+    // The hash table: each slot contains either EMPTY or a term id.
+    // The length is always a power of two, and at most half full.
+    private int[] slots;
+
+    // The word and its (cached) hash code for each term id.
+    private String[] terms;
+    private int[] hashes;
+    private int size;
+
+    public TermDictionary() {
+        this.slots = makeEmptySlots(DEFAULT_CAPACITY);
+        this.terms = new String[DEFAULT_CAPACITY / 2];
+        this.hashes = new int[DEFAULT_CAPACITY / 2];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the term id of the given word, assigning it the next available id if
+     * it doesn't have one yet.
+     */
+    public int getOrAdd(String term) {
+        int hash = spread(term.hashCode());
+        int slot = this.findSlot(term, hash);
+        if (this.slots[slot] != EMPTY) {
+            return this.slots[slot];
+        }
+
+        int termId = this.size;
+        if (termId == this.terms.length) {
+            this.grow();
+            slot = this.findSlot(term, hash);
+        }
+        this.slots[slot] = termId;
+        this.terms[termId] = term;
+        this.hashes[termId] = hash;
+        this.size++;
+        return termId;
+    }
+
+    /**
+     * Returns the term id of the given word, or NOT_FOUND if it doesn't have one.
+     */
+    public int getId(String term) {
+        int slot = this.findSlot(term, spread(term.hashCode()));
+        return this.slots[slot] == EMPTY ? NOT_FOUND : this.slots[slot];
+    }
+
+    /**
+     * Converts every word in the given list to its term id. Words that don't have
+     * a term id are converted to NOT_FOUND.
+     */
+    public int[] getIds(IList<String> words) {
+        int[] output = new int[words.size()];
+        int i = 0;
+        for (String word : words) {
+            output[i] = this.getId(word);
+            i++;
+        }
+        return output;
+    }
+
+    /**
+     * Returns the word with the given term id.
+     *
+     * @throws IndexOutOfBoundsException  if the term id was never assigned
+     */
+    public String getTerm(int termId) {
+        if (termId < 0 || termId >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+        return this.terms[termId];
+    }
+
+    /**
+     * Returns the number of words with a term id. Every term id is in the
+     * range [0, size()).
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the slot containing the given word, or the empty slot where it
+     * should be inserted if it isn't in the table.
+     */
+    private int findSlot(String term, int hash) {
+        int mask = this.slots.length - 1;
+        int slot = hash & mask;
+        while (this.slots[slot] != EMPTY) {
+            int termId = this.slots[slot];
+            if (this.hashes[termId] == hash && this.terms[termId].equals(term)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Doubles the capacity of the table, reinserting every term id using its
+     * cached hash code.
+     */
+    private void grow() {
+        int[] newSlots = makeEmptySlots(this.slots.length * 2);
+        int mask = newSlots.length - 1;
+        for (int termId = 0; termId < this.size; termId++) {
+            int slot = this.hashes[termId] & mask;
+            while (newSlots[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            newSlots[slot] = termId;
+        }
+        this.slots = newSlots;
+
+        String[] newTerms = new String[newSlots.length / 2];
+        int[] newHashes = new int[newSlots.length / 2];
+        System.arraycopy(this.terms, 0, newTerms, 0, this.size);
+        System.arraycopy(this.hashes, 0, newHashes, 0, this.size);
+        this.terms = newTerms;
+        this.hashes = newHashes;
+    }
+
+    private static int[] makeEmptySlots(int capacity) {
+        int[] output = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            output[i] = EMPTY;
+        }
+        return output;
+    }
+
+    /**
+     * Mixes the high bits of the hash code into the low bits, since we only use
+     * the low bits to pick a slot.
+     */
+    private static int spread(int hashCode) {
+        int h = hashCode * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,67 @@
+package search.index;
+
+/**
+ * Decides which segments of an index to merge.
+ *
+ * Every time we add pages to the index we add a new segment, and every query has to
+ * look at every segment, so we need to merge segments every now and then. Merging
+ * copies every document it touches though, so we don't want to keep merging large
+ * segments with small ones either.
+ *
+ * We sort segments into tiers by size: segments with fewer than
+ * 'minSegmentDocs * mergeFactor' documents are in tier 0, segments with fewer than
+ * 'minSegmentDocs * mergeFactor^2' in tier 1, and so on. Once there are 'mergeFactor'
+ * adjacent segments in the same tier, we merge them, which usually produces a segment
+ * in the next tier. That way each document is copied about once per tier, there are
+ * only ever a few segments per tier, and small segments (like the ones holding the
+ * latest pages) are merged quickly and cheaply.
+ *
+ * We only merge adjacent segments so the documents keep their order (and so their
+ * global doc ids: see IndexDirectory.merge).
+ */
+public class TieredMergePolicy {
+    private final int mergeFactor;
+    private final int minSegmentDocs;
+
+    /**
+     * @param mergeFactor     how many segments of the same tier to merge at once
+     * @param minSegmentDocs  segments smaller than this are treated as if they had this
+     *                        many documents
+     *
+     * @throws IllegalArgumentException  if mergeFactor < 2 or minSegmentDocs < 1
+     */
+    public TieredMergePolicy(int mergeFactor, int minSegmentDocs) {
+        if (mergeFactor < 2 || minSegmentDocs < 1) {
+            throw new IllegalArgumentException();
+        }
+        this.mergeFactor = mergeFactor;
+        this.minSegmentDocs = minSegmentDocs;
+    }
+
+    /**
+     * Returns the range of segments of the given snapshot to merge next, as
+     * {start, end} (inclusive, exclusive), or null if nothing needs merging.
+     */
+    public int[] findMerge(IndexSnapshot snapshot) {
+        int runStart = 0;
+        for (int i = 1; i <= snapshot.numSegments(); i++) {
+            if (i == snapshot.numSegments()
+                    || this.getTier(snapshot.getSegment(i)) != this.getTier(snapshot.getSegment(runStart))) {
+                runStart = i;
+            } else if (i - runStart + 1 == this.mergeFactor) {
+                return new int[] {runStart, i + 1};
+            }
+        }
+        return null;
+    }
+
+    private int getTier(Segment segment) {
+        long limit = (long) this.minSegmentDocs * this.mergeFactor;
+        int tier = 0;
+        while (segment.numDocs() >= limit) {
+            limit *= this.mergeFactor;
+            tier++;
+        }
+        return tier;
+    }
+}
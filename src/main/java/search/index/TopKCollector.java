@@ -0,0 +1,182 @@
+package search.index;
+
+/**
+ * Keeps the k highest scoring documents seen so far, without allocating anything
+ * per document.
+ *
+ * The documents are kept in a binary min-heap stored in two parallel arrays (doc ids
+ * and scores), so the worst document we're keeping is always at the root: a new
+ * document either loses to it right away, or replaces it and sifts down. Nothing is
+ * boxed and nothing is compared through an interface, and the arrays never grow or
+ * shrink.
+ *
+ * Documents with equal scores are ranked by doc id, lowest first. Since documents
+ * are usually collected in doc id order, that means a document only displaces the
+ * worst one if it scores strictly higher, and the results don't depend on the order
+ * in which we happened to see tied documents.
+ *
+ * Once every document has been collected, call sortDescending() and read the
+ * results back with getDocId(i) and getScore(i).
+ */
+public class TopKCollector {
+    private final int k;
+    private final int[] docIds;
+    private final double[] scores;
+    private int size;
+    private boolean sorted;
+
+    /**
+     * @throws IllegalArgumentException  if k < 0
+     */
+    public TopKCollector(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.k = k;
+        this.docIds = new int[k];
+        this.scores = new double[k];
+        this.size = 0;
+        this.sorted = false;
+    }
+
+    public int getK() {
+        return this.k;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the score a document must beat to be collected: the score of the worst
+     * document we're keeping if we already have k of them, negative infinity if we
+     * have room to spare, and positive infinity if k is zero.
+     */
+    public double threshold() {
+        if (this.k == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return this.size < this.k ? Double.NEGATIVE_INFINITY : this.scores[0];
+    }
+
+    /**
+     * Offers the given document, keeping it if it's among the k best seen so far.
+     */
+    public void collect(int docId, double score) {
+        if (this.sorted) {
+            throw new IllegalStateException("Can't collect documents once they're sorted");
+        }
+        if (this.size < this.k) {
+            this.siftUp(this.size, docId, score);
+            this.size++;
+        } else if (this.k > 0 && isWorse(this.docIds[0], this.scores[0], docId, score)) {
+            this.siftDown(0, docId, score, this.size);
+        }
+    }
+
+    /**
+     * Offers every document kept by the other collector.
+     */
+    public void collectAll(TopKCollector other) {
+        for (int i = 0; i < other.size; i++) {
+            this.collect(other.docIds[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * Sorts the documents from best to worst, after which no more documents can be
+     * collected. This is an in-place heapsort: we repeatedly move the worst document
+     * to the end of the part of the array that's still a heap.
+     */
+    public void sortDescending() {
+        if (this.sorted) {
+            return;
+        }
+        for (int end = this.size - 1; end > 0; end--) {
+            int docId = this.docIds[end];
+            double score = this.scores[end];
+            this.docIds[end] = this.docIds[0];
+            this.scores[end] = this.scores[0];
+            this.siftDown(0, docId, score, end);
+        }
+        this.sorted = true;
+    }
+
+    /**
+     * Returns the doc id of the i-th best document. Must be called after
+     * sortDescending().
+     */
+    public int getDocId(int i) {
+        this.checkSorted(i);
+        return this.docIds[i];
+    }
+
+    /**
+     * Returns the score of the i-th best document. Must be called after
+     * sortDescending().
+     */
+    public double getScore(int i) {
+        this.checkSorted(i);
+        return this.scores[i];
+    }
+
+    private void checkSorted(int i) {
+        if (!this.sorted) {
+            throw new IllegalStateException("Call sortDescending() first");
+        }
+        if (i < 0 || i >= this.size) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    /**
+     * Places the given document at the given (empty) slot or above it, moving
+     * its ancestors down until the heap is in order.
+     */
+    private void siftUp(int slot, int docId, double score) {
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (!isWorse(docId, score, this.docIds[parent], this.scores[parent])) {
+                break;
+            }
+            this.docIds[slot] = this.docIds[parent];
+            this.scores[slot] = this.scores[parent];
+            slot = parent;
+        }
+        this.docIds[slot] = docId;
+        this.scores[slot] = score;
+    }
+
+    /**
+     * Places the given document at the given slot or below it (among the first 'end'
+     * slots), moving its descendants up until the heap is in order.
+     */
+    private void siftDown(int slot, int docId, double score, int end) {
+        while (true) {
+            int child = 2 * slot + 1;
+            if (child >= end) {
+                break;
+            }
+            if (child + 1 < end && isWorse(this.docIds[child + 1], this.scores[child + 1],
+                    this.docIds[child], this.scores[child])) {
+                child++;
+            }
+            if (!isWorse(this.docIds[child], this.scores[child], docId, score)) {
+                break;
+            }
+            this.docIds[slot] = this.docIds[child];
+            this.scores[slot] = this.scores[child];
+            slot = child;
+        }
+        this.docIds[slot] = docId;
+        this.scores[slot] = score;
+    }
+
+    /**
+     * Returns true if document a ranks below document b: it has a lower score, or
+     * the same score and a higher doc id.
+     */
+    private static boolean isWorse(int docIdA, double scoreA, int docIdB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && docIdA > docIdB);
+    }
+}
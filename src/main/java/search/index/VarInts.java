@@ -0,0 +1,91 @@
+package search.index;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes non-negative ints using a variable number of bytes: 7 bits per
+ * byte, lowest bits first, with the high bit set on every byte but the last.
+ *
+ * Small numbers (which is most of what we store) take a single byte.
+ *
+ * Also reads and writes strings, stored as a varint byte count followed by that
+ * many bytes of UTF-8.
+ */
+final class VarInts {
+    private VarInts() {}
+
+    public static void write(DataOutputStream out, int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Can't encode a negative number: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    /**
+     * Writes the given int into the array starting at the given offset, and returns
+     * the offset just past it. The array must have room for 5 bytes.
+     */
+    public static int write(byte[] bytes, int offset, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Can't encode a negative number: " + value);
+        }
+        while ((value & ~0x7F) != 0) {
+            bytes[offset] = (byte) ((value & 0x7F) | 0x80);
+            offset++;
+            value >>>= 7;
+        }
+        bytes[offset] = (byte) value;
+        return offset + 1;
+    }
+
+    /**
+     * Reads a single int starting at the buffer's position, and moves the position
+     * past it.
+     */
+    public static int read(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Moves the buffer's position past the given number of ints.
+     */
+    public static void skip(ByteBuffer buffer, int count) {
+        for (int i = 0; i < count; i++) {
+            while (buffer.get() < 0) {
+                // keep going until the last byte of this int
+            }
+        }
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        write(out, bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[read(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void skipString(ByteBuffer buffer) {
+        int length = read(buffer);
+        buffer.position(buffer.position() + length);
+    }
+}
@@ -0,0 +1,307 @@
+package search.index;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Finds the k highest scoring documents for a query using the WAND ("weak AND")
+ * algorithm.
+ *
+ * Scoring every document that contains a query term and then keeping the best k
+ * wastes most of its time on documents that never had a chance of making it into
+ * the results. WAND instead keeps the cursors sorted by their current doc id and
+ * adds up the cursors' upper bounds until they exceed the score of the worst
+ * document we're currently keeping. The document the last of those cursors is on
+ * (the "pivot") is the first one that could possibly enter the top k, so every
+ * cursor behind it can jump straight to it.
+ *
+ * This finds exactly the same documents as scoring every candidate in doc id
+ * order and running them through Searcher.topKSort: the documents we skip are
+ * precisely the ones that would have been rejected by the heap.
+ *
+ * Phrases and proximity are handled during the same traversal, rather then by
+ * filtering the results afterwards (which could leave us with fewer then k):
+ *
+ * - The terms of a phrase are required, so no document before the furthest of
+ *   their cursors can match, and every cursor can jump straight to it. Only once
+ *   a document has all of them do we look at their positions (see PhraseMatcher).
+ * - Documents where the query terms occur close together get their score boosted
+ *   by up to a factor of (1 + proximityWeight), see computeBoost. To keep the
+ *   pivot correct, we multiply the upper bounds by that same factor.
+ *
+ * Both need the positions of the terms, which are by far the most expensive part
+ * of a posting to decode, so we only look at them for documents whose score (with
+ * the largest possible boost) would get them into the top k.
+ *
+ * Each evaluator covers a single segment, or a range of doc ids within one. To
+ * search several, run an evaluator over each of them, sharing the same collector
+ * (or merging their collectors afterwards, see QueryPlan).
+ */
+public class WandEvaluator {
+    // Guards against upper bounds that are a hair too small due to the
+    // rounding error of adding up the bounds in a different order than
+    // the actual scores.
+    private static final double BOUND_SLACK = 1e-9;
+
+    private final int docBase;
+    private final IntToDoubleFunction documentScale;
+    private final double proximityWeight;
+
+    // The most computeBoost can return.
+    private final double maxBoost;
+
+    // The cursors in the order the query terms were given to us: we always
+    // add up scores in this order so ties are broken consistently.
+    private final PostingCursor[] cursors;
+
+    // The same cursors, sorted by their current doc id.
+    private final PostingCursor[] sorted;
+
+    // The phrases a document must contain, and every cursor they use (once each).
+    private final PhraseMatcher[] phrases;
+    private final PostingCursor[] required;
+
+    // Scratch space for evaluateDocument and computeBoost: the cursors on the
+    // current document and how far along their positions we are.
+    private final PostingCursor[] matched;
+    private final int[] positionIndexes;
+
+    /**
+     * @param cursors        a cursor over the segment's postings for each query term
+     * @param docBase        the amount to add to the segment's doc ids to get global ones
+     * @param documentScale  returns the amount a document's score is scaled by, given
+     *                       its global doc id
+     */
+    public WandEvaluator(IList<PostingCursor> cursors, int docBase, IntToDoubleFunction documentScale) {
+        this(cursors, new ArrayList<>(), 0.0, docBase, documentScale);
+    }
+
+    /**
+     * @param cursors          a cursor over the segment's postings for each query term
+     * @param phrases          the phrases every matching document must contain, using
+     *                         (some of) the same cursors
+     * @param proximityWeight  the most a document's score can be boosted by for having
+     *                         the query terms close together (see computeBoost); the
+     *                         boost is only applied if the postings have positions
+     * @param docBase          the amount to add to the segment's doc ids to get global ones
+     * @param documentScale    returns the amount a document's score is scaled by, given
+     *                         its global doc id
+     * @throws IllegalArgumentException  if the proximity weight is negative
+     */
+    public WandEvaluator(IList<PostingCursor> cursors, IList<PhraseMatcher> phrases, double proximityWeight,
+                         int docBase, IntToDoubleFunction documentScale) {
+        if (proximityWeight < 0.0) {
+            throw new IllegalArgumentException("The proximity weight can't be negative");
+        }
+        this.docBase = docBase;
+        this.documentScale = documentScale;
+        this.proximityWeight = proximityWeight;
+        this.cursors = new PostingCursor[cursors.size()];
+        this.sorted = new PostingCursor[cursors.size()];
+        this.matched = new PostingCursor[cursors.size()];
+        this.positionIndexes = new int[cursors.size()];
+
+        int i = 0;
+        boolean hasPositions = true;
+        for (PostingCursor cursor : cursors) {
+            this.cursors[i] = cursor;
+            this.sorted[i] = cursor;
+            hasPositions = hasPositions && cursor.hasPositions();
+            i++;
+        }
+        this.maxBoost = proximityWeight > 0.0 && hasPositions && this.cursors.length > 1 ? 1.0 + proximityWeight : 1.0;
+
+        this.phrases = new PhraseMatcher[phrases.size()];
+        IList<PostingCursor> required = new ArrayList<>();
+        i = 0;
+        for (PhraseMatcher phrase : phrases) {
+            this.phrases[i] = phrase;
+            i++;
+            for (PostingCursor cursor : phrase.getCursors()) {
+                // Cursors don't override equals, so this compares them by identity.
+                if (!required.contains(cursor)) {
+                    required.add(cursor);
+                }
+            }
+        }
+        this.required = new PostingCursor[required.size()];
+        i = 0;
+        for (PostingCursor cursor : required) {
+            this.required[i] = cursor;
+            i++;
+        }
+    }
+
+    /**
+     * Adds this segment's documents to the given collector, which holds the k highest
+     * scoring documents found so far (by global doc id).
+     */
+    public void collectTopK(TopKCollector collector) {
+        this.collectTopK(collector, 0, PostingCursor.NO_MORE_DOCS);
+    }
+
+    /**
+     * Adds this segment's documents with (segment) doc ids in [from, to) to the given
+     * collector. The cursors must not have moved past 'from' yet.
+     */
+    public void collectTopK(TopKCollector collector, int from, int to) {
+        for (PostingCursor cursor : this.cursors) {
+            cursor.advance(from);
+        }
+
+        while (true) {
+            this.sortCursors();
+
+            int pivot = this.findPivot(collector.threshold());
+            if (pivot == -1) {
+                break;
+            }
+
+            // No document before the one every required cursor has reached can match
+            // either, so if one of them is past the pivot, everyone can jump there.
+            int pivotDoc = this.sorted[pivot].docId();
+            int target = pivotDoc;
+            for (PostingCursor cursor : this.required) {
+                target = Math.max(target, cursor.docId());
+            }
+            if (target >= to) {
+                break;
+            }
+            if (target > pivotDoc) {
+                for (PostingCursor cursor : this.cursors) {
+                    if (cursor.docId() < target) {
+                        cursor.advance(target);
+                    }
+                }
+            } else if (this.sorted[0].docId() == pivotDoc) {
+                this.evaluateDocument(collector, pivotDoc);
+            } else {
+                for (int i = 0; i < pivot; i++) {
+                    this.sorted[i].advance(pivotDoc);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the index (into 'sorted') of the first cursor at which the sum of the
+     * upper bounds exceeds the threshold, or -1 if there is no such cursor or if
+     * that cursor is exhausted.
+     */
+    private int findPivot(double threshold) {
+        double bound = 0.0;
+        for (int i = 0; i < this.sorted.length; i++) {
+            if (this.sorted[i].docId() == PostingCursor.NO_MORE_DOCS) {
+                return -1;
+            }
+            bound += this.sorted[i].upperBound();
+            if (bound * this.maxBoost * (1 + BOUND_SLACK) > threshold) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Computes the final score of the given document and adds it to the collector if
+     * it contains every phrase, then moves every cursor positioned on it to its next
+     * posting.
+     *
+     * Precondition: every required cursor must be positioned on the document.
+     */
+    private void evaluateDocument(TopKCollector collector, int docId) {
+        double score = 0.0;
+        int numMatched = 0;
+        for (PostingCursor cursor : this.cursors) {
+            if (cursor.docId() == docId) {
+                score += cursor.score();
+                this.matched[numMatched] = cursor;
+                numMatched++;
+            }
+        }
+        score *= this.documentScale.applyAsDouble(this.docBase + docId);
+
+        // The collector would reject a document that can't beat the threshold even
+        // with the largest boost anyway, so we don't bother decoding any positions.
+        if (score * this.maxBoost * (1 + BOUND_SLACK) > collector.threshold() && this.matchesPhrases()) {
+            collector.collect(this.docBase + docId, score * this.computeBoost(numMatched));
+        }
+
+        for (int i = 0; i < numMatched; i++) {
+            this.matched[i].next();
+        }
+    }
+
+    private boolean matchesPhrases() {
+        for (PhraseMatcher phrase : this.phrases) {
+            if (!phrase.matches()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the factor the score of the current document is boosted by, given that
+     * the first 'numMatched' entries of 'matched' are the cursors positioned on it.
+     *
+     * We find the smallest window of the document containing an occurrence of every
+     * query term it contains: if m terms occur in a window spanning s words, the
+     * boost is 1 + proximityWeight * (m - 1) / s. That's the full weight when the
+     * terms are right next to each other, and fades as they drift apart. Documents
+     * containing only one of the terms get no boost.
+     *
+     * To find the window, we keep a pointer into each term's positions: the window
+     * they point at spans from the smallest to the largest of them, and the only way
+     * to find a smaller one is to move the smallest pointer forward.
+     */
+    private double computeBoost(int numMatched) {
+        if (this.maxBoost == 1.0 || numMatched < 2) {
+            return 1.0;
+        }
+        for (int i = 0; i < numMatched; i++) {
+            this.positionIndexes[i] = 0;
+        }
+        int span = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int minIndex = 0;
+            for (int i = 0; i < numMatched; i++) {
+                int position = this.matched[i].getPosition(this.positionIndexes[i]);
+                if (position < min) {
+                    min = position;
+                    minIndex = i;
+                }
+                max = Math.max(max, position);
+            }
+            span = Math.min(span, max - min);
+
+            this.positionIndexes[minIndex]++;
+            if (this.positionIndexes[minIndex] == this.matched[minIndex].getCount()) {
+                break;
+            }
+        }
+        // Different terms never share a position, so the span is at least m - 1, but
+        // we make sure the boost can never exceed the bound we promised.
+        return 1.0 + this.proximityWeight * Math.min(1.0, (double) (numMatched - 1) / span);
+    }
+
+    /**
+     * Insertion sorts the cursors by their current doc id. Queries rarely have more
+     * then a handful of terms and the cursors are usually almost sorted already.
+     */
+    private void sortCursors() {
+        for (int i = 1; i < this.sorted.length; i++) {
+            PostingCursor cursor = this.sorted[i];
+            int j = i - 1;
+            while (j >= 0 && this.sorted[j].docId() > cursor.docId()) {
+                this.sorted[j + 1] = this.sorted[j];
+                j--;
+            }
+            this.sorted[j + 1] = cursor;
+        }
+    }
+}
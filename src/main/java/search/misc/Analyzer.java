@@ -0,0 +1,97 @@
+package search.misc;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+/**
+ * Turns text into the terms we index (or search for): splits it into words using
+ * the WordTokenizer, then passes each word through a chain of WordFilters, in order.
+ *
+ * Pages and queries must be analyzed the exact same way, or a query would never
+ * match the terms it was meant to: the SearchEngine owns the analyzer it indexes
+ * with, and the webapp analyzes queries using that same analyzer.
+ *
+ * Analyzers don't have any state, so one analyzer can be used by any number of
+ * threads at once.
+ */
+public class Analyzer {
+    private final WordFilter[] filters;
+
+    /**
+     * Creates an analyzer that applies the given filters, in order. With no filters,
+     * the terms are exactly the words produced by the WordTokenizer.
+     */
+    public Analyzer(WordFilter... filters) {
+        this.filters = filters.clone();
+    }
+
+    /**
+     * Creates an analyzer for English text: it folds Unicode, removes the English stop
+     * words and stems what's left.
+     */
+    public static Analyzer english() {
+        return new Analyzer(new UnicodeFolder(), StopWordFilter.english(), new PorterStemmer());
+    }
+
+    /**
+     * Returns the terms in the given text, in order.
+     */
+    public IList<String> analyze(String text) {
+        IList<String> output = new ArrayList<>();
+        new WordTokenizer().tokenize(text, (word, length) -> {
+            String term = this.analyzeWord(new String(word, 0, length));
+            if (term != null) {
+                output.add(term);
+            }
+        });
+        return output;
+    }
+
+    /**
+     * Returns the terms of the given words, which must come straight from the
+     * WordTokenizer, in order.
+     */
+    public IList<String> analyzeWords(IList<String> words) {
+        IList<String> output = new ArrayList<>();
+        for (String word : words) {
+            String term = this.analyzeWord(word);
+            if (term != null) {
+                output.add(term);
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns the term for the given word, which must come straight from the
+     * WordTokenizer, or null if the word was filtered out.
+     */
+    public String analyzeWord(String word) {
+        String output = word;
+        for (WordFilter filter : this.filters) {
+            output = filter.apply(output);
+            if (output == null) {
+                return null;
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns a name identifying the filters of this analyzer, such as
+     * "nfkc-stop-porter", or "plain" if there are none.
+     */
+    public String getName() {
+        if (this.filters.length == 0) {
+            return "plain";
+        }
+        StringBuilder output = new StringBuilder();
+        for (WordFilter filter : this.filters) {
+            if (output.length() > 0) {
+                output.append('-');
+            }
+            output.append(filter.getName());
+        }
+        return output.toString();
+    }
+}
@@ -1,14 +1,20 @@
 package search.misc;
 
 import datastructures.concrete.ChainedHashSet;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 import datastructures.interfaces.ISet;
 
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiConsumer;
 import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collector;
@@ -32,6 +38,62 @@ public class Bridge {
         };
     }
 
+    /**
+     * Applies the given function to every item on a pool of the given number of threads,
+     * and hands the results to the consumer (on the calling thread) in the same order as
+     * the items, no matter which thread finished first.
+     *
+     * At most 'window' items are in flight at any time, so a slow item holds up the
+     * consumer without letting finished results pile up in memory behind it.
+     *
+     * If the function throws, no further items are started and the exception is
+     * rethrown from this method.
+     */
+    public static <A, B> void mapInOrder(IList<A> items, Function<A, B> func, int numThreads,
+                                         int window, Consumer<B> consumer) {
+        if (numThreads < 1 || window < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // The results of items [next - window, next) live in this ring buffer.
+            IList<Future<B>> pending = new ArrayList<>(window);
+            Iterator<A> iter = items.iterator();
+            int submitted = 0;
+            while (submitted < window && iter.hasNext()) {
+                A item = iter.next();
+                pending.add(pool.submit(() -> func.apply(item)));
+                submitted++;
+            }
+
+            for (int i = 0; i < submitted; i++) {
+                int slot = i % window;
+                B result = pending.get(slot).get();
+                if (iter.hasNext()) {
+                    A item = iter.next();
+                    pending.set(slot, pool.submit(() -> func.apply(item)));
+                    submitted++;
+                }
+                consumer.accept(result);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
     @FunctionalInterface
     public interface FunctionThrowsException<A, B> {
         B apply(A item) throws Exception;
@@ -40,7 +102,7 @@ public class Bridge {
     public static class IListCollector<T> implements Collector<T, IList<T>, IList<T>> {
         @Override
         public Supplier<IList<T>> supplier() {
-            return DoubleLinkedList::new;
+            return ArrayList::new;
         }
 
         @Override
@@ -51,7 +113,7 @@ public class Bridge {
         @Override
         public BinaryOperator<IList<T>> combiner() {
             return (a, b) -> {
-                IList<T> out = new DoubleLinkedList<>();
+                IList<T> out = new ArrayList<>();
                 for (T i : a) {
                     out.add(i);
                 }
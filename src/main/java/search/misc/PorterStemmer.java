@@ -0,0 +1,434 @@
+package search.misc;
+
+/**
+ * Reduces English words to their stems using Martin Porter's algorithm, so that
+ * "connect", "connected", "connecting" and "connections" are all indexed (and
+ * searched for) as "connect".
+ *
+ * The stems aren't always words ("happy" becomes "happi"), but that doesn't
+ * matter: all we need is for related words to end up with the same stem, and
+ * since queries are stemmed too, nobody ever sees them.
+ *
+ * This follows the original definition of the algorithm ("An algorithm for suffix
+ * stripping", 1980) and the reference implementation, step for step. Words with
+ * anything besides the letters a-z in them are left alone, since the rules only
+ * make sense for English.
+ */
+public class PorterStemmer implements WordFilter {
+    @Override
+    public String apply(String word) {
+        if (word.length() <= 2) {
+            return word;
+        }
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c < 'a' || c > 'z') {
+                return word;
+            }
+        }
+        return new Stem(word).compute();
+    }
+
+    @Override
+    public String getName() {
+        return "porter";
+    }
+
+    /**
+     * The state of the algorithm while stemming a single word: the word is
+     * 'buffer[0..end]', and 'stem' marks the end of the stem once we've found a
+     * suffix (so the suffix is 'buffer[stem + 1..end]').
+     */
+    private static class Stem {
+        private final char[] buffer;
+        private int end;
+        private int stem;
+
+        public Stem(String word) {
+            // No rule ever makes a word more than one char longer.
+            this.buffer = new char[word.length() + 1];
+            word.getChars(0, word.length(), this.buffer, 0);
+            this.end = word.length() - 1;
+            this.stem = 0;
+        }
+
+        public String compute() {
+            this.step1ab();
+            this.step1c();
+            this.step2();
+            this.step3();
+            this.step4();
+            this.step5();
+            return new String(this.buffer, 0, this.end + 1);
+        }
+
+        /**
+         * Returns true if buffer[i] is a consonant. A 'y' is a consonant unless it
+         * follows a consonant.
+         */
+        private boolean isConsonant(int i) {
+            switch (this.buffer[i]) {
+                case 'a':
+                case 'e':
+                case 'i':
+                case 'o':
+                case 'u':
+                    return false;
+                case 'y':
+                    return i == 0 || !this.isConsonant(i - 1);
+                default:
+                    return true;
+            }
+        }
+
+        /**
+         * Returns the "measure" of the stem: writing it as [C](VC)^m[V], where C is
+         * a run of consonants and V a run of vowels, this is m.
+         */
+        private int measure() {
+            int count = 0;
+            int i = 0;
+            while (true) {
+                if (i > this.stem) {
+                    return count;
+                }
+                if (!this.isConsonant(i)) {
+                    break;
+                }
+                i++;
+            }
+            i++;
+            while (true) {
+                while (true) {
+                    if (i > this.stem) {
+                        return count;
+                    }
+                    if (this.isConsonant(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+                count++;
+                while (true) {
+                    if (i > this.stem) {
+                        return count;
+                    }
+                    if (!this.isConsonant(i)) {
+                        break;
+                    }
+                    i++;
+                }
+                i++;
+            }
+        }
+
+        /**
+         * Returns true if the stem contains a vowel.
+         */
+        private boolean stemHasVowel() {
+            for (int i = 0; i <= this.stem; i++) {
+                if (!this.isConsonant(i)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Returns true if buffer[i - 1..i] is a double consonant.
+         */
+        private boolean isDoubleConsonant(int i) {
+            return i >= 1 && this.buffer[i] == this.buffer[i - 1] && this.isConsonant(i);
+        }
+
+        /**
+         * Returns true if buffer[i - 2..i] is consonant-vowel-consonant, and the
+         * last consonant isn't 'w', 'x' or 'y'. This is how we recognize short
+         * words like "hop", whose 'e' we restore in "hoping" -> "hope".
+         */
+        private boolean isConsonantVowelConsonant(int i) {
+            if (i < 2 || !this.isConsonant(i) || this.isConsonant(i - 1) || !this.isConsonant(i - 2)) {
+                return false;
+            }
+            char c = this.buffer[i];
+            return c != 'w' && c != 'x' && c != 'y';
+        }
+
+        /**
+         * Returns true if the word ends with the given suffix, and if so, marks
+         * everything before it as the stem.
+         */
+        private boolean endsWith(String suffix) {
+            int length = suffix.length();
+            int start = this.end - length + 1;
+            if (start < 0) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (this.buffer[start + i] != suffix.charAt(i)) {
+                    return false;
+                }
+            }
+            this.stem = start - 1;
+            return true;
+        }
+
+        /**
+         * Replaces the suffix found by 'endsWith' with the given one.
+         */
+        private void replaceSuffix(String suffix) {
+            suffix.getChars(0, suffix.length(), this.buffer, this.stem + 1);
+            this.end = this.stem + suffix.length();
+        }
+
+        /**
+         * Replaces the suffix found by 'endsWith' with the given one, but only if
+         * the stem has a positive measure.
+         */
+        private void replaceSuffixIfMeasured(String suffix) {
+            if (this.measure() > 0) {
+                this.replaceSuffix(suffix);
+            }
+        }
+
+        /**
+         * Removes plurals and -ed or -ing. For example:
+         *
+         *   caresses -> caress    ponies -> poni      cats -> cat
+         *   agreed -> agree       plastered -> plaster
+         *   motoring -> motor     sing -> sing
+         *   hopping -> hop        filing -> file      conflated -> conflate
+         */
+        private void step1ab() {
+            if (this.buffer[this.end] == 's') {
+                if (this.endsWith("sses")) {
+                    this.end -= 2;
+                } else if (this.endsWith("ies")) {
+                    this.replaceSuffix("i");
+                } else if (this.buffer[this.end - 1] != 's') {
+                    this.end--;
+                }
+            }
+            if (this.endsWith("eed")) {
+                if (this.measure() > 0) {
+                    this.end--;
+                }
+            } else if ((this.endsWith("ed") || this.endsWith("ing")) && this.stemHasVowel()) {
+                this.end = this.stem;
+                if (this.endsWith("at")) {
+                    this.replaceSuffix("ate");
+                } else if (this.endsWith("bl")) {
+                    this.replaceSuffix("ble");
+                } else if (this.endsWith("iz")) {
+                    this.replaceSuffix("ize");
+                } else if (this.isDoubleConsonant(this.end)) {
+                    char c = this.buffer[this.end];
+                    if (c != 'l' && c != 's' && c != 'z') {
+                        this.end--;
+                    }
+                } else if (this.measure() == 1 && this.isConsonantVowelConsonant(this.end)) {
+                    this.replaceSuffix("e");
+                }
+            }
+        }
+
+        /**
+         * Turns a final 'y' into an 'i' when there's another vowel in the stem.
+         */
+        private void step1c() {
+            if (this.endsWith("y") && this.stemHasVowel()) {
+                this.buffer[this.end] = 'i';
+            }
+        }
+
+        /**
+         * Maps double suffixes to single ones: -ization (-ize plus -ation) becomes
+         * -ize, and so on.
+         */
+        private void step2() {
+            if (this.end == 0) {
+                return;
+            }
+            switch (this.buffer[this.end - 1]) {
+                case 'a':
+                    if (this.endsWith("ational")) {
+                        this.replaceSuffixIfMeasured("ate");
+                    } else if (this.endsWith("tional")) {
+                        this.replaceSuffixIfMeasured("tion");
+                    }
+                    break;
+                case 'c':
+                    if (this.endsWith("enci")) {
+                        this.replaceSuffixIfMeasured("ence");
+                    } else if (this.endsWith("anci")) {
+                        this.replaceSuffixIfMeasured("ance");
+                    }
+                    break;
+                case 'e':
+                    if (this.endsWith("izer")) {
+                        this.replaceSuffixIfMeasured("ize");
+                    }
+                    break;
+                case 'l':
+                    if (this.endsWith("bli")) {
+                        this.replaceSuffixIfMeasured("ble");
+                    } else if (this.endsWith("alli")) {
+                        this.replaceSuffixIfMeasured("al");
+                    } else if (this.endsWith("entli")) {
+                        this.replaceSuffixIfMeasured("ent");
+                    } else if (this.endsWith("eli")) {
+                        this.replaceSuffixIfMeasured("e");
+                    } else if (this.endsWith("ousli")) {
+                        this.replaceSuffixIfMeasured("ous");
+                    }
+                    break;
+                case 'o':
+                    if (this.endsWith("ization")) {
+                        this.replaceSuffixIfMeasured("ize");
+                    } else if (this.endsWith("ation")) {
+                        this.replaceSuffixIfMeasured("ate");
+                    } else if (this.endsWith("ator")) {
+                        this.replaceSuffixIfMeasured("ate");
+                    }
+                    break;
+                case 's':
+                    if (this.endsWith("alism")) {
+                        this.replaceSuffixIfMeasured("al");
+                    } else if (this.endsWith("iveness")) {
+                        this.replaceSuffixIfMeasured("ive");
+                    } else if (this.endsWith("fulness")) {
+                        this.replaceSuffixIfMeasured("ful");
+                    } else if (this.endsWith("ousness")) {
+                        this.replaceSuffixIfMeasured("ous");
+                    }
+                    break;
+                case 't':
+                    if (this.endsWith("aliti")) {
+                        this.replaceSuffixIfMeasured("al");
+                    } else if (this.endsWith("iviti")) {
+                        this.replaceSuffixIfMeasured("ive");
+                    } else if (this.endsWith("biliti")) {
+                        this.replaceSuffixIfMeasured("ble");
+                    }
+                    break;
+                case 'g':
+                    if (this.endsWith("logi")) {
+                        this.replaceSuffixIfMeasured("log");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Handles -ic-, -full, -ness and so on.
+         */
+        private void step3() {
+            switch (this.buffer[this.end]) {
+                case 'e':
+                    if (this.endsWith("icate")) {
+                        this.replaceSuffixIfMeasured("ic");
+                    } else if (this.endsWith("ative")) {
+                        this.replaceSuffixIfMeasured("");
+                    } else if (this.endsWith("alize")) {
+                        this.replaceSuffixIfMeasured("al");
+                    }
+                    break;
+                case 'i':
+                    if (this.endsWith("iciti")) {
+                        this.replaceSuffixIfMeasured("ic");
+                    }
+                    break;
+                case 'l':
+                    if (this.endsWith("ical")) {
+                        this.replaceSuffixIfMeasured("ic");
+                    } else if (this.endsWith("ful")) {
+                        this.replaceSuffixIfMeasured("");
+                    }
+                    break;
+                case 's':
+                    if (this.endsWith("ness")) {
+                        this.replaceSuffixIfMeasured("");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /**
+         * Removes -ant, -ence and so on, from stems with a measure of at least two.
+         */
+        private void step4() {
+            if (this.end == 0) {
+                return;
+            }
+            boolean found;
+            switch (this.buffer[this.end - 1]) {
+                case 'a':
+                    found = this.endsWith("al");
+                    break;
+                case 'c':
+                    found = this.endsWith("ance") || this.endsWith("ence");
+                    break;
+                case 'e':
+                    found = this.endsWith("er");
+                    break;
+                case 'i':
+                    found = this.endsWith("ic");
+                    break;
+                case 'l':
+                    found = this.endsWith("able") || this.endsWith("ible");
+                    break;
+                case 'n':
+                    found = this.endsWith("ant") || this.endsWith("ement")
+                            || this.endsWith("ment") || this.endsWith("ent");
+                    break;
+                case 'o':
+                    found = (this.endsWith("ion") && this.stem >= 0
+                            && (this.buffer[this.stem] == 's' || this.buffer[this.stem] == 't'))
+                            || this.endsWith("ou");
+                    break;
+                case 's':
+                    found = this.endsWith("ism");
+                    break;
+                case 't':
+                    found = this.endsWith("ate") || this.endsWith("iti");
+                    break;
+                case 'u':
+                    found = this.endsWith("ous");
+                    break;
+                case 'v':
+                    found = this.endsWith("ive");
+                    break;
+                case 'z':
+                    found = this.endsWith("ize");
+                    break;
+                default:
+                    found = false;
+                    break;
+            }
+            if (found && this.measure() > 1) {
+                this.end = this.stem;
+            }
+        }
+
+        /**
+         * Removes a final -e, and turns a final -ll into -l, from long enough stems.
+         */
+        private void step5() {
+            this.stem = this.end;
+            if (this.buffer[this.end] == 'e') {
+                int measure = this.measure();
+                if (measure > 1 || (measure == 1 && !this.isConsonantVowelConsonant(this.end - 1))) {
+                    this.end--;
+                }
+            }
+            if (this.buffer[this.end] == 'l' && this.isDoubleConsonant(this.end) && this.measure() > 1) {
+                this.end--;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package search.misc;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import search.models.Phrase;
+import search.models.Query;
+
+import java.util.Arrays;
+
+/**
+ * Turns what the user typed into a Query.
+ *
+ * Words inside double quotes form a phrase, which matching documents must contain
+ * exactly as written; every other word is an ordinary term. A quote without a
+ * partner runs until the end of the query. So
+ *
+ *   "seattle times" weather
+ *
+ * finds pages containing "seattle" immediately followed by "times", and ranks them
+ * by how well they match "seattle times weather" as a whole.
+ *
+ * Phrases go through the same analyzer as the rest of the query (and the pages), so
+ * a phrase of nothing but stop words is simply dropped.
+ */
+public class QueryParser {
+    private static final char QUOTE = '"';
+
+    private final Analyzer analyzer;
+
+    /**
+     * @param analyzer  the analyzer the index was built with
+     */
+    public QueryParser(Analyzer analyzer) {
+        this.analyzer = analyzer;
+    }
+
+    public Query parse(String text) {
+        IList<String> terms = new ArrayList<>();
+        IList<Phrase> phrases = new ArrayList<>();
+
+        // Splitting on the quotes alternates between text outside of any phrase and
+        // the text of a phrase.
+        boolean inPhrase = false;
+        int start = 0;
+        while (start <= text.length()) {
+            int end = text.indexOf(QUOTE, start);
+            if (end == -1) {
+                end = text.length();
+            }
+            String part = text.substring(start, end);
+            if (inPhrase) {
+                Phrase phrase = this.parsePhrase(part, terms);
+                if (phrase != null) {
+                    phrases.add(phrase);
+                }
+            } else {
+                for (String term : this.analyzer.analyze(part)) {
+                    terms.add(term);
+                }
+            }
+            inPhrase = !inPhrase;
+            start = end + 1;
+        }
+        return new Query(terms, phrases);
+    }
+
+    /**
+     * Returns the phrase made of the words of the given text (and adds its terms to
+     * the given list), or null if the analyzer drops all of them.
+     */
+    private Phrase parsePhrase(String text, IList<String> terms) {
+        IList<String> words = WordTokenizer.extract(text);
+        String[] phraseTerms = new String[words.size()];
+        int[] positions = new int[words.size()];
+        int size = 0;
+        int position = 0;
+        int first = -1;
+        for (String word : words) {
+            String term = this.analyzer.analyzeWord(word);
+            if (term != null) {
+                if (first == -1) {
+                    first = position;
+                }
+                phraseTerms[size] = term;
+                positions[size] = position - first;
+                size++;
+                terms.add(term);
+            }
+            position++;
+        }
+        if (size == 0) {
+            return null;
+        }
+        return new Phrase(Arrays.copyOf(phraseTerms, size), Arrays.copyOf(positions, size));
+    }
+}
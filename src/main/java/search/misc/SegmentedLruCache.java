@@ -0,0 +1,195 @@
+package search.misc;
+
+import datastructures.concrete.dictionaries.OpenAddressingDictionary;
+import datastructures.interfaces.IDictionary;
+
+/**
+ * A bounded cache that evicts entries using the "segmented LRU" policy.
+ *
+ * A plain LRU cache is easily flushed out by a burst of entries that are only ever
+ * used once (a crawler walking through unusual queries, say), which then push out
+ * the popular entries we actually wanted to keep. So we split the entries in two:
+ *
+ * - New entries start out in the "probation" segment.
+ * - An entry that's used again while on probation is promoted to the "protected"
+ *   segment, which holds at most a fixed share of the entries. If it's full, its
+ *   least recently used entry is demoted back to probation.
+ * - When the cache is full, we evict the least recently used entry on probation.
+ *
+ * So an entry that's used only once can only ever push out other entries on
+ * probation, never the protected ones.
+ *
+ * Every segment is a circular, doubly linked list (most recently used first) with
+ * a sentinel node, so every operation takes constant time. All methods are
+ * synchronized: they're so short that finer-grained locking wouldn't buy us much.
+ */
+public class SegmentedLruCache<K, V> {
+    private final int capacity;
+    private final int protectedCapacity;
+    private final IDictionary<K, Node<K, V>> nodes;
+    private final Node<K, V> probation;
+    private final Node<K, V> protectedEntries;
+    private int protectedSize;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param capacity           the most entries the cache holds
+     * @param protectedFraction  the share of the capacity reserved for entries that
+     *                           were used more than once
+     *
+     * @throws IllegalArgumentException  if the capacity isn't positive or the fraction
+     *                                   isn't at least 0 and less than 1
+     */
+    public SegmentedLruCache(int capacity, double protectedFraction) {
+        if (capacity <= 0 || protectedFraction < 0.0 || protectedFraction >= 1.0) {
+            throw new IllegalArgumentException();
+        }
+        this.capacity = capacity;
+        this.protectedCapacity = (int) (capacity * protectedFraction);
+        this.nodes = new OpenAddressingDictionary<>();
+        this.probation = new Node<>(null, null);
+        this.protectedEntries = new Node<>(null, null);
+        this.protectedSize = 0;
+    }
+
+    /**
+     * Returns the value cached for the given key, or null if there is none.
+     */
+    public synchronized V get(K key) {
+        if (!this.nodes.containsKey(key)) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        Node<K, V> node = this.nodes.get(key);
+        this.touch(node);
+        return node.value;
+    }
+
+    /**
+     * Caches the given value for the given key, evicting the least valuable entry if
+     * the cache is full.
+     */
+    public synchronized void put(K key, V value) {
+        if (this.nodes.containsKey(key)) {
+            Node<K, V> node = this.nodes.get(key);
+            node.value = value;
+            this.touch(node);
+            return;
+        }
+
+        Node<K, V> node = new Node<>(key, value);
+        this.nodes.put(key, node);
+        node.insertAfter(this.probation);
+        if (this.nodes.size() > this.capacity) {
+            // Since the protected segment can't fill the whole cache, there's
+            // always something on probation.
+            Node<K, V> victim = this.probation.previous;
+            victim.unlink();
+            this.nodes.remove(victim.key);
+            this.evictions++;
+        }
+    }
+
+    /**
+     * Removes every entry. Doesn't count as evicting them.
+     */
+    public synchronized void clear() {
+        while (this.probation.next != this.probation) {
+            this.nodes.remove(this.probation.next.key);
+            this.probation.next.unlink();
+        }
+        while (this.protectedEntries.next != this.protectedEntries) {
+            this.nodes.remove(this.protectedEntries.next.key);
+            this.protectedEntries.next.unlink();
+        }
+        this.protectedSize = 0;
+    }
+
+    public synchronized int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Returns the number of calls to 'get' that found a value.
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of calls to 'get' that didn't find a value.
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Returns the number of entries evicted to make room for new ones.
+     */
+    public synchronized long getEvictions() {
+        return this.evictions;
+    }
+
+    /**
+     * Marks the given node as the most recently used: promotes it if it's on
+     * probation, or moves it to the front of the protected segment if it's not.
+     */
+    private void touch(Node<K, V> node) {
+        if (!node.isProtected) {
+            if (this.protectedCapacity == 0) {
+                node.unlink();
+                node.insertAfter(this.probation);
+                return;
+            }
+            node.isProtected = true;
+            this.protectedSize++;
+        }
+        node.unlink();
+        node.insertAfter(this.protectedEntries);
+
+        if (this.protectedSize > this.protectedCapacity) {
+            Node<K, V> demoted = this.protectedEntries.previous;
+            demoted.unlink();
+            demoted.isProtected = false;
+            demoted.insertAfter(this.probation);
+            this.protectedSize--;
+        }
+    }
+
+    private static class Node<K, V> {
+        public final K key;
+        public V value;
+        public boolean isProtected;
+        public Node<K, V> previous;
+        public Node<K, V> next;
+
+        /**
+         * Creates a node that isn't in any list (or a sentinel of an empty list).
+         */
+        public Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+            this.isProtected = false;
+            this.previous = this;
+            this.next = this;
+        }
+
+        public void insertAfter(Node<K, V> other) {
+            this.previous = other;
+            this.next = other.next;
+            other.next.previous = this;
+            other.next = this;
+        }
+
+        public void unlink() {
+            this.previous.next = this.next;
+            this.next.previous = this.previous;
+            this.previous = this;
+            this.next = this;
+        }
+    }
+}
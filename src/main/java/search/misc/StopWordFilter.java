@@ -0,0 +1,55 @@
+package search.misc;
+
+import datastructures.concrete.ChainedHashSet;
+import datastructures.interfaces.ISet;
+
+/**
+ * Removes "stop words": words so common that they say next to nothing about what
+ * a page is about.
+ *
+ * Their IDF scores are close to zero anyway, so they barely change any scores,
+ * but their postings are the longest in the index: dropping them makes the index
+ * smaller and queries containing them much cheaper.
+ */
+public class StopWordFilter implements WordFilter {
+    /**
+     * The most common words in English text, after tokenizing (so "it's" is "its").
+     */
+    public static final String[] ENGLISH = {
+        "a", "an", "and", "are", "as", "at", "be", "but", "by", "for", "if", "in",
+        "into", "is", "it", "its", "no", "not", "of", "on", "or", "such", "that", "the",
+        "their", "then", "there", "these", "they", "this", "to", "was", "will", "with",
+    };
+
+    private final String name;
+    private final ISet<String> stopWords;
+
+    /**
+     * @param name       a short name for this list of words (see WordFilter.getName)
+     * @param stopWords  the words to remove, as produced by the filters before this one
+     */
+    public StopWordFilter(String name, String[] stopWords) {
+        this.name = name;
+        this.stopWords = new ChainedHashSet<>();
+        for (String word : stopWords) {
+            this.stopWords.add(word);
+        }
+    }
+
+    /**
+     * Creates a filter removing the ENGLISH stop words.
+     */
+    public static StopWordFilter english() {
+        return new StopWordFilter("stop", ENGLISH);
+    }
+
+    @Override
+    public String apply(String word) {
+        return this.stopWords.contains(word) ? null : word;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+}
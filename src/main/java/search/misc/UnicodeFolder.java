@@ -0,0 +1,47 @@
+package search.misc;
+
+import java.text.Normalizer;
+
+/**
+ * Folds the different ways of writing the same text in Unicode into one, using
+ * NFKC normalization: the "fi" ligature (U+FB01) becomes "f" and "i", a full-width
+ * letter becomes the plain one, an "e" followed by a combining accent becomes a
+ * single accented "e", and so on.
+ *
+ * Normalizing can produce upper case letters and punctuation again (a full-width
+ * exclamation mark becomes "!"), so we lowercase the result and remove punctuation
+ * and whitespace from it, just like the WordTokenizer does.
+ */
+public class UnicodeFolder implements WordFilter {
+    @Override
+    public String apply(String word) {
+        // ASCII is already in normal form, and that's almost every word.
+        if (isAscii(word)) {
+            return word;
+        }
+
+        String folded = Normalizer.normalize(word, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder output = new StringBuilder(folded.length());
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (!WordTokenizer.isPunctuation(c) && !Character.isWhitespace(c)) {
+                output.append(c);
+            }
+        }
+        return output.length() == 0 ? null : output.toString();
+    }
+
+    @Override
+    public String getName() {
+        return "nfkc";
+    }
+
+    private static boolean isAscii(String word) {
+        for (int i = 0; i < word.length(); i++) {
+            if (word.charAt(i) >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
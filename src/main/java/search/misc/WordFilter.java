@@ -0,0 +1,24 @@
+package search.misc;
+
+/**
+ * One step of an Analyzer: transforms (or removes) a single word produced by the
+ * WordTokenizer or by an earlier filter.
+ *
+ * Filters are shared by every thread that indexes or searches, so they must not
+ * keep any state between calls.
+ */
+public interface WordFilter {
+    /**
+     * Returns the given word transformed by this filter, or null to remove it.
+     *
+     * The word is never empty; neither is the output.
+     */
+    String apply(String word);
+
+    /**
+     * Returns a short name for this filter. Indexes built with different filters
+     * are kept apart by name (see Analyzer.getName), so the name must change
+     * whenever the filter's output does.
+     */
+    String getName();
+}
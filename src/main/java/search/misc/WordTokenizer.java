@@ -1,17 +1,158 @@
 package search.misc;
 
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.interfaces.IList;
 
+import java.util.Locale;
+
+/**
+ * Splits text into the words we index and search for.
+ *
+ * A word is a run of characters between whitespace (' ', '\t', '\n', '\x0B', '\f'
+ * or '\r'), lowercased, with any ASCII punctuation removed. Runs that consist
+ * entirely of punctuation produce no word at all.
+ *
+ * We used to do this with 'toLowerCase', 'split' and 'replaceAll', which
+ * allocated several strings per word and ran a regex over each one. Instead, we
+ * now scan the text once, copying each word into a buffer we reuse, and hand
+ * the buffer to a callback: callers that only need to look at each word (or
+ * look it up somewhere) never need to allocate anything.
+ *
+ * A tokenizer reuses its buffer between calls, so it must only be used by one
+ * thread at a time.
+ */
 public class WordTokenizer {
+    private static final int DEFAULT_CAPACITY = 32;
+
+    private char[] buffer;
+
+    /**
+     * Receives the words found by 'tokenize'.
+     */
+    public interface WordHandler {
+        /**
+         * Handles the word stored in the first 'length' chars of the given buffer.
+         *
+         * The buffer is reused for the next word, so implementations must copy
+         * anything they want to keep.
+         */
+        void handle(char[] word, int length);
+    }
+
+    public WordTokenizer() {
+        this.buffer = new char[DEFAULT_CAPACITY];
+    }
+
+    /**
+     * Returns every word in the given text, in order.
+     */
     public static IList<String> extract(String input) {
-        IList<String> out = new DoubleLinkedList<>();
-        for (String word : input.toLowerCase().split("\\s+")) {
-            word = word.replaceAll("\\p{Punct}", "");
-            if (!word.isEmpty()) {
-                out.add(word);
+        IList<String> out = new ArrayList<>();
+        new WordTokenizer().tokenize(input, (word, length) -> out.add(new String(word, 0, length)));
+        return out;
+    }
+
+    /**
+     * Passes every word in the given text to the handler, in order.
+     */
+    public void tokenize(CharSequence input, WordHandler handler) {
+        // Lowercasing is locale-sensitive: Turkish and Azeri lowercase 'I' to a
+        // dotless i, and Lithuanian keeps the dot in some cases. We only take
+        // the fast path below when we know it gives the same result.
+        boolean asciiIsSafe = isAsciiLowercaseSafe(Locale.getDefault());
+
+        int length = input.length();
+        int start = 0;
+        while (start < length) {
+            // Step 1: skip whitespace
+            while (start < length && isWhitespace(input.charAt(start))) {
+                start++;
+            }
+            if (start == length) {
+                break;
+            }
+
+            // Step 2: copy the word into the buffer, lowercasing it and dropping
+            // punctuation, until we reach whitespace or a char we can't handle ourselves
+            int end = start;
+            int size = 0;
+            boolean ascii = asciiIsSafe;
+            while (end < length) {
+                char c = input.charAt(end);
+                if (isWhitespace(c)) {
+                    break;
+                }
+                if (c >= 128) {
+                    ascii = false;
+                }
+                if (ascii && !isPunctuation(c)) {
+                    this.ensureCapacity(size + 1);
+                    this.buffer[size] = c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+                    size++;
+                }
+                end++;
+            }
+
+            // Step 3: lowercasing anything else depends on the characters around
+            // it (the Greek sigma, for example), so leave those words to the
+            // standard library. Whether a sigma ends a word is decided by a word
+            // BreakIterator, which also looks at the whitespace before the word, so
+            // we include the char before it to get the same result as lowercasing
+            // the whole text.
+            if (!ascii) {
+                int context = start > 0 ? 1 : 0;
+                size = this.copyLowercase(input.subSequence(start - context, end).toString());
             }
+            if (size > 0) {
+                handler.handle(this.buffer, size);
+            }
+            start = end;
         }
-        return out;
+    }
+
+    /**
+     * Copies the given text into the buffer, lowercased and with any
+     * punctuation and whitespace removed, and returns the number of chars copied.
+     */
+    private int copyLowercase(String text) {
+        String lowercase = text.toLowerCase();
+        this.ensureCapacity(lowercase.length());
+        int size = 0;
+        for (int i = 0; i < lowercase.length(); i++) {
+            char c = lowercase.charAt(i);
+            if (!isPunctuation(c) && !isWhitespace(c)) {
+                this.buffer[size] = c;
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > this.buffer.length) {
+            char[] newBuffer = new char[Math.max(capacity, this.buffer.length * 2)];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.buffer.length);
+            this.buffer = newBuffer;
+        }
+    }
+
+    /**
+     * Returns true if the given char is whitespace, as defined by the regex '\s'.
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    /**
+     * Returns true if the given char is punctuation, as defined by the regex
+     * '\p{Punct}': one of !"#$%&'()*+,-./:;<=>?@[\]^_`{|}~
+     */
+    static boolean isPunctuation(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+
+    private static boolean isAsciiLowercaseSafe(Locale locale) {
+        String language = locale.getLanguage();
+        return !language.equals("tr") && !language.equals("az") && !language.equals("lt");
     }
 }
@@ -0,0 +1,67 @@
+package search.models;
+
+import java.util.Arrays;
+
+/**
+ * Represents a quoted phrase in a search query: a sequence of terms that must occur
+ * in a document in the same order, with the same distances between them.
+ *
+ * Each term comes with its position relative to the first one. Those are usually
+ * just 0, 1, 2, ..., but when the analyzer drops a word in the middle of the phrase
+ * (say, the stop word in "bank of america"), the positions skip over it too: the
+ * document must then have some word (any word) in the same place.
+ */
+public class Phrase {
+    private final String[] terms;
+    private final int[] positions;
+
+    /**
+     * @throws IllegalArgumentException  if there are no terms, there isn't exactly one
+     *                                   position per term, or the positions don't
+     *                                   start at 0 and increase
+     */
+    public Phrase(String[] terms, int[] positions) {
+        if (terms.length == 0 || terms.length != positions.length || positions[0] != 0) {
+            throw new IllegalArgumentException();
+        }
+        for (int i = 1; i < positions.length; i++) {
+            if (positions[i] <= positions[i - 1]) {
+                throw new IllegalArgumentException("Positions must be increasing");
+            }
+        }
+        this.terms = terms.clone();
+        this.positions = positions.clone();
+    }
+
+    /**
+     * Returns the number of terms in this phrase.
+     */
+    public int size() {
+        return this.terms.length;
+    }
+
+    public String getTerm(int index) {
+        return this.terms[index];
+    }
+
+    /**
+     * Returns the position of the term at the given index, relative to the first term.
+     */
+    public int getPosition(int index) {
+        return this.positions[index];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Phrase)) {
+            return false;
+        }
+        Phrase otherPhrase = (Phrase) other;
+        return Arrays.equals(this.terms, otherPhrase.terms) && Arrays.equals(this.positions, otherPhrase.positions);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(this.terms) + Arrays.hashCode(this.positions);
+    }
+}
@@ -0,0 +1,42 @@
+package search.models;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+
+/**
+ * Represents a parsed search query (see QueryParser): the terms we score documents
+ * by, plus any phrases a document must contain to match at all.
+ *
+ * The terms include the terms of every phrase, so a document matching a phrase is
+ * scored exactly as if the phrase hadn't been quoted.
+ */
+public class Query {
+    private final IList<String> terms;
+    private final IList<Phrase> phrases;
+
+    /**
+     * Creates a query without any phrases.
+     */
+    public Query(IList<String> terms) {
+        this(terms, new ArrayList<>());
+    }
+
+    public Query(IList<String> terms, IList<Phrase> phrases) {
+        this.terms = terms;
+        this.phrases = phrases;
+    }
+
+    /**
+     * Returns every term in the query, in order, including those inside phrases.
+     */
+    public IList<String> getTerms() {
+        return this.terms;
+    }
+
+    /**
+     * Returns the phrases every matching document must contain.
+     */
+    public IList<Phrase> getPhrases() {
+        return this.phrases;
+    }
+}
@@ -2,7 +2,7 @@ package search.models;
 
 import com.chimbori.crux.articles.Article;
 import com.chimbori.crux.articles.ArticleExtractor;
-import datastructures.concrete.DoubleLinkedList;
+import datastructures.concrete.ArrayList;
 import datastructures.concrete.dictionaries.ChainedHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.IList;
@@ -14,11 +14,9 @@ import search.misc.WordTokenizer;
 import search.misc.exceptions.DataExtractionException;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.InputStream;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PushbackInputStream;
 import java.net.URI;
@@ -101,14 +99,15 @@ public class Webpage {
     // Note: You can safely ignore all the methods below this point.
 
     public static Webpage load(URI localUri) {
+        // Pages are now cached in bulk (see search.index.PageCache), but we still read the
+        // per-page caches written by older versions rather then parsing the
+        // HTML all over again.
         URI cacheURI = Webpage.getCacheURI(localUri);
         File cacheFile = new File(cacheURI);
         if (cacheFile.exists()) {
             return Webpage.loadFromCache(cacheFile);
         } else {
-            Webpage out = Webpage.loadOriginal(localUri);
-            Webpage.saveToCache(out, cacheFile);
-            return out;
+            return Webpage.loadOriginal(localUri);
         }
     }
 
@@ -135,36 +134,6 @@ public class Webpage {
         }
     }
 
-    private static void saveToCache(Webpage page, File cache) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(cache))) {
-            WebpageSummary summary = page.getSummary();
-
-            // Line 1: page URI
-            writer.write(page.pageUri.toString() + "\n");
-
-            // Line 2: title
-            writer.write(summary.getTitle() + "\n");
-
-            // Line 3: blurb
-            writer.write(summary.getBlurb() + "\n");
-
-            // Line 4: words
-            for (String word : page.words) {
-                writer.write(word);
-                writer.write(' ');
-            }
-            writer.write('\n');
-
-            // Remaining lines: links
-            for (URI link : page.links) {
-                writer.write(link.toString());
-                writer.write('\n');
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException("Could not create cache", ex);
-        }
-    }
-
     private static Webpage loadFromCache(File cache) {
         try (BufferedReader reader = new BufferedReader(new FileReader(cache))) {
             // Line 1: Page URI
@@ -177,14 +146,14 @@ public class Webpage {
             String blurb = reader.readLine().trim();
 
             // Line 4: words
-            IList<String> words = new DoubleLinkedList<>();
+            IList<String> words = new ArrayList<>();
             StringTokenizer tokenizer = new StringTokenizer(reader.readLine().trim(), " ");
             while (tokenizer.hasMoreTokens()) {
                 words.add(tokenizer.nextToken());
             }
 
             // Rest of lines: links
-            IList<URI> links = new DoubleLinkedList<>();
+            IList<URI> links = new ArrayList<>();
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
                 links.add(URI.create(line));
             }
@@ -1,6 +1,6 @@
 package search.scraper;
 
-import datastructures.concrete.dictionaries.ChainedHashDictionary;
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
 import datastructures.interfaces.IDictionary;
 import datastructures.interfaces.ISet;
 import org.apache.http.HttpEntity;
@@ -46,7 +46,7 @@ public class HttpRequester implements AutoCloseable {
         this.userAgent = userAgent;
         this.delayMilliseconds = delayMilliseconds;
         this.lastRequestTimestamp = 0L;
-        this.matchPattern = new ChainedHashDictionary<>();
+        this.matchPattern = new ConcurrentHashDictionary<>();
 
         // HTTP config
         this.client = HttpClients.custom()
@@ -126,7 +126,9 @@ public class HttpRequester implements AutoCloseable {
             } else {
                 newRule = new RobotsTxt(this.userAgent, robotsContents).getMatchRule();
             }
-            this.matchPattern.put(host, newRule);
+            // Fetching robots.txt is slow, so we don't hold any locks while we do: if
+            // two threads fetch it at once, the first one to finish wins.
+            this.matchPattern.putIfAbsent(host, newRule);
         }
         return !this.matchPattern.get(host).matches(uri);
     }
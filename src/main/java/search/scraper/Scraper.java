@@ -2,6 +2,7 @@ package search.scraper;
 
 import datastructures.concrete.ArrayHeap;
 import datastructures.concrete.ChainedHashSet;
+import datastructures.concrete.ConcurrentHashSet;
 import datastructures.interfaces.IPriorityQueue;
 import datastructures.interfaces.ISet;
 import search.misc.WebUtils;
@@ -33,7 +34,7 @@ public class Scraper {
         this.pendingUris = new ArrayHeap<>();
         this.domainWhitelist = new ChainedHashSet<>();
         this.requester = new HttpRequester();
-        this.alreadyEncountered = new ChainedHashSet<>();
+        this.alreadyEncountered = new ConcurrentHashSet<>();
     }
 
     public Scraper addSeedUri(URI uri) {
@@ -0,0 +1,59 @@
+package datastructures;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class TestArrayList extends TestDoubleLinkedList {
+    @Override
+    protected <T> IList<T> newList() {
+        return new ArrayList<>();
+    }
+
+    @Test(timeout=SECOND)
+    public void testGetIsEfficient() {
+        IList<Integer> list = this.newList();
+        int cap = 100000;
+        for (int i = 0; i < cap; i++) {
+            list.add(i);
+        }
+        for (int i = 0; i < cap; i++) {
+            assertEquals(i, list.get(i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testInsertAndDeleteWrapAround() {
+        // Inserting at the front moves the start of the list backwards around the
+        // end of the array, so mix that up with everything else.
+        IList<Integer> list = this.newList();
+        java.util.List<Integer> expected = new java.util.ArrayList<>();
+        Random random = new Random(373);
+
+        for (int i = 0; i < 5000; i++) {
+            int op = random.nextInt(4);
+            if (op == 0 || expected.isEmpty()) {
+                int index = random.nextInt(expected.size() + 1);
+                list.insert(index, i);
+                expected.add(index, i);
+            } else if (op == 1) {
+                int index = random.nextInt(expected.size());
+                assertEquals(expected.remove(index), list.delete(index));
+            } else if (op == 2) {
+                list.insert(0, i);
+                expected.add(0, i);
+            } else {
+                assertEquals(expected.remove(expected.size() - 1), list.remove());
+            }
+        }
+
+        this.assertListMatches(expected.toArray(new Integer[0]), list);
+        int i = 0;
+        for (int item : list) {
+            assertEquals(expected.get(i), item);
+            i++;
+        }
+    }
+}
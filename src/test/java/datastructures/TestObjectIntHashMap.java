@@ -0,0 +1,147 @@
+package datastructures;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+import datastructures.concrete.ObjectIntHashMap;
+import misc.BaseTest;
+import misc.exceptions.NoSuchKeyException;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class TestObjectIntHashMap extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testPutAndGet() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        map.put("a", 30);
+        map.put("b", 70);
+        map.put("", 1);
+
+        assertEquals(3, map.size());
+        assertEquals(30, map.get("a"));
+        assertEquals(70, map.get("b"));
+        assertEquals(1, map.get(""));
+        assertEquals(-1, map.getOrDefault("c", -1));
+
+        map.put("a", 31);
+        assertEquals(3, map.size());
+        assertEquals(31, map.get("a"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testNullKey() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        assertFalse(map.containsKey(null));
+        assertEquals(5, map.getOrDefault(null, 5));
+
+        map.put(null, 10);
+        assertTrue(map.containsKey(null));
+        assertEquals(10, map.get(null));
+        assertEquals(1, map.size());
+
+        assertEquals(12, map.addTo(null, 2));
+        assertEquals(12, map.remove(null));
+        assertFalse(map.containsKey(null));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAddTo() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.addTo("word" + (i % 10), 1);
+        }
+        assertEquals(10, map.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(100, map.get("word" + i));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMissingKeyThrowsException() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        map.put("a", 1);
+        try {
+            map.get("b");
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // All ok -- expected result
+        }
+        try {
+            map.remove(null);
+            fail("Expected NoSuchKeyException");
+        } catch (NoSuchKeyException ex) {
+            // All ok -- expected result
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testCursorVisitsEveryEntryOnce() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        for (int i = -50; i <= 50; i++) {
+            map.put("" + i, i * 2);
+        }
+        map.put(null, 7);
+
+        ObjectIntHashMap<String>.Cursor cursor = map.cursor();
+        ObjectIntHashMap<String> seen = new ObjectIntHashMap<>();
+        while (cursor.advance()) {
+            if (cursor.key() == null) {
+                assertEquals(7, cursor.value());
+            } else {
+                assertEquals(Integer.parseInt(cursor.key()) * 2, cursor.value());
+            }
+            assertEquals(1, seen.addTo(cursor.key(), 1));
+        }
+        assertEquals(102, seen.size());
+        assertFalse(cursor.advance());
+
+        assertFalse(new ObjectIntHashMap<>().cursor().advance());
+    }
+
+    @Test(timeout=SECOND)
+    public void testClear() {
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            map.put("" + i, i);
+        }
+        map.put(null, 0);
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(null));
+        assertFalse(map.containsKey("50"));
+        assertFalse(map.cursor().advance());
+    }
+
+    @Test(timeout=10*SECOND)
+    public void stressTestMatchesHashMap() {
+        Random random = new Random(12);
+        ObjectIntHashMap<String> map = new ObjectIntHashMap<>();
+        Map<String, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 1000000; i++) {
+            String key = "key" + random.nextInt(5000);
+            int op = random.nextInt(3);
+            if (op == 0) {
+                map.put(key, i);
+                expected.put(key, i);
+            } else if (op == 1) {
+                assertEquals(expected.getOrDefault(key, 0) + 1, map.addTo(key, 1));
+                expected.merge(key, 1, Integer::sum);
+            } else if (expected.containsKey(key)) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertFalse(map.containsKey(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<String, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package datastructures;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+import search.misc.SegmentedLruCache;
+
+import java.util.Random;
+
+public class TestSegmentedLruCache extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testPutAndGet() {
+        SegmentedLruCache<String, Integer> cache = new SegmentedLruCache<>(4, 0.5);
+        assertNull(cache.get("a"));
+        cache.put("a", 1);
+        cache.put("b", 2);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.get("a"));
+        assertEquals(2, cache.get("b"));
+
+        cache.put("a", 3);
+        assertEquals(2, cache.size());
+        assertEquals(3, cache.get("a"));
+        assertNull(cache.get("c"));
+
+        assertEquals(3L, cache.getHits());
+        assertEquals(2L, cache.getMisses());
+        assertEquals(0L, cache.getEvictions());
+    }
+
+    @Test(timeout=SECOND)
+    public void testEvictsLeastRecentlyUsedOnProbation() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(3, 0.5);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+        cache.put(4, 4);
+
+        assertEquals(3, cache.size());
+        assertEquals(1L, cache.getEvictions());
+        assertNull(cache.get(1));
+        assertEquals(2, cache.get(2));
+        assertEquals(3, cache.get(3));
+        assertEquals(4, cache.get(4));
+    }
+
+    @Test(timeout=SECOND)
+    public void testPromotionAndDemotion() {
+        // One protected entry, two on probation.
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(3, 0.4);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+
+        // Promotes 1, then 2, which demotes 1 back to the front of probation.
+        assertEquals(1, cache.get(1));
+        assertEquals(2, cache.get(2));
+
+        // Probation is now (most recent first) 1, 3: so 3 goes first, then 1.
+        cache.put(4, 4);
+        assertNull(cache.get(3));
+        cache.put(5, 5);
+        assertNull(cache.get(1));
+
+        assertEquals(2, cache.get(2));
+        assertEquals(4, cache.get(4));
+        assertEquals(5, cache.get(5));
+        assertEquals(2L, cache.getEvictions());
+        assertEquals(3, cache.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testBurstNeverEvictsProtected() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(10, 0.5);
+        for (int key = 0; key < 5; key++) {
+            cache.put(key, key);
+            assertEquals(key, cache.get(key));
+        }
+
+        for (int key = 100; key < 10100; key++) {
+            cache.put(key, key);
+            assertTrue(cache.size() <= 10);
+        }
+
+        for (int key = 0; key < 5; key++) {
+            assertEquals(key, cache.get(key));
+        }
+        assertEquals(10, cache.size());
+        // The 5 protected entries left 5 places on probation for the 10000 new keys.
+        assertEquals(10000 - 5L, cache.getEvictions());
+    }
+
+    @Test(timeout=SECOND)
+    public void testNoProtectedSegment() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(3, 0.0);
+        cache.put(1, 1);
+        cache.put(2, 2);
+        cache.put(3, 3);
+
+        // With nothing protected, this is a plain LRU cache.
+        assertEquals(1, cache.get(1));
+        cache.put(4, 4);
+        assertNull(cache.get(2));
+        cache.put(5, 5);
+        assertNull(cache.get(3));
+
+        assertEquals(1, cache.get(1));
+        assertEquals(4, cache.get(4));
+        assertEquals(5, cache.get(5));
+        assertEquals(2L, cache.getEvictions());
+    }
+
+    @Test(timeout=SECOND)
+    public void testClear() {
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(4, 0.5);
+        for (int key = 0; key < 6; key++) {
+            cache.put(key, key);
+            cache.get(key);
+        }
+        long evictions = cache.getEvictions();
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(evictions, cache.getEvictions());
+        for (int key = 0; key < 6; key++) {
+            assertNull(cache.get(key));
+        }
+
+        // Still works (and can still fill up) after being cleared.
+        for (int key = 0; key < 4; key++) {
+            cache.put(key, key);
+        }
+        assertEquals(4, cache.size());
+        assertEquals(evictions, cache.getEvictions());
+        assertEquals(3, cache.get(3));
+    }
+
+    @Test(timeout=SECOND)
+    public void testBadArguments() {
+        double[][] cases = {{0, 0.5}, {-1, 0.5}, {10, -0.1}, {10, 1.0}};
+        for (double[] args : cases) {
+            try {
+                new SegmentedLruCache<Integer, Integer>((int) args[0], args[1]);
+                fail("Expected IllegalArgumentException");
+            } catch (IllegalArgumentException ex) {
+                // This is ok: do nothing
+            }
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testRandomAccesses() {
+        Random random = new Random(12);
+        SegmentedLruCache<Integer, Integer> cache = new SegmentedLruCache<>(50, 0.8);
+        long gets = 0;
+        int added = 0;
+        for (int i = 0; i < 100000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(40) : random.nextInt(1000);
+            Integer value = cache.get(key);
+            gets++;
+            if (value == null) {
+                cache.put(key, key * 2);
+                added++;
+            } else {
+                assertEquals(key * 2, (int) value);
+            }
+            assertTrue(cache.size() <= 50);
+        }
+        assertEquals(gets, cache.getHits() + cache.getMisses());
+        assertEquals((long) (added - cache.size()), cache.getEvictions());
+    }
+}
@@ -0,0 +1,145 @@
+package datastructures.dictionaries;
+
+import datastructures.concrete.ConcurrentHashSet;
+import datastructures.concrete.KVPair;
+import datastructures.concrete.dictionaries.ConcurrentHashDictionary;
+import datastructures.interfaces.IDictionary;
+import datastructures.interfaces.ISet;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TestConcurrentHashDictionary extends TestDictionary {
+    private static final int NUM_THREADS = 4;
+
+    protected <K, V> IDictionary<K, V> newDictionary() {
+        return new ConcurrentHashDictionary<>();
+    }
+
+    @Test(timeout=SECOND)
+    public void testPutIfAbsent() {
+        IDictionary<String, String> dict = this.makeBasicDictionary();
+
+        assertEquals("valA", dict.putIfAbsent("keyA", "other"));
+        assertEquals("valA", dict.get("keyA"));
+
+        assertNull(dict.putIfAbsent("keyD", "valD"));
+        assertEquals("valD", dict.get("keyD"));
+        assertEquals(4, dict.size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testComputeIfAbsent() {
+        IDictionary<String, Integer> dict = this.newDictionary();
+        dict.put("a", 1);
+
+        assertEquals(1, dict.computeIfAbsent("a", key -> -1));
+        assertEquals(3, dict.computeIfAbsent("abc", String::length));
+        assertEquals(3, dict.get("abc"));
+        assertEquals(2, dict.size());
+    }
+
+    @Test(timeout=10*SECOND)
+    public void stressTestConcurrentUpdates() throws InterruptedException {
+        // Every thread puts the same keys (and some keys of its own), so they
+        // constantly race to add the same entries.
+        int limit = 100000;
+        IDictionary<Integer, Integer> dict = this.newDictionary();
+        AtomicInteger numComputed = new AtomicInteger();
+        AtomicInteger numAdded = new AtomicInteger();
+
+        runInParallel(thread -> {
+            for (int i = 0; i < limit; i++) {
+                dict.computeIfAbsent(i, key -> {
+                    numComputed.incrementAndGet();
+                    return -key;
+                });
+                if (dict.putIfAbsent(limit + i, thread) == null) {
+                    numAdded.incrementAndGet();
+                }
+                dict.put(-1 - (thread * limit + i), thread);
+            }
+        });
+
+        // Each shared key must have been computed and added exactly once.
+        assertEquals(limit, numComputed.get());
+        assertEquals(limit, numAdded.get());
+        assertEquals(2 * limit + NUM_THREADS * limit, dict.size());
+        for (int i = 0; i < limit; i++) {
+            assertEquals(-i, dict.get(i));
+        }
+
+        int numVisited = 0;
+        for (KVPair<Integer, Integer> pair : dict) {
+            numVisited++;
+        }
+        assertEquals(dict.size(), numVisited);
+
+        // Now remove the entries again, while other threads read them.
+        runInParallel(thread -> {
+            for (int i = 0; i < limit; i++) {
+                dict.remove(-1 - (thread * limit + i));
+                assertEquals(-i, dict.get(i));
+            }
+        });
+        assertEquals(2 * limit, dict.size());
+    }
+
+    @Test(timeout=10*SECOND)
+    public void stressTestConcurrentSet() throws InterruptedException {
+        int limit = 100000;
+        ISet<Integer> set = new ConcurrentHashSet<>();
+        AtomicInteger numAdded = new AtomicInteger();
+
+        runInParallel(thread -> {
+            for (int i = 0; i < limit; i++) {
+                if (set.addIfAbsent(i)) {
+                    numAdded.incrementAndGet();
+                }
+            }
+        });
+
+        assertEquals(limit, numAdded.get());
+        assertEquals(limit, set.size());
+        for (int i = 0; i < limit; i++) {
+            assertTrue(set.contains(i));
+        }
+        assertFalse(set.contains(limit));
+    }
+
+    private interface Task {
+        void run(int thread);
+    }
+
+    /**
+     * Runs the task on NUM_THREADS threads at once, and rethrows the first error
+     * any of them threw.
+     */
+    private static void runInParallel(Task task) throws InterruptedException {
+        Thread[] threads = new Thread[NUM_THREADS];
+        Throwable[] errors = new Throwable[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            int thread = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    task.run(thread);
+                } catch (Throwable ex) {
+                    errors[thread] = ex;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (Throwable error : errors) {
+            if (error != null) {
+                throw new AssertionError(error);
+            }
+        }
+    }
+}
@@ -16,10 +16,10 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 /**
- * Note: Rather then running this class directly, run either
- * TestArrayDictionary or TestChainedHashDictionary.
+ * Note: Rather then running this class directly, run one of
+ * TestArrayDictionary, TestChainedHashDictionary or TestOpenAddressingDictionary.
  *
- * Both classes will inherit (and re-use) the tests defined here.
+ * All of them inherit (and re-use) the tests defined here.
  */
 public abstract class TestDictionary extends BaseTest {
     protected abstract <K, V> IDictionary<K, V> newDictionary();
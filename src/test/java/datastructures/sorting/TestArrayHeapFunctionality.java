@@ -5,9 +5,14 @@ import static org.junit.Assert.assertTrue;
 import misc.BaseTest;
 import misc.exceptions.EmptyContainerException;
 import datastructures.concrete.ArrayHeap;
+import datastructures.concrete.DoubleLinkedList;
+import datastructures.interfaces.IList;
 import datastructures.interfaces.IPriorityQueue;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
 /**
  * See spec for details on what kinds of tests this class should include.
  */
@@ -170,5 +175,93 @@ public class TestArrayHeapFunctionality extends BaseTest {
         IPriorityQueue<Integer> heap = this.makeInstance();
         heap.insert(null);
     }
-    
+
+    @Test(timeout=SECOND)
+    public void testReplaceMin() {
+        IPriorityQueue<Integer> heap = this.makeInstance();
+        for (int i = 10; i > 0; i--) {
+            heap.insert(i);
+        }
+        assertEquals(1, heap.replaceMin(20));
+        assertEquals(10, heap.size());
+        assertEquals(2, heap.replaceMin(0));
+        for (int i = 0; i <= 10; i++) {
+            if (i == 1 || i == 2) {
+                continue;
+            }
+            assertEquals(i, heap.removeMin());
+        }
+        assertEquals(20, heap.removeMin());
+        assertTrue(heap.isEmpty());
+    }
+
+    @Test(expected = EmptyContainerException.class)
+    public void testExceptionReplaceMin() {
+        IPriorityQueue<Integer> heap = this.makeInstance();
+        heap.replaceMin(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionReplaceMinNull() {
+        IPriorityQueue<Integer> heap = this.makeInstance();
+        heap.insert(1);
+        heap.replaceMin(null);
+    }
+
+    @Test(timeout=SECOND)
+    public void testBuildFromList() {
+        IList<Integer> items = new DoubleLinkedList<>();
+        Random random = new Random(373);
+        int[] expected = new int[1000];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = random.nextInt(100);
+            items.add(expected[i]);
+        }
+        Arrays.sort(expected);
+
+        IPriorityQueue<Integer> heap = new ArrayHeap<>(items);
+        assertEquals(expected.length, heap.size());
+        assertEquals(expected.length, items.size());
+        for (int item : expected) {
+            assertEquals(item, heap.removeMin());
+        }
+        assertTrue(heap.isEmpty());
+
+        // The heap should still grow normally afterwards
+        for (int i = 50; i > 0; i--) {
+            heap.insert(i);
+        }
+        assertEquals(1, heap.removeMin());
+    }
+
+    @Test(timeout=SECOND)
+    public void testBuildFromArray() {
+        String[] items = {"d", "b", "e", "a", "c"};
+        IPriorityQueue<String> heap = new ArrayHeap<>(items);
+        assertEquals("d", items[0]);
+        assertEquals(5, heap.size());
+        for (String expected : new String[] {"a", "b", "c", "d", "e"}) {
+            assertEquals(expected, heap.removeMin());
+        }
+
+        IPriorityQueue<String> empty = new ArrayHeap<>(new String[0]);
+        assertTrue(empty.isEmpty());
+        empty.insert("x");
+        assertEquals("x", empty.peekMin());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExceptionBuildWithNull() {
+        new ArrayHeap<>(new Integer[] {3, null, 1});
+    }
+
+    @Test(timeout=10 * SECOND)
+    public void testBuildIsEfficient() {
+        Integer[] items = new Integer[2000000];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = items.length - i;
+        }
+        IPriorityQueue<Integer> heap = new ArrayHeap<>(items);
+        assertEquals(1, heap.peekMin());
+    }
 }
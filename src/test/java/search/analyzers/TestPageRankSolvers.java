@@ -0,0 +1,359 @@
+package search.analyzers;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import search.index.DocumentIdRegistry;
+import search.index.Segment;
+import search.index.SegmentWriter;
+import search.models.Webpage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Checks that every solver finds the same ranks as a plain, unoptimized power
+ * iteration, that the multithreaded solvers don't depend on the number of threads,
+ * and that starting from saved ranks still converges to the right ranks.
+ */
+public class TestPageRankSolvers extends BaseTest {
+    private static final double DECAY = 0.85;
+    private static final double EPSILON = 1e-10;
+    private static final int LIMIT = 10000;
+
+    // The solvers stop once no rank moves by more than EPSILON in an iteration,
+    // which leaves them a small multiple of EPSILON away from the exact ranks.
+    private static final double TOLERANCE = 20 * EPSILON;
+
+    // Links to this page are links to a page we didn't crawl.
+    private static final int EXTERNAL = -1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A crawl written to segments, with the registry and link graph the SearchEngine
+     * would build from it.
+     */
+    private static class Crawl {
+        private final int[][] links;
+        private final DocumentIdRegistry registry;
+        private final LinkGraph graph;
+
+        /**
+         * Writes pages 0 through links.length - 1 (page i linking to the pages in
+         * links[i]) to the given number of segments in the given directory.
+         */
+        public Crawl(Path directory, int[][] links, int numSegments) {
+            this.links = links;
+            Segment[] segments = new Segment[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                Path path = directory.resolve("segment" + i);
+                SegmentWriter writer = new SegmentWriter(path, false);
+                for (int page = i * links.length / numSegments; page < (i + 1) * links.length / numSegments; page++) {
+                    IList<URI> uris = new ArrayList<>();
+                    for (int target : links[page]) {
+                        uris.add(target == EXTERNAL ? URI.create("http://elsewhere.com/") : makeUri(target));
+                    }
+                    IList<String> words = new ArrayList<>();
+                    words.add("page");
+                    writer.add(new Webpage(makeUri(page), uris, words, "", ""));
+                }
+                writer.finish();
+                segments[i] = Segment.open(path);
+            }
+
+            this.registry = new DocumentIdRegistry();
+            for (Segment segment : segments) {
+                for (int docId = 0; docId < segment.numDocs(); docId++) {
+                    this.registry.register(segment.getSummary(docId));
+                }
+            }
+            this.graph = new LinkGraph(segments, this.registry);
+        }
+
+        /**
+         * Returns the ranks a plain power iteration converges to, straight from the
+         * links we wrote: links to pages we don't have, links to the page itself and
+         * repeated links don't count, and pages without links link to every page.
+         */
+        public double[] computeReferenceRanks() {
+            int numPages = this.links.length;
+            int[][] targets = new int[numPages][];
+            for (int page = 0; page < numPages; page++) {
+                int source = page;
+                targets[page] = Arrays.stream(this.links[page])
+                        .filter(target -> target != EXTERNAL && target != source)
+                        .distinct()
+                        .toArray();
+            }
+
+            double[] ranks = new double[numPages];
+            Arrays.fill(ranks, 1.0 / numPages);
+            for (int iteration = 0; iteration < LIMIT; iteration++) {
+                double[] newRanks = new double[numPages];
+                Arrays.fill(newRanks, (1 - DECAY) / numPages);
+                for (int page = 0; page < numPages; page++) {
+                    if (targets[page].length == 0) {
+                        for (int target = 0; target < numPages; target++) {
+                            newRanks[target] += DECAY * ranks[page] / numPages;
+                        }
+                    } else {
+                        for (int target : targets[page]) {
+                            newRanks[target] += DECAY * ranks[page] / targets[page].length;
+                        }
+                    }
+                }
+
+                double maxDelta = 0.0;
+                for (int page = 0; page < numPages; page++) {
+                    maxDelta = Math.max(maxDelta, Math.abs(newRanks[page] - ranks[page]));
+                }
+                ranks = newRanks;
+                if (maxDelta <= 1e-15) {
+                    return ranks;
+                }
+            }
+            throw new AssertionError("Reference power iteration did not converge");
+        }
+
+        public PageRankAnalyzer analyze(PageRankSolver solver, int limit, Path savePath) {
+            return new PageRankAnalyzer(this.graph, this.registry, DECAY, EPSILON, limit, solver, savePath);
+        }
+    }
+
+    private static URI makeUri(int page) {
+        return URI.create("http://example.com/" + page);
+    }
+
+    /**
+     * Returns the links of a random crawl of the given number of pages, split into
+     * several parts that don't link to each other. Some pages have no links, some
+     * link to themselves, to the same page twice or to pages we didn't crawl.
+     */
+    private static int[][] makeRandomLinks(Random random, int numPages) {
+        int numParts = 1 + random.nextInt(4);
+        int[][] output = new int[numPages][];
+        for (int page = 0; page < numPages; page++) {
+            int part = page % numParts;
+            int numLinks = random.nextInt(4) == 0 ? 0 : 1 + random.nextInt(6);
+            output[page] = new int[numLinks];
+            for (int i = 0; i < numLinks; i++) {
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    output[page][i] = page;
+                } else if (kind == 1) {
+                    output[page][i] = EXTERNAL;
+                } else if (kind == 2 && i > 0) {
+                    output[page][i] = output[page][i - 1];
+                } else {
+                    // The pages of each part are the ones with the same remainder.
+                    int partSize = (numPages - 1 - part) / numParts + 1;
+                    output[page][i] = part + numParts * random.nextInt(partSize);
+                }
+            }
+        }
+        return output;
+    }
+
+    private static double[] makeUniformRanks(int numPages) {
+        double[] output = new double[numPages];
+        Arrays.fill(output, 1.0 / numPages);
+        return output;
+    }
+
+    private static PageRankSolver[] makeSolvers() {
+        return new PageRankSolver[] {
+            new JacobiSolver(1),
+            new JacobiSolver(4),
+            new GaussSeidelSolver(),
+            new ExtrapolationSolver(1, 10),
+            new ExtrapolationSolver(4, 4),
+        };
+    }
+
+    private static void assertCloseTo(double[] expected, double[] actual) {
+        assertEquals(expected.length, actual.length);
+        double sum = 0.0;
+        for (int page = 0; page < expected.length; page++) {
+            assertEquals("page " + page, expected[page], actual[page], TOLERANCE);
+            sum += actual[page];
+        }
+        assertEquals(1.0, sum, TOLERANCE);
+    }
+
+    private static void assertMatchesReference(Crawl crawl) {
+        double[] expected = crawl.computeReferenceRanks();
+        for (PageRankSolver solver : makeSolvers()) {
+            double[] initialRanks = makeUniformRanks(crawl.graph.numPages());
+            PageRankSolution solution = solver.solve(crawl.graph, initialRanks, DECAY, EPSILON, LIMIT);
+            assertTrue(solver.getName(), solution.hasConverged());
+            assertCloseTo(expected, solution.getRanks());
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testSmallGraphs() throws IOException {
+        // A dangling page, a self-link, a repeated link and a cycle.
+        int[][] links = {{1, 1, 2}, {2}, {0, 2}, {}, {3, 4}};
+        assertMatchesReference(new Crawl(this.folder.newFolder().toPath(), links, 1));
+
+        // Two parts that don't link to each other, one of them a single page.
+        links = new int[][] {{1}, {0}, {EXTERNAL}};
+        assertMatchesReference(new Crawl(this.folder.newFolder().toPath(), links, 2));
+
+        // Every page dangling.
+        links = new int[][] {{}, {}, {}, {EXTERNAL}};
+        assertMatchesReference(new Crawl(this.folder.newFolder().toPath(), links, 1));
+
+        links = new int[][] {{}};
+        assertMatchesReference(new Crawl(this.folder.newFolder().toPath(), links, 1));
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testRandomGraphs() throws IOException {
+        Random random = new Random(17);
+        for (int trial = 0; trial < 10; trial++) {
+            int[][] links = makeRandomLinks(random, 1 + random.nextInt(300));
+            assertMatchesReference(new Crawl(this.folder.newFolder().toPath(), links, 1 + random.nextInt(3)));
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testSameRanksWithAnyNumberOfThreads() throws IOException {
+        // Large enough to split every iteration into several chunks.
+        Random random = new Random(18);
+        Crawl crawl = new Crawl(this.folder.newFolder().toPath(), makeRandomLinks(random, 10000), 3);
+        int numPages = crawl.graph.numPages();
+
+        PageRankSolver[][] solvers = {
+            {new JacobiSolver(1), new JacobiSolver(2), new JacobiSolver(3), new JacobiSolver(8)},
+            {new ExtrapolationSolver(1, 5), new ExtrapolationSolver(2, 5), new ExtrapolationSolver(8, 5)},
+        };
+        for (PageRankSolver[] group : solvers) {
+            double[] expected = group[0].solve(crawl.graph, makeUniformRanks(numPages), DECAY, EPSILON, LIMIT)
+                    .getRanks();
+            for (PageRankSolver solver : group) {
+                for (int run = 0; run < 2; run++) {
+                    PageRankSolution solution = solver.solve(crawl.graph, makeUniformRanks(numPages),
+                            DECAY, EPSILON, LIMIT);
+                    assertArrayEquals(expected, solution.getRanks(), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testWarmStart() throws IOException {
+        Random random = new Random(19);
+        Path savePath = this.folder.getRoot().toPath().resolve("pagerank.sav");
+        int[][] links = makeRandomLinks(random, 200);
+        Crawl crawl = new Crawl(this.folder.newFolder().toPath(), links, 2);
+        double[] expected = crawl.computeReferenceRanks();
+
+        PageRankAnalyzer first = crawl.analyze(new JacobiSolver(1), LIMIT, savePath);
+        assertNotNull(first.getSolution());
+        assertTrue(Files.isRegularFile(savePath));
+
+        // The same crawl again: the saved ranks are reused as they are.
+        PageRankAnalyzer second = crawl.analyze(new JacobiSolver(1), LIMIT, savePath);
+        assertNull(second.getSolution());
+        for (int page = 0; page < links.length; page++) {
+            assertEquals(first.computePageRank(page), second.computePageRank(page), 1e-15);
+            assertEquals(expected[page], second.computePageRank(page), TOLERANCE);
+        }
+
+        // A few more pages and links: we start from the saved ranks, and converge to
+        // the new graph's ranks in fewer iterations than starting from scratch.
+        int[][] newLinks = Arrays.copyOf(links, links.length + 5);
+        for (int page = links.length; page < newLinks.length; page++) {
+            newLinks[page] = new int[] {random.nextInt(page), page - 1};
+        }
+        newLinks[0] = new int[] {links.length};
+        Crawl newCrawl = new Crawl(this.folder.newFolder().toPath(), newLinks, 3);
+        double[] newExpected = newCrawl.computeReferenceRanks();
+
+        PageRankSolution cold = newCrawl.analyze(new JacobiSolver(1), LIMIT, null).getSolution();
+        for (PageRankSolver solver : makeSolvers()) {
+            Path copy = this.folder.getRoot().toPath().resolve("copy.sav");
+            Files.copy(savePath, copy);
+            PageRankAnalyzer warm = newCrawl.analyze(solver, LIMIT, copy);
+            assertNotNull(warm.getSolution());
+            assertTrue(warm.getSolution().hasConverged());
+            for (int page = 0; page < newLinks.length; page++) {
+                assertEquals(newExpected[page], warm.computePageRank(page), TOLERANCE);
+            }
+            if (solver instanceof JacobiSolver) {
+                assertTrue(warm.getSolution().getIterations() < cold.getIterations());
+            }
+            Files.delete(copy);
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testWarmStartFromUnconvergedRanks() throws IOException {
+        Random random = new Random(20);
+        Path savePath = this.folder.getRoot().toPath().resolve("pagerank.sav");
+        Crawl crawl = new Crawl(this.folder.newFolder().toPath(), makeRandomLinks(random, 200), 1);
+        double[] expected = crawl.computeReferenceRanks();
+
+        PageRankAnalyzer first = crawl.analyze(new JacobiSolver(1), 3, savePath);
+        assertFalse(first.getSolution().hasConverged());
+
+        // The graph didn't change, but the saved ranks aren't final, so we keep going.
+        PageRankAnalyzer second = crawl.analyze(new JacobiSolver(1), LIMIT, savePath);
+        assertNotNull(second.getSolution());
+        assertTrue(second.getSolution().hasConverged());
+        double[] actual = new double[expected.length];
+        for (int page = 0; page < actual.length; page++) {
+            actual[page] = second.computePageRank(page);
+        }
+        assertCloseTo(expected, actual);
+
+        // And now they are.
+        assertNull(crawl.analyze(new JacobiSolver(1), LIMIT, savePath).getSolution());
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testBadSaveFile() throws IOException {
+        Random random = new Random(21);
+        Path savePath = this.folder.getRoot().toPath().resolve("pagerank.sav");
+        Crawl crawl = new Crawl(this.folder.newFolder().toPath(), makeRandomLinks(random, 100), 1);
+        double[] expected = crawl.computeReferenceRanks();
+        crawl.analyze(new JacobiSolver(1), LIMIT, savePath);
+
+        // A file cut short, and one full of garbage: we start from scratch instead.
+        byte[] saved = Files.readAllBytes(savePath);
+        byte[][] badFiles = {Arrays.copyOf(saved, saved.length / 2), Arrays.copyOf(saved, 30), new byte[1000]};
+        Arrays.fill(badFiles[2], (byte) 0x7F);
+        System.arraycopy(saved, 0, badFiles[2], 0, 4);
+        for (byte[] bad : badFiles) {
+            Files.write(savePath, bad);
+            assertNull(SavedPageRanks.load(savePath));
+            PageRankAnalyzer analyzer = crawl.analyze(new JacobiSolver(1), LIMIT, savePath);
+            assertNotNull(analyzer.getSolution());
+            for (int page = 0; page < expected.length; page++) {
+                assertEquals(expected[page], analyzer.computePageRank(page), TOLERANCE);
+            }
+        }
+
+        // Saving to a folder that doesn't exist doesn't stop us either.
+        Path missing = this.folder.getRoot().toPath().resolve("missing").resolve("pagerank.sav");
+        PageRankAnalyzer analyzer = crawl.analyze(new JacobiSolver(1), LIMIT, missing);
+        assertNotNull(analyzer.getSolution());
+        assertFalse(Files.exists(missing));
+    }
+}
@@ -0,0 +1,114 @@
+package search.index;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import search.analyzers.TfIdfAnalyzer;
+import search.models.Webpage;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Builds small indexes of random documents for the tests that compare query
+ * evaluation against scoring every document the slow way.
+ *
+ * The terms are "t0", "t1", ... with lower numbers being more common, so queries
+ * mix long and short posting lists. Every document also contains COMMON_TERM, whose
+ * IDF is therefore zero. Some documents are copies of an earlier one (page rank
+ * included), so plenty of documents end up with exactly the same score.
+ */
+class RandomIndex {
+    public static final String COMMON_TERM = "common";
+
+    private static final int MAX_DOC_LENGTH = 30;
+
+    private RandomIndex() {}
+
+    /**
+     * Builds an index of the given number of segments (each with the given number of
+     * random documents) in the given directory, and opens it.
+     */
+    public static IndexSnapshot build(Path directory, Random random, int numSegments, int docsPerSegment,
+                                      int numTerms, boolean storePositions) {
+        int numDocs = numSegments * docsPerSegment;
+        IList<IList<String>> documents = new ArrayList<>(numDocs);
+        double[] pageRanks = new double[numDocs];
+        for (int docId = 0; docId < numDocs; docId++) {
+            if (docId > 0 && random.nextInt(4) == 0) {
+                int original = random.nextInt(docId);
+                documents.add(documents.get(original));
+                pageRanks[docId] = pageRanks[original];
+            } else {
+                documents.add(makeWords(random, numTerms));
+                pageRanks[docId] = 1 + random.nextInt(3);
+            }
+        }
+        return build(directory, documents, pageRanks, numSegments, storePositions);
+    }
+
+    /**
+     * Builds an index of the given documents (by global doc id, each a list of its
+     * words) in the given directory, split over the given number of segments, and
+     * opens it.
+     */
+    public static IndexSnapshot build(Path directory, IList<IList<String>> documents, double[] pageRanks,
+                                      int numSegments, boolean storePositions) {
+        int numDocs = documents.size();
+        Segment[] segments = new Segment[numSegments];
+        int[] lengths = new int[numDocs];
+        for (int i = 0; i < numSegments; i++) {
+            Path path = directory.resolve("segment" + i);
+            SegmentWriter writer = new SegmentWriter(path, storePositions);
+            int docBase = i * numDocs / numSegments;
+            for (int docId = docBase; docId < (i + 1) * numDocs / numSegments; docId++) {
+                URI uri = URI.create("http://example.com/" + docId);
+                writer.add(new Webpage(uri, new ArrayList<>(), documents.get(docId), "", ""));
+            }
+            writer.finish();
+            segments[i] = Segment.open(path);
+            for (int docId = 0; docId < segments[i].numDocs(); docId++) {
+                lengths[docBase + docId] = segments[i].getDocLength(docId);
+            }
+        }
+
+        double[] norms = TfIdfAnalyzer.computeDocumentNorms(segments);
+        double[] scales = new double[numDocs];
+        for (int docId = 0; docId < numDocs; docId++) {
+            scales[docId] = norms[docId] == 0.0 ? 0.0 : Math.sqrt(pageRanks[docId]) / (norms[docId] * lengths[docId]);
+        }
+        double[][] maxScores = IndexSnapshot.computeMaxScores(segments, docId -> scales[docId]);
+
+        Path path = directory.resolve("snapshot");
+        IndexSnapshot.save(path, new long[0], segments, pageRanks, norms, maxScores);
+        return IndexSnapshot.open(path);
+    }
+
+    /**
+     * Returns the scale of each document, computed the same way the SearchEngine
+     * does: the square root of its page rank, over its norm and length.
+     */
+    public static IntToDoubleFunction getDocumentScale(IndexSnapshot index) {
+        return docId -> index.getNorm(docId) == 0.0
+                ? 0.0
+                : Math.sqrt(index.getPageRank(docId)) / (index.getNorm(docId) * index.getDocLength(docId));
+    }
+
+    /**
+     * Returns a random term, favoring the common ones.
+     */
+    public static String makeTerm(Random random, int numTerms) {
+        return "t" + random.nextInt(random.nextInt(numTerms) + 1);
+    }
+
+    private static IList<String> makeWords(Random random, int numTerms) {
+        IList<String> words = new ArrayList<>();
+        int length = random.nextInt(MAX_DOC_LENGTH);
+        int common = random.nextInt(length + 1);
+        for (int i = 0; i <= length; i++) {
+            words.add(i == common ? COMMON_TERM : makeTerm(random, numTerms));
+        }
+        return words;
+    }
+}
@@ -0,0 +1,43 @@
+package search.index;
+
+import static org.junit.Assert.assertEquals;
+
+import datastructures.interfaces.IList;
+import misc.Searcher;
+
+/**
+ * A document and the score we expect a query to give it, ordered the way
+ * TopKCollector ranks documents: by score, and then by doc id, the lower one being
+ * better.
+ */
+class ScoredDoc implements Comparable<ScoredDoc> {
+    private final int docId;
+    private final double score;
+
+    public ScoredDoc(int docId, double score) {
+        this.docId = docId;
+        this.score = score;
+    }
+
+    @Override
+    public int compareTo(ScoredDoc other) {
+        int cmp = Double.compare(this.score, other.score);
+        return cmp != 0 ? cmp : Integer.compare(other.docId, this.docId);
+    }
+
+    /**
+     * Checks that the collector holds exactly the k best of the given documents (as
+     * found by Searcher.topKSort), in the same order.
+     */
+    public static void assertSameResults(IList<ScoredDoc> hits, int k, TopKCollector collector) {
+        // topKSort returns the best document last.
+        IList<ScoredDoc> expected = Searcher.topKSort(k, hits);
+        collector.sortDescending();
+        assertEquals(Math.min(k, hits.size()), collector.size());
+        for (int i = 0; i < collector.size(); i++) {
+            ScoredDoc doc = expected.get(expected.size() - 1 - i);
+            assertEquals(doc.docId, collector.getDocId(i));
+            assertEquals(doc.score, collector.getScore(i), 1e-12);
+        }
+    }
+}
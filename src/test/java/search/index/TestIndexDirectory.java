@@ -0,0 +1,252 @@
+package search.index;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import search.analyzers.QueryVector;
+import search.analyzers.TfIdfAnalyzer;
+import search.misc.Analyzer;
+import search.models.Phrase;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Checks that merging segments changes nothing about the index: every query finds
+ * the same documents with the same scores, and every term keeps its doc frequency
+ * (and so its IDF) across all the segments.
+ */
+public class TestIndexDirectory extends BaseTest {
+    private static final int NUM_TERMS = 30;
+    private static final int[] K_VALUES = {1, 10, 100000};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A random query, with a phrase and a proximity boost if the index stores positions.
+     */
+    private static class RandomQuery {
+        private final String[] terms;
+        private final double[] weights;
+        private final IList<Phrase> phrases;
+        private final double proximityWeight;
+
+        public RandomQuery(IndexSnapshot index, Random random) {
+            IList<String> words = new ArrayList<>();
+            int length = 1 + random.nextInt(4);
+            for (int i = 0; i < length; i++) {
+                words.add(random.nextInt(8) == 0 ? RandomIndex.COMMON_TERM : RandomIndex.makeTerm(random, NUM_TERMS));
+            }
+            this.phrases = new ArrayList<>();
+            if (random.nextBoolean()) {
+                String[] phraseTerms = {RandomIndex.makeTerm(random, 5), RandomIndex.makeTerm(random, 5)};
+                this.phrases.add(new Phrase(phraseTerms, new int[] {0, 1}));
+                words.add(phraseTerms[0]);
+                words.add(phraseTerms[1]);
+            }
+            this.proximityWeight = random.nextBoolean() ? 0.5 : 0.0;
+
+            QueryVector vector = new TfIdfAnalyzer(index).computeQueryVector(words);
+            this.terms = new String[vector.size()];
+            this.weights = new double[vector.size()];
+            for (int i = 0; i < vector.size(); i++) {
+                this.terms[i] = vector.getTerm(i);
+                this.weights[i] = vector.getWeight(i) * vector.getIdf(i) / vector.getNorm();
+            }
+        }
+
+        public TopKCollector findTopK(IndexSnapshot index, int k) {
+            QueryPlan plan = new QueryPlan(index, this.terms, this.weights, this.phrases, this.proximityWeight,
+                    RandomIndex.getDocumentScale(index));
+            TopKCollector output = plan.findTopK(k, 1, null);
+            output.sortDescending();
+            return output;
+        }
+    }
+
+    private static void assertSameResults(TopKCollector expected, TopKCollector actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getDocId(i), actual.getDocId(i));
+            assertEquals(expected.getScore(i), actual.getScore(i), 0.0);
+        }
+    }
+
+    /**
+     * Checks that the merged snapshot holds the same documents as the original, that
+     * every term has the same doc frequency (and every document the same norm), and
+     * that every query finds the same top k.
+     */
+    private static void assertSameIndex(IndexSnapshot original, IndexSnapshot merged,
+                                        IList<RandomQuery> queries, IList<TopKCollector[]> results) {
+        assertEquals(original.numDocs(), merged.numDocs());
+        for (int docId = 0; docId < original.numDocs(); docId++) {
+            assertEquals(original.getSummary(docId).getUri(), merged.getSummary(docId).getUri());
+            assertEquals(original.getDocLength(docId), merged.getDocLength(docId));
+            assertTrue(merged.containsUri(original.getSummary(docId).getUri()));
+            assertEquals(docId, merged.getId(original.getSummary(docId).getUri()));
+        }
+
+        assertEquals(original.getDocFrequency("missing"), merged.getDocFrequency("missing"));
+        assertEquals(original.getDocFrequency(RandomIndex.COMMON_TERM), merged.getDocFrequency(RandomIndex.COMMON_TERM));
+        for (int term = 0; term < NUM_TERMS; term++) {
+            assertEquals(original.getDocFrequency("t" + term), merged.getDocFrequency("t" + term));
+        }
+
+        Segment[] segments = new Segment[merged.numSegments()];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = merged.getSegment(i);
+        }
+        double[] norms = TfIdfAnalyzer.computeDocumentNorms(segments);
+        for (int docId = 0; docId < original.numDocs(); docId++) {
+            assertEquals(original.getNorm(docId), norms[docId], 1e-12);
+        }
+
+        for (int q = 0; q < queries.size(); q++) {
+            for (int i = 0; i < K_VALUES.length; i++) {
+                assertSameResults(results.get(q)[i], queries.get(q).findTopK(merged, K_VALUES[i]));
+            }
+        }
+    }
+
+    /**
+     * Returns the results of every query on the given snapshot, for every k.
+     */
+    private static IList<TopKCollector[]> findResults(IndexSnapshot index, IList<RandomQuery> queries) {
+        IList<TopKCollector[]> output = new ArrayList<>();
+        for (RandomQuery query : queries) {
+            TopKCollector[] results = new TopKCollector[K_VALUES.length];
+            for (int i = 0; i < K_VALUES.length; i++) {
+                results[i] = query.findTopK(index, K_VALUES[i]);
+            }
+            output.add(results);
+        }
+        return output;
+    }
+
+    private IndexDirectory makeDirectory(boolean storePositions) throws IOException {
+        return new IndexDirectory(this.folder.newFolder().toPath().resolve("data"), Analyzer.english(),
+                storePositions);
+    }
+
+    /**
+     * Copies the given snapshot into the given index directory (snapshots can only
+     * refer to segments in their own directory), and returns the copy.
+     */
+    private static IndexSnapshot copyToDirectory(IndexDirectory directory, IndexSnapshot snapshot) {
+        Segment[] segments = new Segment[snapshot.numSegments()];
+        double[][] maxScores = new double[snapshot.numSegments()][];
+        for (int i = 0; i < segments.length; i++) {
+            Path path = directory.newSegmentPath();
+            SegmentWriter writer = new SegmentWriter(path, directory.storesPositions());
+            writer.addAll(snapshot.getSegment(i));
+            writer.finish();
+            segments[i] = Segment.open(path);
+            maxScores[i] = snapshot.copyMaxScores(i);
+        }
+        return directory.commit(snapshot.copySourceHashes(), segments, snapshot.copyPageRanks(),
+                snapshot.copyNorms(), maxScores);
+    }
+
+    private void assertMergesChangeNothing(boolean storePositions, long seed) throws IOException {
+        Random random = new Random(seed);
+        IndexSnapshot original = RandomIndex.build(this.folder.newFolder().toPath(), random, 8, 50,
+                NUM_TERMS, storePositions);
+        IList<RandomQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            queries.add(new RandomQuery(original, random));
+        }
+        IList<TopKCollector[]> results = findResults(original, queries);
+
+        // Merge a range in the middle.
+        IndexDirectory directory = this.makeDirectory(storePositions);
+        IndexSnapshot merged = directory.merge(copyToDirectory(directory, original), 2, 5);
+        assertEquals(6, merged.numSegments());
+        assertSameIndex(original, merged, queries, results);
+
+        // Merge everything the merge policy wants to, one merge at a time.
+        directory = this.makeDirectory(storePositions);
+        IndexSnapshot current = copyToDirectory(directory, original);
+        TieredMergePolicy policy = new TieredMergePolicy(2, 50);
+        int[] range = policy.findMerge(current);
+        assertNotNull(range);
+        while (range != null) {
+            current = directory.merge(current, range[0], range[1]);
+            assertSameIndex(original, current, queries, results);
+            range = policy.findMerge(current);
+        }
+        assertEquals(1, current.numSegments());
+
+        // Merging every segment at once gives the same index.
+        directory = this.makeDirectory(storePositions);
+        merged = directory.merge(copyToDirectory(directory, original), 0, original.numSegments());
+        assertEquals(1, merged.numSegments());
+        assertSameIndex(original, merged, queries, results);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testMergeWithoutPositions() throws IOException {
+        assertMergesChangeNothing(false, 1);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testMergeWithPositions() throws IOException {
+        assertMergesChangeNothing(true, 2);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testDocFrequenciesAddUpAcrossSegments() throws IOException {
+        Random random = new Random(3);
+        IndexSnapshot index = RandomIndex.build(this.folder.newFolder().toPath(), random, 5, 40, NUM_TERMS, false);
+        assertEquals(index.numDocs(), index.getDocFrequency(RandomIndex.COMMON_TERM));
+        assertEquals(0, index.getDocFrequency("missing"));
+        for (int term = 0; term < NUM_TERMS; term++) {
+            // Count the documents containing the term by looking at each one.
+            int expected = 0;
+            for (int i = 0; i < index.numSegments(); i++) {
+                Segment segment = index.getSegment(i);
+                int ordinal = segment.findTerm("t" + term);
+                if (ordinal == Segment.NOT_FOUND) {
+                    continue;
+                }
+                PostingList postings = segment.getPostings(ordinal, 0.0);
+                for (int docId = 0; docId < segment.numDocs(); docId++) {
+                    int posting = postings.findNext(0, docId);
+                    if (posting < postings.size() && postings.getDocId(posting) == docId) {
+                        expected++;
+                    }
+                }
+            }
+            assertEquals(expected, index.getDocFrequency("t" + term));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testMergePolicy() throws IOException {
+        Random random = new Random(4);
+        IndexSnapshot index = RandomIndex.build(this.folder.newFolder().toPath(), random, 3, 20, NUM_TERMS, false);
+
+        // Fewer segments in a tier than the merge factor: nothing to merge.
+        assertNull(new TieredMergePolicy(4, 20).findMerge(index));
+        int[] range = new TieredMergePolicy(3, 20).findMerge(index);
+        assertEquals(0, range[0]);
+        assertEquals(3, range[1]);
+        range = new TieredMergePolicy(2, 20).findMerge(index);
+        assertEquals(0, range[0]);
+        assertEquals(2, range[1]);
+
+        // Every segment is in a different tier.
+        IndexDirectory directory = this.makeDirectory(false);
+        IndexSnapshot merged = directory.merge(copyToDirectory(directory, index), 0, 2);
+        assertNull(new TieredMergePolicy(2, 20).findMerge(merged));
+    }
+}
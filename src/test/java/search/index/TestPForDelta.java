@@ -0,0 +1,131 @@
+package search.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TestPForDelta extends BaseTest {
+    private static byte[] encode(int[] values) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            PForDelta.write(new DataOutputStream(bytes), values, values.length);
+            return bytes.toByteArray();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Encodes the given values, decodes them again and checks they're unchanged and
+     * that decoding read exactly the bytes we wrote. Returns the encoded bytes.
+     */
+    private static byte[] assertRoundTrip(int[] values) {
+        byte[] encoded = encode(values);
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        int[] decoded = new int[values.length];
+        PForDelta.read(in, decoded, values.length);
+        assertArrayEquals(values, decoded);
+        assertEquals(encoded.length, in.position());
+        return encoded;
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmpty() {
+        assertRoundTrip(new int[0]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testSingleValue() {
+        assertRoundTrip(new int[] {0});
+        assertRoundTrip(new int[] {1});
+        assertRoundTrip(new int[] {Integer.MAX_VALUE});
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllZeros() {
+        byte[] encoded = assertRoundTrip(new int[PForDelta.MAX_GROUP_SIZE]);
+        // Zero bits per value, so just the header.
+        assertEquals(2, encoded.length);
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllEqual() {
+        int[] values = new int[128];
+        Arrays.fill(values, 5);
+        byte[] encoded = assertRoundTrip(values);
+        // 3 bits each, and no exceptions.
+        assertEquals(3, encoded[0] & 0xFF);
+        assertEquals(0, encoded[1] & 0xFF);
+        assertEquals(2 + 128 * 3 / 8, encoded.length);
+    }
+
+    @Test(timeout=SECOND)
+    public void testOutlierIsPatched() {
+        int[] values = new int[128];
+        Arrays.fill(values, 1);
+        values[77] = Integer.MAX_VALUE;
+        byte[] encoded = assertRoundTrip(values);
+        // The outlier shouldn't make every other value take 31 bits.
+        assertEquals(1, encoded[0] & 0xFF);
+        assertEquals(1, encoded[1] & 0xFF);
+        assertTrue(encoded.length < 128 * 2);
+    }
+
+    @Test(timeout=SECOND)
+    public void testManyExceptions() {
+        int[] values = new int[PForDelta.MAX_GROUP_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i % 10 == 0 ? (1 << 20) + i : i % 4;
+        }
+        assertRoundTrip(values);
+    }
+
+    @Test(timeout=SECOND)
+    public void testRandom() {
+        Random random = new Random(373);
+        for (int trial = 0; trial < 1000; trial++) {
+            int[] values = new int[random.nextInt(PForDelta.MAX_GROUP_SIZE + 1)];
+            int bits = random.nextInt(31);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt(20) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(1 << bits);
+            }
+            assertRoundTrip(values);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testDecodesIntoLargerArray() {
+        int[] values = {3, 1, 4, 1, 5, 9, 2, 6};
+        int[] decoded = new int[128];
+        Arrays.fill(decoded, -1);
+        PForDelta.read(ByteBuffer.wrap(encode(values)), decoded, values.length);
+        assertArrayEquals(values, Arrays.copyOf(decoded, values.length));
+        assertEquals(-1, decoded[values.length]);
+    }
+
+    @Test(timeout=SECOND)
+    public void testRejectsBadInput() {
+        try {
+            encode(new int[PForDelta.MAX_GROUP_SIZE + 1]);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // This is ok: do nothing
+        }
+        try {
+            encode(new int[] {1, -1});
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException ex) {
+            // This is ok: do nothing
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package search.index;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class TestPostingList extends BaseTest {
+    // Written after some unrelated bytes, to make sure the list reads from its offset.
+    private static final int OFFSET = 13;
+
+    private static PostingList makeList(int[] docIds, int[] counts, int[] positions) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            for (int i = 0; i < OFFSET; i++) {
+                out.writeByte(0xFF);
+            }
+            PostingList.write(out, docIds, counts, positions, docIds.length);
+            out.writeInt(-1);
+            return new PostingList(ByteBuffer.wrap(bytes.toByteArray()), OFFSET, docIds.length, 1.0, positions != null);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static int[] makeCounts(int size, Random random) {
+        int[] counts = new int[size];
+        for (int i = 0; i < size; i++) {
+            counts[i] = 1 + (random.nextInt(10) == 0 ? random.nextInt(300) : random.nextInt(3));
+        }
+        return counts;
+    }
+
+    /**
+     * Returns positions for the given counts: increasing within each posting, with
+     * the occasional large gap.
+     */
+    private static int[] makePositions(int[] counts, Random random) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        int[] positions = new int[total];
+        int next = 0;
+        for (int count : counts) {
+            int position = random.nextInt(5);
+            for (int j = 0; j < count; j++) {
+                positions[next] = position;
+                next++;
+                position += 1 + (random.nextInt(50) == 0 ? random.nextInt(1 << 20) : random.nextInt(8));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Checks that the list reads back the given postings, in order and (for findNext)
+     * starting from anywhere.
+     */
+    private static void assertRoundTrip(int[] docIds, int[] counts, int[] positions) {
+        PostingList list = makeList(docIds, counts, positions);
+        assertEquals(docIds.length, list.size());
+        assertEquals(positions != null, list.hasPositions());
+        int next = 0;
+        for (int i = 0; i < docIds.length; i++) {
+            assertEquals(docIds[i], list.getDocId(i));
+            assertEquals(counts[i], list.getCount(i));
+            if (positions != null) {
+                for (int j = 0; j < counts[i]; j++) {
+                    assertEquals(positions[next], list.getPosition(i, j));
+                    next++;
+                }
+            }
+        }
+
+        // Reading in reverse makes every lookup decode a different block than the
+        // one before it.
+        PostingList reversed = makeList(docIds, counts, positions);
+        for (int i = docIds.length - 1; i >= 0; i--) {
+            assertEquals(docIds[i], reversed.getDocId(i));
+            assertEquals(counts[i], reversed.getCount(i));
+        }
+
+        PostingList search = makeList(docIds, counts, positions);
+        for (int i = 0; i < docIds.length; i++) {
+            assertEquals(i, search.findNext(0, docIds[i]));
+            assertEquals(i, search.findNext(i, docIds[i]));
+            assertEquals(i + 1, search.findNext(i, docIds[i] + 1));
+        }
+        assertEquals(docIds.length, search.findNext(0, Integer.MAX_VALUE));
+        assertEquals(docIds.length, search.findNext(docIds.length, 0));
+    }
+
+    private static void assertRoundTrip(int[] docIds, Random random) {
+        int[] counts = makeCounts(docIds.length, random);
+        assertRoundTrip(docIds, counts, null);
+        assertRoundTrip(docIds, counts, makePositions(counts, random));
+    }
+
+    private static int[] makeDocIds(int size, int gap) {
+        int[] docIds = new int[size];
+        for (int i = 0; i < size; i++) {
+            docIds[i] = i * gap;
+        }
+        return docIds;
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmpty() {
+        PostingList list = makeList(new int[0], new int[0], null);
+        assertEquals(0, list.size());
+        assertEquals(0, list.findNext(0, 0));
+        assertEquals(0, list.findNext(0, Integer.MAX_VALUE));
+        try {
+            list.getDocId(0);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // This is ok: do nothing
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testSinglePosting() {
+        assertRoundTrip(new int[] {0}, new int[] {1}, null);
+        assertRoundTrip(new int[] {42}, new int[] {3}, new int[] {0, 7, 8});
+        assertRoundTrip(new int[] {Integer.MAX_VALUE - 1}, new int[] {1}, new int[] {1 << 30});
+
+        PostingList list = makeList(new int[] {42}, new int[] {3}, null);
+        assertEquals(0, list.findNext(0, 0));
+        assertEquals(0, list.findNext(0, 42));
+        assertEquals(1, list.findNext(0, 43));
+    }
+
+    @Test(timeout=SECOND)
+    public void testExactlyOneBlock() {
+        assertRoundTrip(makeDocIds(PostingList.BLOCK_SIZE, 2), new Random(1));
+    }
+
+    @Test(timeout=SECOND)
+    public void testOneMoreThanBlock() {
+        assertRoundTrip(makeDocIds(PostingList.BLOCK_SIZE + 1, 2), new Random(2));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAllGapsEqual() {
+        assertRoundTrip(makeDocIds(1000, 1), new Random(3));
+        assertRoundTrip(makeDocIds(1000, 7), new Random(4));
+
+        int[] ones = new int[500];
+        for (int i = 0; i < ones.length; i++) {
+            ones[i] = 1;
+        }
+        assertRoundTrip(makeDocIds(500, 3), ones, null);
+    }
+
+    @Test(timeout=SECOND)
+    public void testHugeGap() {
+        int[] docIds = makeDocIds(300, 1);
+        for (int i = 60; i < docIds.length; i++) {
+            docIds[i] += 1 << 30;
+        }
+        assertRoundTrip(docIds, new Random(5));
+
+        PostingList list = makeList(docIds, makeCounts(docIds.length, new Random(6)), null);
+        assertEquals(60, list.findNext(0, 60));
+        assertEquals(60, list.findNext(10, 1 << 30));
+        assertEquals(61, list.findNext(0, (1 << 30) + 61));
+    }
+
+    @Test(timeout=SECOND)
+    public void testFindNextAcrossBlocks() {
+        Random random = new Random(7);
+        int size = 20 * PostingList.BLOCK_SIZE + 17;
+        int[] docIds = new int[size];
+        int docId = -1;
+        for (int i = 0; i < size; i++) {
+            docId += 1 + random.nextInt(random.nextInt(10) == 0 ? 1000 : 5);
+            docIds[i] = docId;
+        }
+        PostingList list = makeList(docIds, makeCounts(size, random), null);
+
+        // Targets at and around the first and last doc of every block.
+        for (int block = 0; block * PostingList.BLOCK_SIZE < size; block++) {
+            int first = block * PostingList.BLOCK_SIZE;
+            int last = Math.min(size, first + PostingList.BLOCK_SIZE) - 1;
+            for (int from : new int[] {0, Math.max(0, first - 1), first}) {
+                assertEquals(first, list.findNext(from, docIds[first]));
+                assertEquals(last, list.findNext(from, docIds[last]));
+                assertEquals(last + 1, list.findNext(from, docIds[last] + 1));
+            }
+        }
+
+        // Random jumps, both short and long, like a cursor would make.
+        for (int trial = 0; trial < 10000; trial++) {
+            int from = random.nextInt(size + 1);
+            int target = random.nextInt(docId + 100);
+            if (random.nextBoolean() && from < size) {
+                target = docIds[from] + random.nextInt(2000);
+            }
+            int expected = from;
+            while (expected < size && docIds[expected] < target) {
+                expected++;
+            }
+            assertEquals(expected, list.findNext(from, target));
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testPositions() {
+        Random random = new Random(8);
+        int[] docIds = makeDocIds(3 * PostingList.BLOCK_SIZE + 5, 3);
+        int[] counts = makeCounts(docIds.length, random);
+        counts[0] = 1000;
+        counts[PostingList.BLOCK_SIZE] = 1;
+        assertRoundTrip(docIds, counts, makePositions(counts, random));
+
+        PostingList list = makeList(docIds, counts, null);
+        assertFalse(list.hasPositions());
+        try {
+            list.getPosition(0, 0);
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException ex) {
+            // This is ok: do nothing
+        }
+
+        list = makeList(docIds, counts, makePositions(counts, random));
+        assertTrue(list.hasPositions());
+        try {
+            list.getPosition(1, counts[1]);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // This is ok: do nothing
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package search.index;
+
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import search.analyzers.QueryVector;
+import search.analyzers.TfIdfAnalyzer;
+import search.models.Phrase;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Checks that queries with phrases and a proximity boost find exactly the documents
+ * we'd get by checking every document for the phrases and scoring it the slow way.
+ */
+public class TestQueryPlan extends BaseTest {
+    // Fewer terms than TestWandEvaluator, so random phrases match more often.
+    private static final int NUM_TERMS = 12;
+    private static final double PROXIMITY_WEIGHT = 0.5;
+    private static final int[] K_VALUES = {0, 1, 5, 20, 100000};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A query with phrases, weighted the same way the SearchEngine weights queries.
+     */
+    private static class PhraseQuery {
+        private final String[] terms;
+        private final double[] weights;
+        private final IList<Phrase> phrases;
+
+        public PhraseQuery(IndexSnapshot index, IList<String> words, IList<Phrase> phrases) {
+            QueryVector vector = new TfIdfAnalyzer(index).computeQueryVector(words);
+            this.terms = new String[vector.size()];
+            this.weights = new double[vector.size()];
+            for (int i = 0; i < vector.size(); i++) {
+                this.terms[i] = vector.getTerm(i);
+                this.weights[i] = vector.getWeight(i) * vector.getIdf(i) / vector.getNorm();
+            }
+            this.phrases = phrases;
+        }
+
+        public QueryPlan makePlan(IndexSnapshot index, double proximityWeight) {
+            return new QueryPlan(index, this.terms, this.weights, this.phrases, proximityWeight,
+                    RandomIndex.getDocumentScale(index));
+        }
+    }
+
+    /**
+     * Returns a random query made of one or two phrases (usually taken from a random
+     * document, sometimes with a word left out in the middle) and a few more terms.
+     */
+    private static PhraseQuery makeRandomQuery(IndexSnapshot index, Random random) {
+        IList<String> words = new ArrayList<>();
+        IList<Phrase> phrases = new ArrayList<>();
+        String[] document = getWords(index, random.nextInt(index.numDocs()));
+        int numPhrases = 1 + random.nextInt(2);
+        for (int p = 0; p < numPhrases; p++) {
+            int length = 1 + random.nextInt(Math.min(4, document.length));
+            int start = random.nextInt(document.length - length + 1);
+            int[] positions = new int[length];
+            for (int i = 0; i < length; i++) {
+                positions[i] = i;
+            }
+            if (length >= 3 && random.nextBoolean()) {
+                positions = new int[] {0, 2};
+            }
+
+            String[] terms = new String[positions.length];
+            for (int i = 0; i < terms.length; i++) {
+                terms[i] = random.nextInt(5) == 0 ? RandomIndex.makeTerm(random, NUM_TERMS)
+                                                  : document[start + positions[i]];
+                words.add(terms[i]);
+            }
+            phrases.add(new Phrase(terms, positions));
+        }
+
+        int numTerms = random.nextInt(3);
+        for (int i = 0; i < numTerms; i++) {
+            words.add(random.nextInt(4) == 0 ? RandomIndex.COMMON_TERM : RandomIndex.makeTerm(random, NUM_TERMS));
+        }
+        return new PhraseQuery(index, words, phrases);
+    }
+
+    /**
+     * Returns the words of the given document, read back from the index.
+     */
+    private static String[] getWords(IndexSnapshot index, int docId) {
+        int i = index.findSegment(docId);
+        Segment segment = index.getSegment(i);
+        int localId = docId - index.getDocBase(i);
+        String[] output = new String[segment.getDocLength(localId)];
+        for (int ordinal = 0; ordinal < segment.numTerms(); ordinal++) {
+            PostingList postings = segment.getPostings(ordinal, 0.0);
+            int posting = postings.findNext(0, localId);
+            if (posting < postings.size() && postings.getDocId(posting) == localId) {
+                for (int j = 0; j < postings.getCount(posting); j++) {
+                    output[postings.getPosition(posting, j)] = segment.getTerm(ordinal);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Checks every document for the query's phrases, and scores the ones containing
+     * them all (and any of the terms).
+     *
+     * The terms of a phrase the query doesn't weigh are scored with a weight of zero,
+     * after the query's own terms. Scores are added up in that same order, like
+     * WandEvaluator does, so they come out exactly the same.
+     */
+    private static IList<ScoredDoc> scoreEveryDocument(IndexSnapshot index, PhraseQuery query,
+                                                       double proximityWeight) {
+        IList<String> terms = new ArrayList<>();
+        for (String term : query.terms) {
+            terms.add(term);
+        }
+        int[][] phraseTerms = new int[query.phrases.size()][];
+        int[][] phraseOffsets = new int[query.phrases.size()][];
+        for (int p = 0; p < query.phrases.size(); p++) {
+            Phrase phrase = query.phrases.get(p);
+            phraseTerms[p] = new int[phrase.size()];
+            phraseOffsets[p] = new int[phrase.size()];
+            for (int i = 0; i < phrase.size(); i++) {
+                if (!terms.contains(phrase.getTerm(i))) {
+                    terms.add(phrase.getTerm(i));
+                }
+                phraseTerms[p][i] = terms.indexOf(phrase.getTerm(i));
+                phraseOffsets[p][i] = phrase.getPosition(i);
+            }
+        }
+        double[] weights = Arrays.copyOf(query.weights, terms.size());
+
+        IntToDoubleFunction documentScale = RandomIndex.getDocumentScale(index);
+        IList<ScoredDoc> output = new ArrayList<>();
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            PostingList[] postings = new PostingList[terms.size()];
+            for (int j = 0; j < terms.size(); j++) {
+                int ordinal = segment.findTerm(terms.get(j));
+                if (ordinal != Segment.NOT_FOUND) {
+                    postings[j] = segment.getPostings(ordinal, 0.0);
+                }
+            }
+
+            for (int docId = 0; docId < segment.numDocs(); docId++) {
+                // Step 1: find where each term occurs in the document
+                int[][] positions = new int[terms.size()][];
+                int numMatched = 0;
+                double score = 0.0;
+                for (int j = 0; j < terms.size(); j++) {
+                    if (postings[j] != null) {
+                        int posting = postings[j].findNext(0, docId);
+                        if (posting < postings[j].size() && postings[j].getDocId(posting) == docId) {
+                            positions[j] = new int[postings[j].getCount(posting)];
+                            for (int k = 0; k < positions[j].length; k++) {
+                                positions[j][k] = postings[j].getPosition(posting, k);
+                            }
+                            score += weights[j] * positions[j].length;
+                            numMatched++;
+                        }
+                    }
+                }
+
+                // Step 2: check the phrases, and score the document
+                boolean matched = numMatched > 0;
+                for (int p = 0; p < phraseTerms.length && matched; p++) {
+                    matched = containsPhrase(positions, phraseTerms[p], phraseOffsets[p]);
+                }
+                if (matched) {
+                    int globalId = index.getDocBase(i) + docId;
+                    score *= documentScale.applyAsDouble(globalId);
+                    output.add(new ScoredDoc(globalId, score * computeBoost(positions, numMatched, proximityWeight)));
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Returns whether the document, given the positions of each term in it (or null
+     * for terms it doesn't contain), contains the phrase, by trying every occurrence
+     * of the phrase's first term.
+     */
+    private static boolean containsPhrase(int[][] positions, int[] terms, int[] offsets) {
+        for (int term : terms) {
+            if (positions[term] == null) {
+                return false;
+            }
+        }
+        for (int start : positions[terms[0]]) {
+            boolean matched = true;
+            for (int i = 1; i < terms.length && matched; i++) {
+                matched = Arrays.binarySearch(positions[terms[i]], start + offsets[i]) >= 0;
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the proximity boost of the document (see WandEvaluator.computeBoost), by
+     * trying every window that starts at an occurrence of one of its terms.
+     */
+    private static double computeBoost(int[][] positions, int numMatched, double proximityWeight) {
+        if (proximityWeight == 0.0 || numMatched < 2) {
+            return 1.0;
+        }
+        int span = Integer.MAX_VALUE;
+        for (int[] termPositions : positions) {
+            if (termPositions == null) {
+                continue;
+            }
+            for (int start : termPositions) {
+                int end = start;
+                boolean complete = true;
+                for (int[] other : positions) {
+                    if (other == null) {
+                        continue;
+                    }
+                    int next = -1;
+                    for (int position : other) {
+                        if (position >= start) {
+                            next = position;
+                            break;
+                        }
+                    }
+                    if (next == -1) {
+                        complete = false;
+                        break;
+                    }
+                    end = Math.max(end, next);
+                }
+                if (complete) {
+                    span = Math.min(span, end - start);
+                }
+            }
+        }
+        return 1.0 + proximityWeight * Math.min(1.0, (double) (numMatched - 1) / span);
+    }
+
+    private void assertMatchesExhaustiveSearch(int numSegments, double proximityWeight, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, numSegments,
+                400 / numSegments, NUM_TERMS, true);
+        int numHits = 0;
+        for (int trial = 0; trial < 150; trial++) {
+            PhraseQuery query = makeRandomQuery(index, random);
+            IList<ScoredDoc> hits = scoreEveryDocument(index, query, proximityWeight);
+            QueryPlan plan = query.makePlan(index, proximityWeight);
+            for (int k : K_VALUES) {
+                ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, 1, null));
+            }
+            numHits += hits.size();
+        }
+        // Make sure the phrases actually matched something.
+        assertTrue(numHits > 1000);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testSingleSegment() throws IOException {
+        assertMatchesExhaustiveSearch(1, PROXIMITY_WEIGHT, 1);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testManySegments() throws IOException {
+        assertMatchesExhaustiveSearch(4, PROXIMITY_WEIGHT, 2);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testWithoutProximity() throws IOException {
+        assertMatchesExhaustiveSearch(4, 0.0, 3);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testShards() throws IOException {
+        Random random = new Random(4);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, 3, 100, NUM_TERMS, true);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial = 0; trial < 30; trial++) {
+                PhraseQuery query = makeRandomQuery(index, random);
+                IList<ScoredDoc> hits = scoreEveryDocument(index, query, PROXIMITY_WEIGHT);
+                QueryPlan plan = query.makePlan(index, PROXIMITY_WEIGHT);
+                for (int numShards = 1; numShards <= 8; numShards++) {
+                    for (int k : K_VALUES) {
+                        ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, numShards, pool));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static IList<String> makeDocument(String text) {
+        IList<String> output = new ArrayList<>();
+        for (String word : text.split(" ")) {
+            output.add(word);
+        }
+        return output;
+    }
+
+    /**
+     * Returns the ids of the documents matching a query made of the given phrase.
+     */
+    private static int[] findMatches(IndexSnapshot index, String[] terms, int[] positions) {
+        IList<String> words = new ArrayList<>();
+        for (String term : terms) {
+            words.add(term);
+        }
+        IList<Phrase> phrases = new ArrayList<>();
+        phrases.add(new Phrase(terms, positions));
+        PhraseQuery query = new PhraseQuery(index, words, phrases);
+
+        IList<ScoredDoc> hits = scoreEveryDocument(index, query, PROXIMITY_WEIGHT);
+        TopKCollector collector = query.makePlan(index, PROXIMITY_WEIGHT).findTopK(index.numDocs(), 1, null);
+        ScoredDoc.assertSameResults(hits, index.numDocs(), collector);
+
+        int[] output = new int[collector.size()];
+        for (int i = 0; i < output.length; i++) {
+            output[i] = collector.getDocId(i);
+        }
+        Arrays.sort(output);
+        return output;
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testRepeatedAndZeroIdfTerms() throws IOException {
+        IList<IList<String>> documents = new ArrayList<>();
+        documents.add(makeDocument("a b a b c common"));
+        documents.add(makeDocument("a b c common"));
+        documents.add(makeDocument("b a b a common"));
+        documents.add(makeDocument("common c a b a"));
+        documents.add(makeDocument("a c b common"));
+        documents.add(makeDocument("common"));
+        double[] pageRanks = {1.0, 1.0, 1.0, 1.0, 1.0, 1.0};
+
+        for (int numSegments = 1; numSegments <= 3; numSegments++) {
+            IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), documents, pageRanks,
+                    numSegments, true);
+
+            // A phrase repeating a term needs two different occurrences of it.
+            assertEquals(Arrays.toString(new int[] {0, 2, 3}),
+                    Arrays.toString(findMatches(index, new String[] {"a", "b", "a"}, new int[] {0, 1, 2})));
+            assertEquals(Arrays.toString(new int[] {0, 2, 3}),
+                    Arrays.toString(findMatches(index, new String[] {"a", "a"}, new int[] {0, 2})));
+            assertEquals(Arrays.toString(new int[] {}),
+                    Arrays.toString(findMatches(index, new String[] {"a", "a"}, new int[] {0, 1})));
+
+            // 'common' is in every document, so its IDF is zero and the query vector
+            // leaves it out, but the phrase still needs its positions.
+            assertEquals(Arrays.toString(new int[] {3}),
+                    Arrays.toString(findMatches(index, new String[] {"common", "c"}, new int[] {0, 1})));
+            assertEquals(Arrays.toString(new int[] {0, 1}),
+                    Arrays.toString(findMatches(index, new String[] {"c", "common"}, new int[] {0, 1})));
+            assertEquals(Arrays.toString(new int[] {0, 1, 2, 3, 4, 5}),
+                    Arrays.toString(findMatches(index, new String[] {"common"}, new int[] {0})));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package search.index;
+
+import static org.junit.Assert.assertTrue;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import search.analyzers.QueryVector;
+import search.analyzers.TfIdfAnalyzer;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Checks that WAND finds exactly the documents we'd get by scoring every document
+ * and keeping the best k with Searcher.topKSort.
+ */
+public class TestWandEvaluator extends BaseTest {
+    private static final int NUM_TERMS = 40;
+    private static final int[] K_VALUES = {0, 1, 3, 10, 50, 100000};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A random query, weighted the same way the SearchEngine weights queries: terms
+     * missing from the index and terms with an IDF of zero are left out.
+     */
+    private static class RandomQuery {
+        private final String[] terms;
+        private final double[] weights;
+
+        public RandomQuery(IndexSnapshot index, Random random) {
+            IList<String> words = new ArrayList<>();
+            int length = 1 + random.nextInt(5);
+            for (int i = 0; i < length; i++) {
+                int kind = random.nextInt(10);
+                if (kind == 0) {
+                    words.add(RandomIndex.COMMON_TERM);
+                } else if (kind == 1) {
+                    words.add("missing");
+                } else {
+                    words.add(RandomIndex.makeTerm(random, NUM_TERMS));
+                }
+            }
+            QueryVector vector = new TfIdfAnalyzer(index).computeQueryVector(words);
+            this.terms = new String[vector.size()];
+            this.weights = new double[vector.size()];
+            for (int i = 0; i < vector.size(); i++) {
+                this.terms[i] = vector.getTerm(i);
+                this.weights[i] = vector.getWeight(i) * vector.getIdf(i) / vector.getNorm();
+            }
+        }
+    }
+
+    /**
+     * Scores every document containing any of the given terms. Scores are added up
+     * in the same order as WandEvaluator adds them, so they come out exactly the same.
+     */
+    private static IList<ScoredDoc> scoreEveryDocument(IndexSnapshot index, String[] terms, double[] weights,
+                                                       IntToDoubleFunction documentScale) {
+        IList<ScoredDoc> output = new ArrayList<>();
+        for (int i = 0; i < index.numSegments(); i++) {
+            Segment segment = index.getSegment(i);
+            PostingList[] postings = new PostingList[terms.length];
+            for (int j = 0; j < terms.length; j++) {
+                int ordinal = segment.findTerm(terms[j]);
+                if (ordinal != Segment.NOT_FOUND) {
+                    postings[j] = segment.getPostings(ordinal, 0.0);
+                }
+            }
+
+            for (int docId = 0; docId < segment.numDocs(); docId++) {
+                double score = 0.0;
+                boolean found = false;
+                for (int j = 0; j < terms.length; j++) {
+                    if (postings[j] != null) {
+                        int posting = postings[j].findNext(0, docId);
+                        if (posting < postings[j].size() && postings[j].getDocId(posting) == docId) {
+                            score += weights[j] * postings[j].getCount(posting);
+                            found = true;
+                        }
+                    }
+                }
+                if (found) {
+                    int globalId = index.getDocBase(i) + docId;
+                    output.add(new ScoredDoc(globalId, score * documentScale.applyAsDouble(globalId)));
+                }
+            }
+        }
+        return output;
+    }
+
+    private void assertMatchesExhaustiveSearch(int numSegments, boolean storePositions, long seed)
+            throws IOException {
+        Random random = new Random(seed);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, numSegments, 200,
+                NUM_TERMS, storePositions);
+        IntToDoubleFunction documentScale = RandomIndex.getDocumentScale(index);
+        for (int trial = 0; trial < 100; trial++) {
+            RandomQuery query = new RandomQuery(index, random);
+            IList<ScoredDoc> hits = scoreEveryDocument(index, query.terms, query.weights, documentScale);
+            QueryPlan plan = new QueryPlan(index, query.terms, query.weights, documentScale);
+            for (int k : K_VALUES) {
+                ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, 1, null));
+            }
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testSingleSegment() throws IOException {
+        assertMatchesExhaustiveSearch(1, false, 1);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testManySegments() throws IOException {
+        assertMatchesExhaustiveSearch(5, false, 2);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testWithPositions() throws IOException {
+        assertMatchesExhaustiveSearch(3, true, 3);
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testTies() throws IOException {
+        Random random = new Random(4);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, 2, 200, NUM_TERMS, false);
+        IntToDoubleFunction documentScale = RandomIndex.getDocumentScale(index);
+        String[] terms = {"t0"};
+        double[] weights = {1.0};
+        IList<ScoredDoc> hits = scoreEveryDocument(index, terms, weights, documentScale);
+
+        // Copies of the same document score exactly the same, and the lower doc id
+        // must win every tie.
+        TopKCollector collector = new QueryPlan(index, terms, weights, documentScale).findTopK(hits.size(), 1, null);
+        collector.sortDescending();
+        int numTies = 0;
+        for (int i = 1; i < collector.size(); i++) {
+            if (collector.getScore(i) == collector.getScore(i - 1)) {
+                assertTrue(collector.getDocId(i) > collector.getDocId(i - 1));
+                numTies++;
+            }
+        }
+        assertTrue(numTies > 10);
+
+        for (int k = 0; k <= hits.size(); k += 7) {
+            QueryPlan plan = new QueryPlan(index, terms, weights, documentScale);
+            ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, 1, null));
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testKLargerThanNumberOfHits() throws IOException {
+        Random random = new Random(5);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, 2, 200, NUM_TERMS, false);
+        IntToDoubleFunction documentScale = RandomIndex.getDocumentScale(index);
+        String[] terms = {"t" + (NUM_TERMS - 1), "missing"};
+        double[] weights = {0.5, 2.0};
+        IList<ScoredDoc> hits = scoreEveryDocument(index, terms, weights, documentScale);
+        assertTrue(hits.size() > 0 && hits.size() < 100);
+
+        QueryPlan plan = new QueryPlan(index, terms, weights, documentScale);
+        for (int k : new int[] {hits.size(), hits.size() + 1, 100, index.numDocs() + 1}) {
+            ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, 1, null));
+        }
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testShards() throws IOException {
+        Random random = new Random(6);
+        IndexSnapshot index = RandomIndex.build(folder.newFolder().toPath(), random, 3, 200, NUM_TERMS, false);
+        IntToDoubleFunction documentScale = RandomIndex.getDocumentScale(index);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int trial = 0; trial < 30; trial++) {
+                RandomQuery query = new RandomQuery(index, random);
+                IList<ScoredDoc> hits = scoreEveryDocument(index, query.terms, query.weights, documentScale);
+                QueryPlan plan = new QueryPlan(index, query.terms, query.weights, documentScale);
+                for (int numShards = 1; numShards <= 8; numShards++) {
+                    for (int k : K_VALUES) {
+                        ScoredDoc.assertSameResults(hits, k, plan.findTopK(k, numShards, pool));
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
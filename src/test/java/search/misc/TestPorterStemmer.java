@@ -0,0 +1,45 @@
+package search.misc;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+public class TestPorterStemmer extends BaseTest {
+    private static void assertStem(String expected, String word) {
+        assertEquals(word, expected, new PorterStemmer().apply(word));
+    }
+
+    @Test(timeout=SECOND)
+    public void testExamplesFromPaper() {
+        assertStem("caress", "caresses");
+        assertStem("poni", "ponies");
+        assertStem("ti", "ties");
+        assertStem("cat", "cats");
+        assertStem("agre", "agreed");
+        assertStem("plaster", "plastered");
+        assertStem("hop", "hopping");
+        assertStem("fall", "falling");
+        assertStem("happi", "happy");
+        assertStem("relat", "relational");
+        assertStem("condit", "conditional");
+        assertStem("valenc", "valenci");
+        assertStem("hope", "hopeful");
+        assertStem("gener", "generalizations");
+        assertStem("oscil", "oscillators");
+    }
+
+    @Test(timeout=SECOND)
+    public void testRelatedWordsShareStem() {
+        String stem = new PorterStemmer().apply("connect");
+        for (String word : new String[] {"connected", "connecting", "connection", "connections"}) {
+            assertStem(stem, word);
+        }
+    }
+
+    @Test(timeout=SECOND)
+    public void testLeavesOtherWordsAlone() {
+        assertStem("is", "is");
+        assertStem("a", "a");
+        assertStem("c3po", "c3po");
+        assertStem("na\u00EFvet\u00E9s", "na\u00EFvet\u00E9s");
+    }
+}
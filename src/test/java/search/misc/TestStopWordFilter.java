@@ -0,0 +1,35 @@
+package search.misc;
+
+import static org.junit.Assert.assertNull;
+
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+
+public class TestStopWordFilter extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testDropsStopWords() {
+        StopWordFilter filter = StopWordFilter.english();
+        assertNull(filter.apply("the"));
+        assertNull(filter.apply("its"));
+        assertEquals("weather", filter.apply("weather"));
+        assertEquals("theory", filter.apply("theory"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testCustomList() {
+        StopWordFilter filter = new StopWordFilter("custom", new String[] {"foo"});
+        assertNull(filter.apply("foo"));
+        assertEquals("the", filter.apply("the"));
+        assertEquals("custom", filter.getName());
+    }
+
+    @Test(timeout=SECOND)
+    public void testAnalyzerDropsStopWords() {
+        IList<String> terms = Analyzer.english().analyze("The weather in Seattle is rainy");
+        assertEquals(3, terms.size());
+        assertEquals("weather", terms.get(0));
+        assertEquals("seattl", terms.get(1));
+        assertEquals("raini", terms.get(2));
+    }
+}
@@ -0,0 +1,35 @@
+package search.misc;
+
+import static org.junit.Assert.assertNull;
+
+import misc.BaseTest;
+import org.junit.Test;
+
+public class TestUnicodeFolder extends BaseTest {
+    @Test(timeout=SECOND)
+    public void testLigature() {
+        assertEquals("fi", new UnicodeFolder().apply("\uFB01"));
+        assertEquals("office", new UnicodeFolder().apply("o\uFB03ce"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testFullWidthAndCombining() {
+        UnicodeFolder folder = new UnicodeFolder();
+        assertEquals("abc", folder.apply("\uFF21\uFF22\uFF23"));
+        assertEquals("caf\u00E9", folder.apply("cafe\u0301"));
+        assertEquals("caf\u00E9", folder.apply("caf\u00E9"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testDropsPunctuation() {
+        UnicodeFolder folder = new UnicodeFolder();
+        assertEquals("hi", folder.apply("hi\uFF01"));
+        assertNull(folder.apply("\uFF01\uFF1F"));
+    }
+
+    @Test(timeout=SECOND)
+    public void testAsciiUnchanged() {
+        String word = "plain";
+        assertEquals(word, new UnicodeFolder().apply(word));
+    }
+}
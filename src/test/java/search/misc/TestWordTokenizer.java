@@ -0,0 +1,109 @@
+package search.misc;
+
+import datastructures.concrete.ArrayList;
+import datastructures.interfaces.IList;
+import misc.BaseTest;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Random;
+
+public class TestWordTokenizer extends BaseTest {
+    // Whitespace, punctuation and the chars whose lowercase depends on the locale or
+    // on the chars around them: dotted and dotless i, the Greek sigma, combining
+    // marks, and letters outside the BMP (surrogate pairs).
+    private static final String[] PIECES = {
+        " ", "  ", "\t", "\n", "\r\n", "\f", "\u000B",
+        ".", ",", "'", "\"", "-", "!?", "(", ")", "_", "~", "@",
+        "a", "b", "z", "A", "Q", "Z", "0", "9",
+        "I", "i", "\u0130", "\u0131", "J", "\u00CC",
+        "\u03A3", "\u03C3", "\u03C2", "\u0391", "\u03B1",
+        "\u0307", "\u0300", "\u0301",
+        "\u00C9", "\u00E9", "\uFF21", "\uFB01", "\u00DF",
+        "\uD801\uDC00", "\uD801\uDC28", "\uD835\uDC00",
+    };
+
+    /**
+     * The way words used to be extracted, before the tokenizer scanned the text itself.
+     */
+    private static IList<String> extractWithRegex(String input) {
+        IList<String> out = new ArrayList<>();
+        for (String word : input.toLowerCase().split("\\s+")) {
+            word = word.replaceAll("\\p{Punct}", "");
+            if (!word.isEmpty()) {
+                out.add(word);
+            }
+        }
+        return out;
+    }
+
+    private static void assertSameWords(String input) {
+        IList<String> expected = extractWithRegex(input);
+        IList<String> actual = WordTokenizer.extract(input);
+        assertEquals(input, expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(input, expected.get(i), actual.get(i));
+        }
+    }
+
+    private static String makeRandomText(Random random) {
+        StringBuilder output = new StringBuilder();
+        int length = random.nextInt(12);
+        for (int i = 0; i < length; i++) {
+            output.append(PIECES[random.nextInt(PIECES.length)]);
+        }
+        return output.toString();
+    }
+
+    @Test(timeout=SECOND)
+    public void testBasic() {
+        IList<String> words = WordTokenizer.extract("  Hello, World!\tIt's a  TEST-case.\n");
+        assertEquals(5, words.size());
+        assertEquals("hello", words.get(0));
+        assertEquals("world", words.get(1));
+        assertEquals("its", words.get(2));
+        assertEquals("a", words.get(3));
+        assertEquals("testcase", words.get(4));
+    }
+
+    @Test(timeout=SECOND)
+    public void testFinalSigmaAfterSupplementaryLetter() {
+        // Whether this sigma ends the word depends on the whitespace before it.
+        assertSameWords("\uD801\uDC28\u03A3");
+        assertSameWords(" \uD801\uDC28\u03A3");
+        assertSameWords("b\f\uD835\uDC00\u03A3 x");
+    }
+
+    @Test(timeout=SECOND)
+    public void testEmptyAndPunctuationOnly() {
+        assertEquals(0, WordTokenizer.extract("").size());
+        assertEquals(0, WordTokenizer.extract(" \t\n ").size());
+        assertEquals(0, WordTokenizer.extract("... -- !?").size());
+    }
+
+    @Test(timeout=SECOND)
+    public void testLongWord() {
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            word.append((char) ('A' + i % 26));
+        }
+        assertSameWords("x " + word + " y");
+    }
+
+    @Test(timeout=10*SECOND)
+    public void testMatchesRegexUnderLocales() {
+        Locale original = Locale.getDefault();
+        try {
+            for (String language : new String[] {"en", "tr", "lt", "el"}) {
+                Locale.setDefault(new Locale(language));
+                Random random = new Random(373);
+                for (int i = 0; i < 5000; i++) {
+                    assertSameWords(makeRandomText(random));
+                }
+                assertSameWords("TITLE \u0130STANBUL \u03A3\u039F\u03A6\u039F\u03A3. I\u0307 \u00CC");
+            }
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+}